@@ -12,6 +12,11 @@ CREATE TABLE "cpu-metrics".cpu_usage_95_percentile (
     window_start BIGINT NOT NULL,
     window_end BIGINT NOT NULL,
     percentile_95 DOUBLE PRECISION NOT NULL,
+    percentiles JSONB,
+    max_usage DOUBLE PRECISION,
+    mean_usage DOUBLE PRECISION,
+    event_count BIGINT,
+    revision BIGINT NOT NULL DEFAULT 0,
     last_updated BIGINT NOT NULL,
     created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
 );
@@ -3,6 +3,7 @@ package com.controlup.handler.entity;
 import com.controlup.handler.model.ProcessedCpuEvent;
 
 import java.time.Instant;
+import java.util.Map;
 import java.util.Objects;
 
 public class CpuMetric {
@@ -14,6 +15,12 @@ public class CpuMetric {
     private Long windowEnd;
     private Double percentile95;
     private Long lastUpdated;
+    private Map<String, Double> percentiles;
+    private Double maxUsage;
+    private Double meanUsage;
+    private Long eventCount;
+    private long revision;
+    private boolean correction;
     private Instant createdAt;
 
     public CpuMetric() {
@@ -32,7 +39,7 @@ public class CpuMetric {
 
     // Factory method from ProcessedCpuEvent
     public static CpuMetric fromProcessedEvent(ProcessedCpuEvent event) {
-        return new CpuMetric(
+        CpuMetric metric = new CpuMetric(
                 event.getId(),
                 event.getDeviceId(),
                 event.getWindowStart(),
@@ -40,6 +47,16 @@ public class CpuMetric {
                 event.getPercentile95(),
                 event.getLastUpdated()
         );
+        // Results of processors without window statistics leave them null
+        if (event.getEventCount() > 0) {
+            metric.setPercentiles(event.getPercentiles());
+            metric.setMaxUsage(event.getMax());
+            metric.setMeanUsage(event.getMean());
+            metric.setEventCount(event.getEventCount());
+        }
+        metric.setRevision(event.getRevision());
+        metric.setCorrection(event.isCorrection());
+        return metric;
     }
 
     public Long getId() {
@@ -98,6 +115,54 @@ public class CpuMetric {
         this.lastUpdated = lastUpdated;
     }
 
+    public Map<String, Double> getPercentiles() {
+        return percentiles;
+    }
+
+    public void setPercentiles(Map<String, Double> percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    public Double getMaxUsage() {
+        return maxUsage;
+    }
+
+    public void setMaxUsage(Double maxUsage) {
+        this.maxUsage = maxUsage;
+    }
+
+    public Double getMeanUsage() {
+        return meanUsage;
+    }
+
+    public void setMeanUsage(Double meanUsage) {
+        this.meanUsage = meanUsage;
+    }
+
+    public Long getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(Long eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    public boolean isCorrection() {
+        return correction;
+    }
+
+    public void setCorrection(boolean correction) {
+        this.correction = correction;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -127,7 +192,13 @@ public class CpuMetric {
                 ", windowStart=" + windowStart +
                 ", windowEnd=" + windowEnd +
                 ", percentile95=" + percentile95 +
+                ", percentiles=" + percentiles +
+                ", maxUsage=" + maxUsage +
+                ", meanUsage=" + meanUsage +
+                ", eventCount=" + eventCount +
                 ", lastUpdated=" + lastUpdated +
+                ", revision=" + revision +
+                ", correction=" + correction +
                 ", createdAt=" + createdAt +
                 '}';
     }
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.time.Instant;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -19,7 +20,16 @@ public class ProcessedCpuEvent {
     private long windowStart;
     private long windowEnd;
     private double percentile95;
+    // Percentiles of the window by name (p50, p95, p99.9), including the p95
+    private Map<String, Double> percentiles;
+    private double max;
+    private double mean;
+    private long eventCount;
     private long lastUpdated;
+    // Firing of the window the result is from, starting at 1; corrections count on from 2^32
+    private long revision;
+    // True for results the processor recomputed from late events, superseding the window's earlier result
+    private boolean correction;
 
     public ProcessedCpuEvent() {
     }
@@ -60,10 +70,34 @@ public class ProcessedCpuEvent {
         this.percentile95 = percentile95;
     }
 
+    public void setPercentiles(Map<String, Double> percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    public void setEventCount(long eventCount) {
+        this.eventCount = eventCount;
+    }
+
     public void setLastUpdated(long lastUpdated) {
         this.lastUpdated = lastUpdated;
     }
 
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    public void setCorrection(boolean correction) {
+        this.correction = correction;
+    }
+
     public String getId() {
         return id;
     }
@@ -84,10 +118,34 @@ public class ProcessedCpuEvent {
         return percentile95;
     }
 
+    public Map<String, Double> getPercentiles() {
+        return percentiles;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
     public long getLastUpdated() {
         return lastUpdated;
     }
 
+    public long getRevision() {
+        return revision;
+    }
+
+    public boolean isCorrection() {
+        return correction;
+    }
+
     @JsonIgnore
     public Instant getWindowStartAsInstant() {
         return Instant.ofEpochMilli(windowStart);
@@ -124,7 +182,13 @@ public class ProcessedCpuEvent {
                 ", windowStart=" + windowStart +
                 ", windowEnd=" + windowEnd +
                 ", percentile95=" + String.format("%.2f", percentile95) +
+                ", percentiles=" + percentiles +
+                ", max=" + max +
+                ", mean=" + mean +
+                ", eventCount=" + eventCount +
                 ", lastUpdated=" + lastUpdated +
+                ", revision=" + revision +
+                ", correction=" + correction +
                 '}';
     }
 }
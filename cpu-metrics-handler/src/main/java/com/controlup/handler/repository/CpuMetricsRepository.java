@@ -2,6 +2,8 @@ package com.controlup.handler.repository;
 
 import com.controlup.handler.entity.CpuMetric;
 import com.controlup.handler.model.ProcessedCpuEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,6 +17,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Repository
@@ -22,13 +25,48 @@ public class CpuMetricsRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(CpuMetricsRepository.class);
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     private final JdbcTemplate jdbcTemplate;
 
+    // The processor's JDBC sink (JdbcResultWriter) has the same statements; the integration tests of both run
+    // them against the docker-compose migrations, so keep them in step.
+    // The event id identifies the device's window, so later firings replace the row (last writer by revision wins)
     private static final String INSERT_SQL = """
-        INSERT INTO "cpu-metrics".cpu_usage_95_percentile 
-        (event_id, device_id, window_start, window_end, percentile_95, last_updated, created_at) 
-        VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
-        ON CONFLICT (event_id) DO NOTHING
+        INSERT INTO "cpu-metrics".cpu_usage_95_percentile AS metric
+        (event_id, device_id, window_start, window_end, percentile_95, percentiles, max_usage, mean_usage, event_count,
+         revision, last_updated, created_at) 
+        VALUES (?, ?, ?, ?, ?, ?::jsonb, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT (event_id) DO UPDATE SET
+            window_start = EXCLUDED.window_start,
+            window_end = EXCLUDED.window_end,
+            percentile_95 = EXCLUDED.percentile_95,
+            percentiles = EXCLUDED.percentiles,
+            max_usage = EXCLUDED.max_usage,
+            mean_usage = EXCLUDED.mean_usage,
+            event_count = EXCLUDED.event_count,
+            revision = EXCLUDED.revision,
+            last_updated = EXCLUDED.last_updated
+        WHERE metric.revision < EXCLUDED.revision
+        """;
+
+    // Corrections replace the window's row but keep its last_updated,
+    // so a corrected old window does not become the device's latest result
+    private static final String CORRECT_SQL = """
+        INSERT INTO "cpu-metrics".cpu_usage_95_percentile AS metric
+        (event_id, device_id, window_start, window_end, percentile_95, percentiles, max_usage, mean_usage, event_count,
+         revision, last_updated, created_at) 
+        VALUES (?, ?, ?, ?, ?, ?::jsonb, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT (event_id) DO UPDATE SET
+            window_start = EXCLUDED.window_start,
+            window_end = EXCLUDED.window_end,
+            percentile_95 = EXCLUDED.percentile_95,
+            percentiles = EXCLUDED.percentiles,
+            max_usage = EXCLUDED.max_usage,
+            mean_usage = EXCLUDED.mean_usage,
+            event_count = EXCLUDED.event_count,
+            revision = EXCLUDED.revision
+        WHERE metric.revision < EXCLUDED.revision
         """;
 
     @Autowired
@@ -38,13 +76,7 @@ public class CpuMetricsRepository {
 
     public void upsertMetric(CpuMetric metric) {
         try {
-            int rowsAffected = jdbcTemplate.update(INSERT_SQL,
-                metric.getEventId(),
-                metric.getDeviceId(),
-                metric.getWindowStart(),
-                metric.getWindowEnd(),
-                metric.getPercentile95(),
-                metric.getLastUpdated());
+            int rowsAffected = jdbcTemplate.update(INSERT_SQL, upsertArgs(metric));
 
             logger.trace("Upserted metric for device {}: {} rows affected", metric.getDeviceId(), rowsAffected);
 
@@ -62,14 +94,7 @@ public class CpuMetricsRepository {
 
         try {
             List<Object[]> batchArgs = metrics.stream()
-                .map(metric -> new Object[]{
-                    metric.getEventId(),
-                    metric.getDeviceId(),
-                    metric.getWindowStart(),
-                    metric.getWindowEnd(),
-                    metric.getPercentile95(),
-                    metric.getLastUpdated()
-                })
+                .map(CpuMetricsRepository::upsertArgs)
                 .collect(Collectors.toList());
 
             int[] rowsAffected = jdbcTemplate.batchUpdate(INSERT_SQL, batchArgs);
@@ -87,4 +112,40 @@ public class CpuMetricsRepository {
             }
         }
     }
+
+    /**
+     * Applies a correction to the row of its window, inserting it if the window has no row yet
+     */
+    public void applyCorrection(CpuMetric metric) {
+        int rowsAffected = jdbcTemplate.update(CORRECT_SQL, upsertArgs(metric));
+
+        logger.trace("Corrected window of device {}: {} rows affected", metric.getDeviceId(), rowsAffected);
+    }
+
+    private static Object[] upsertArgs(CpuMetric metric) {
+        return new Object[]{
+            metric.getEventId(),
+            metric.getDeviceId(),
+            metric.getWindowStart(),
+            metric.getWindowEnd(),
+            metric.getPercentile95(),
+            percentilesJson(metric.getPercentiles()),
+            metric.getMaxUsage(),
+            metric.getMeanUsage(),
+            metric.getEventCount(),
+            metric.getRevision(),
+            metric.getLastUpdated()
+        };
+    }
+
+    private static String percentilesJson(Map<String, Double> percentiles) {
+        if (percentiles == null) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(percentiles);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot write percentiles " + percentiles, e);
+        }
+    }
 }
@@ -16,6 +16,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -48,12 +49,17 @@ public class MetricsProcessor {
         logger.debug("Processing batch of {} CPU events", events.size());
         
         // Convert ProcessedCpuEvents to CpuMetrics for database operations
-        List<CpuMetric> metrics = events.stream()
+        Map<Boolean, List<CpuMetric>> metrics = events.stream()
             .map(CpuMetric::fromProcessedEvent)
-            .collect(Collectors.toList());
+            .collect(Collectors.partitioningBy(CpuMetric::isCorrection));
         
         // Use batch processing for better performance
-        repository.batchUpsertMetrics(metrics);
+        repository.batchUpsertMetrics(metrics.get(false));
+        
+        // Corrections are rare and update existing rows, so apply them one by one after the inserts
+        for (CpuMetric correction : metrics.get(true)) {
+            processMetricWithRetry(correction);
+        }
         
         logger.debug("Successfully processed batch of {} CPU events", events.size());
     }
@@ -81,8 +87,12 @@ public class MetricsProcessor {
                 return;
             }
             
-            // Perform idempotent upsert operation
-            repository.upsertMetric(metric);
+            // Perform idempotent upsert operation, or update the window's rows for a correction
+            if (metric.isCorrection()) {
+                repository.applyCorrection(metric);
+            } else {
+                repository.upsertMetric(metric);
+            }
             
             logger.trace("Stored metric for device {} with 95th percentile {}", 
                         metric.getDeviceId(), metric.getPercentile95());
@@ -0,0 +1,117 @@
+package com.controlup.handler.repository;
+
+import com.controlup.handler.entity.CpuMetric;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.BindMode;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the repository's statements against the migrations docker-compose applies. The processor's
+ * JdbcResultWriterIntegrationTest runs the same cases with its copy of the statements, so both copies
+ * are held to the same schema and the same expectations.
+ */
+@Testcontainers
+class CpuMetricsRepositoryIntegrationTest {
+
+    private static final long BASE = 1692617400000L;
+    private static final String EVENT_ID = "device-001-" + BASE + "-" + (BASE + 30_000);
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withFileSystemBind(Path.of("../docker/db/migrations").toAbsolutePath().normalize().toString(),
+                    "/docker-entrypoint-initdb.d", BindMode.READ_ONLY);
+
+    private JdbcTemplate jdbcTemplate;
+    private CpuMetricsRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+        jdbcTemplate.execute("TRUNCATE TABLE \"cpu-metrics\".cpu_usage_95_percentile RESTART IDENTITY");
+        repository = new CpuMetricsRepository(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Should insert a result with its window statistics")
+    void shouldInsertResult() {
+        repository.upsertMetric(metric(5, 40.0, BASE + 30_000, false));
+
+        Map<String, Object> row = row();
+        assertEquals("device-001", row.get("device_id"));
+        assertEquals(40.0, row.get("percentile_95"));
+        assertEquals("{\"p50\": 20.0, \"p95\": 40.0}", row.get("percentiles"));
+        assertEquals(99.0, row.get("max_usage"));
+        assertEquals(5L, row.get("event_count"));
+        assertEquals(5L, row.get("revision"));
+    }
+
+    @Test
+    @DisplayName("Should replace a result only with a higher revision")
+    void shouldKeepHighestRevision() {
+        repository.upsertMetric(metric(5, 40.0, BASE + 30_000, false));
+        repository.batchUpsertMetrics(List.of(metric(7, 60.0, BASE + 40_000, false)));
+        repository.upsertMetric(metric(6, 50.0, BASE + 50_000, false));
+
+        Map<String, Object> row = row();
+        assertEquals(60.0, row.get("percentile_95"));
+        assertEquals(7L, row.get("revision"));
+        assertEquals(BASE + 40_000, row.get("last_updated"));
+    }
+
+    @Test
+    @DisplayName("Should apply a correction but keep the row's last_updated")
+    void shouldKeepLastUpdatedOnCorrection() {
+        repository.upsertMetric(metric(5, 40.0, BASE + 30_000, false));
+        repository.applyCorrection(metric(8, 70.0, BASE + 90_000, true));
+
+        Map<String, Object> row = row();
+        assertEquals(70.0, row.get("percentile_95"));
+        assertEquals(8L, row.get("revision"));
+        assertEquals(BASE + 30_000, row.get("last_updated"));
+    }
+
+    @Test
+    @DisplayName("Should leave the window statistics null for results without them")
+    void shouldWriteNullStatistics() {
+        CpuMetric metric = metric(5, 40.0, BASE + 30_000, false);
+        metric.setPercentiles(null);
+        metric.setMaxUsage(null);
+        metric.setMeanUsage(null);
+        metric.setEventCount(null);
+        repository.upsertMetric(metric);
+
+        Map<String, Object> row = row();
+        assertNull(row.get("percentiles"));
+        assertNull(row.get("max_usage"));
+        assertNull(row.get("event_count"));
+    }
+
+    private static CpuMetric metric(long revision, double p95, long lastUpdated, boolean correction) {
+        CpuMetric metric = new CpuMetric(EVENT_ID, "device-001", BASE, BASE + 30_000, p95, lastUpdated);
+        metric.setPercentiles(Map.of("p50", 20.0, "p95", p95));
+        metric.setMaxUsage(99.0);
+        metric.setMeanUsage(30.0);
+        metric.setEventCount(revision);
+        metric.setRevision(revision);
+        metric.setCorrection(correction);
+        return metric;
+    }
+
+    private Map<String, Object> row() {
+        return jdbcTemplate.queryForMap("SELECT device_id, percentile_95, percentiles::text AS percentiles, "
+                + "max_usage, event_count, revision, last_updated FROM \"cpu-metrics\".cpu_usage_95_percentile");
+    }
+}
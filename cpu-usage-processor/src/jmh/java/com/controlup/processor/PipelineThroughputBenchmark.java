@@ -0,0 +1,179 @@
+package com.controlup.processor;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.flink.api.common.JobExecutionResult;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.connector.source.util.ratelimit.RateLimiterStrategy;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.MetricOptions;
+import org.apache.flink.connector.datagen.source.DataGeneratorSource;
+import org.apache.flink.connector.datagen.source.GeneratorFunction;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.Metric;
+import org.apache.flink.metrics.MetricConfig;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.reporter.MetricReporter;
+import org.apache.flink.metrics.reporter.MetricReporterFactory;
+import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.functions.sink.v2.DiscardingSink;
+import org.apache.flink.types.Either;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the job's pipeline on a local MiniCluster, from a data generator source to discarding sinks, so no
+ * Kafka is needed. Each device reports in turn with the wall clock as event time, as fast as the pipeline
+ * takes the events or at {@code eventsPerSecond}.
+ * <p>
+ * Reported as counters: {@code eventsPerSecondPerSlot} over the job's net runtime, {@code p99LatencyMs} the
+ * highest p99 of Flink's latency markers from the source to any operator (window buffering not included),
+ * and {@code peakHeapMb} sampled every 100 ms. Other {@code PROCESSOR_*} settings are read from the
+ * environment as for the job. Run with {@code -PjmhArgs="PipelineThroughputBenchmark"}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineThroughputBenchmark {
+
+    @Param({"1000", "100000"})
+    public int devices;
+
+    @Param({"0"})
+    public int eventsPerSecond;
+
+    @Param({"30", "300"})
+    public int windowSeconds;
+
+    @Param({"exact", "sketch", "histogram"})
+    public String accumulator;
+
+    @Param({"2000000"})
+    public long events;
+
+    @Param({"1"})
+    public int parallelism;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PipelineMetrics {
+        public long eventsPerSecondPerSlot;
+        public long p99LatencyMs;
+        public long peakHeapMb;
+    }
+
+    @Benchmark
+    public JobExecutionResult pipeline(PipelineMetrics metrics) throws Exception {
+        Configuration configuration = new Configuration();
+        configuration.set(MetricOptions.LATENCY_INTERVAL, Duration.ofSeconds(1));
+        configuration.setString("metrics.reporter.latency.factory.class", LatencyReporter.class.getName());
+        StreamExecutionEnvironment env = StreamExecutionEnvironment.createLocalEnvironment(parallelism, configuration);
+
+        int deviceCount = devices;
+        GeneratorFunction<Long, Either<MalformedCpuUsageEvent, CpuUsageEvent>> generator = index -> Either.Right(new CpuUsageEvent(
+                "device-" + index % deviceCount, System.currentTimeMillis(), index * 31 % 10001 / 100.0));
+        DataGeneratorSource<Either<MalformedCpuUsageEvent, CpuUsageEvent>> source = new DataGeneratorSource<>(generator, events,
+                eventsPerSecond > 0 ? RateLimiterStrategy.perSecond(eventsPerSecond) : RateLimiterStrategy.noOp(),
+                Types.EITHER(TypeInformation.of(MalformedCpuUsageEvent.class), TypeInformation.of(CpuUsageEvent.class)));
+        CpuUsageProcessorApplication.pipeline(
+                env.fromSource(source, CpuUsageProcessorApplication.watermarkStrategy(), "Generator Source"),
+                accumulator, Duration.ofSeconds(windowSeconds), topic -> new DiscardingSink<>(), new DiscardingSink<>(),
+                new DiscardingSink<>());
+
+        LatencyReporter.reset();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 100, TimeUnit.MILLISECONDS);
+        JobExecutionResult result;
+        try {
+            result = env.execute("CPU Usage Processor Benchmark");
+        } finally {
+            sampler.shutdownNow();
+        }
+
+        metrics.eventsPerSecondPerSlot += events * 1000 / Math.max(1, result.getNetRuntime(TimeUnit.MILLISECONDS)) / parallelism;
+        metrics.p99LatencyMs += Math.round(LatencyReporter.p99());
+        metrics.peakHeapMb += peakHeap.get() >> 20;
+        return result;
+    }
+
+    /**
+     * Keeps the highest p99 of the operators' latency histograms, read when the job unregisters them
+     */
+    public static class LatencyReporter implements MetricReporter, MetricReporterFactory {
+
+        private static final Set<Histogram> HISTOGRAMS = ConcurrentHashMap.newKeySet();
+        private static double maxP99;
+
+        @Override
+        public MetricReporter createMetricReporter(Properties properties) {
+            return new LatencyReporter();
+        }
+
+        @Override
+        public void open(MetricConfig config) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void notifyOfAddedMetric(Metric metric, String metricName, MetricGroup group) {
+            if ("latency".equals(metricName) && metric instanceof Histogram) {
+                HISTOGRAMS.add((Histogram) metric);
+            }
+        }
+
+        @Override
+        public void notifyOfRemovedMetric(Metric metric, String metricName, MetricGroup group) {
+            if (HISTOGRAMS.remove(metric)) {
+                record((Histogram) metric);
+            }
+        }
+
+        static synchronized void reset() {
+            HISTOGRAMS.clear();
+            maxP99 = 0;
+        }
+
+        static synchronized double p99() {
+            for (Histogram histogram : HISTOGRAMS) {
+                record(histogram);
+            }
+            return maxP99;
+        }
+
+        private static synchronized void record(Histogram histogram) {
+            if (histogram.getCount() > 0) {
+                maxP99 = Math.max(maxP99, histogram.getStatistics().getQuantile(0.99));
+            }
+        }
+    }
+}
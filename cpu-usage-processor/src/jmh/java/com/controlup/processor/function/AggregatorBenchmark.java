@@ -0,0 +1,110 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the three aggregate function calls behind a window result, for each accumulator and window size:
+ * {@code add} builds a window from its samples, {@code merge} combines two halves of a window (as pane mode
+ * and the pre-aggregated partials do) and {@code getResult} computes the p95 of a full window.
+ * <p>
+ * Accumulators passed to merge and getResult are rebuilt before each invocation, as both may modify them.
+ * Run with {@code -PjmhArgs="AggregatorBenchmark -prof gc"} to see the allocation rate of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AggregatorBenchmark {
+
+    private static final long BASE = 1692617400000L;
+
+    @Param({"exact", "sketch", "histogram"})
+    public String accumulator;
+
+    @Param({"10", "100", "1000", "10000", "100000", "1000000"})
+    public int samples;
+
+    private CpuUsageAggregateFunction<Object> aggregator;
+    private CpuUsageEvent[] events;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        if ("sketch".equals(accumulator)) {
+            aggregator = (CpuUsageAggregateFunction<Object>) (CpuUsageAggregateFunction<?>) new CpuUsageSketchAggregator();
+        } else if ("histogram".equals(accumulator)) {
+            aggregator = (CpuUsageAggregateFunction<Object>) (CpuUsageAggregateFunction<?>) new CpuUsageHistogramAggregator();
+        } else {
+            aggregator = (CpuUsageAggregateFunction<Object>) (CpuUsageAggregateFunction<?>) new CpuUsageAggregator();
+        }
+
+        Random random = new Random(42);
+        events = new CpuUsageEvent[samples];
+        for (int i = 0; i < samples; i++) {
+            events[i] = new CpuUsageEvent("device-001", BASE + i, random.nextDouble() * 100);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Halves {
+        Object left;
+        Object right;
+
+        @Setup(Level.Invocation)
+        public void setUp(AggregatorBenchmark benchmark) {
+            left = benchmark.window(0, benchmark.samples / 2);
+            right = benchmark.window(benchmark.samples / 2, benchmark.samples);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FullWindow {
+        Object window;
+
+        @Setup(Level.Invocation)
+        public void setUp(AggregatorBenchmark benchmark) {
+            window = benchmark.window(0, benchmark.samples);
+        }
+    }
+
+    @Benchmark
+    public Object add() {
+        return window(0, samples);
+    }
+
+    @Benchmark
+    public Object merge(Halves halves) {
+        return aggregator.merge(halves.left, halves.right);
+    }
+
+    @Benchmark
+    public ProcessedCpuEvent getResult(FullWindow full) {
+        return aggregator.getResult(full.window);
+    }
+
+    private Object window(int from, int to) {
+        Object accumulator = aggregator.createAccumulator();
+        for (int i = from; i < to; i++) {
+            accumulator = aggregator.add(events[i], accumulator);
+        }
+        return accumulator;
+    }
+}
@@ -0,0 +1,68 @@
+package com.controlup.processor.function;
+
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * p95 of a window's samples as computed in CpuUsageAggregator.getResult: commons-math Percentile
+ * on a copy of the samples versus in-place selection on the accumulator's backing array.
+ * <p>
+ * Run with {@code -PjmhArgs="PercentileBenchmark -prof gc"} to see the allocation rate of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PercentileBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int samples;
+
+    private double[] original;
+    private double[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        original = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            original[i] = random.nextDouble() * 100;
+        }
+        values = new double[samples];
+    }
+
+    // Selection leaves the array partially ordered, so every invocation starts from the random order again
+    @Setup(Level.Invocation)
+    public void resetValues() {
+        System.arraycopy(original, 0, values, 0, samples);
+    }
+
+    @Benchmark
+    public double commonsPercentile() {
+        // What getResult did before: copy the used samples, then evaluate
+        double[] copy = new double[samples];
+        System.arraycopy(values, 0, copy, 0, samples);
+        return new Percentile(95).evaluate(copy);
+    }
+
+    @Benchmark
+    public double inPlaceSelection() {
+        return InPlacePercentile.evaluate(values, samples, 95);
+    }
+}
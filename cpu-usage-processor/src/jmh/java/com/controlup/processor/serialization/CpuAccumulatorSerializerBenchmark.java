@@ -0,0 +1,81 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.function.CpuUsageAggregator.CpuAccumulator;
+import org.apache.flink.api.common.serialization.SerializerConfigImpl;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.typeutils.runtime.kryo.KryoSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization round trip (serialize + deserialize) of a CpuAccumulator as done on every
+ * RocksDB state access and checkpoint, comparing the compact serializer with the Kryo fallback.
+ * <p>
+ * The serialized size of one accumulator is printed at the start of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Kryo needs the same module opens as a Flink TaskManager
+@Fork(value = 1, jvmArgsAppend = {"--add-opens", "java.base/java.util=ALL-UNNAMED", "--add-opens", "java.base/java.lang=ALL-UNNAMED"})
+@State(Scope.Benchmark)
+public class CpuAccumulatorSerializerBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int samples;
+
+    @Param({"compact", "kryo"})
+    public String serializerType;
+
+    private TypeSerializer<CpuAccumulator> serializer;
+    private CpuAccumulator accumulator;
+    private DataOutputSerializer output;
+    private DataInputDeserializer input;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        serializer = "kryo".equals(serializerType)
+                ? new KryoSerializer<>(CpuAccumulator.class, new SerializerConfigImpl())
+                : CpuAccumulatorSerializer.INSTANCE;
+
+        // Array capacity grows by doubling, so part of it is usually unused
+        accumulator = new CpuAccumulator("device-001");
+        Random random = new Random(42);
+        for (int i = 0; i < samples; i++) {
+            accumulator.addValue(random.nextDouble() * 100);
+        }
+        accumulator.windowStart = 1692617400000L;
+        accumulator.windowEnd = 1692617430000L;
+
+        output = new DataOutputSerializer(1024);
+        input = new DataInputDeserializer();
+
+        serializer.serialize(accumulator, output);
+        System.out.println("Serialized size: " + output.length() + " bytes");
+    }
+
+    @Benchmark
+    public CpuAccumulator roundTrip() throws IOException {
+        output.clear();
+        serializer.serialize(accumulator, output);
+        input.setBuffer(output.getSharedBuffer(), 0, output.length());
+        return serializer.deserialize(input);
+    }
+}
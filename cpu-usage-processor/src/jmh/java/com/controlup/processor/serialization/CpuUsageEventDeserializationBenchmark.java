@@ -0,0 +1,93 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.formats.json.JsonDeserializationSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding cost per event of the Kafka source's value deserializer: Flink's databinding
+ * JsonDeserializationSchema, the byte scanner CpuUsageEventJsonSchema, and the binary format.
+ * <p>
+ * The average encoded size of the events is printed at the start of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CpuUsageEventDeserializationBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    @Param({"databind", "scanner", "binary"})
+    public String format;
+
+    // "full" as written by the test producer, "2" for agents that round to two decimals
+    @Param({"full", "2"})
+    public String cpuUsageDecimals;
+
+    // The databinding schema returns the event, the others an Either of the event
+    private DeserializationSchema<?> schema;
+    private byte[][] messages;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if ("binary".equals(format)) {
+            schema = new CpuUsageEventBinarySchema();
+        } else if ("scanner".equals(format)) {
+            schema = new CpuUsageEventJsonSchema();
+        } else {
+            schema = new JsonDeserializationSchema<>(CpuUsageEvent.class);
+        }
+        // None of the schemas use the context
+        schema.open(null);
+
+        // Encoded the way the test producer encodes them
+        CpuUsageEventBinarySchema binary = new CpuUsageEventBinarySchema();
+        Random random = new Random(42);
+        messages = new byte[EVENTS][];
+        long totalBytes = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            double cpuUsage = random.nextDouble() * 100;
+            if ("2".equals(cpuUsageDecimals)) {
+                cpuUsage = Math.round(cpuUsage * 100) / 100.0;
+            }
+            CpuUsageEvent event = new CpuUsageEvent(String.format("device-%03d", random.nextInt(100) + 1),
+                    1692617400000L + i * 10L, cpuUsage);
+            messages[i] = "binary".equals(format) ? binary.serialize(event) : json(event);
+            totalBytes += messages[i].length;
+        }
+        System.out.println("Average event size: " + (double) totalBytes / EVENTS + " bytes");
+    }
+
+    private static byte[] json(CpuUsageEvent event) {
+        return ("{\"deviceId\":\"" + event.getDeviceId() + "\",\"timestamp\":" + event.getTimestamp()
+                + ",\"cpuUsage\":" + event.getCpuUsage() + "}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        byte[] message = messages[next];
+        next = (next + 1) & (EVENTS - 1);
+        return schema.deserialize(message);
+    }
+}
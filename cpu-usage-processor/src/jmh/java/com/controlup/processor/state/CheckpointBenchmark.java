@@ -0,0 +1,128 @@
+package com.controlup.processor.state;
+
+import com.controlup.processor.function.CpuUsageAggregator;
+import com.controlup.processor.function.SlidingPaneFunction;
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.contrib.streaming.state.EmbeddedRocksDBStateBackend;
+import org.apache.flink.runtime.checkpoint.OperatorSubtaskState;
+import org.apache.flink.runtime.state.storage.FileSystemCheckpointStorage;
+import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.util.FileUtils;
+import org.apache.flink.util.OutputTag;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkpoint duration and size of the pane window state in embedded RocksDB with incremental
+ * checkpoints, as the number of devices and the window size grow. Each device reports once a second,
+ * so a device holds window size in seconds samples.
+ * <p>
+ * {@code full} is the first checkpoint of the state, {@code incremental} the next one after another
+ * 5 second slide of events. The checkpoint size is reported as the {@code checkpointedBytes} counter.
+ * Run with {@code -PjmhArgs="CheckpointBenchmark"}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckpointBenchmark {
+
+    private static final long BASE = 1692617400000L;
+    private static final Duration SLIDE = Duration.ofSeconds(5);
+    private static final OutputTag<CpuUsageEvent> LATE_TAG = new OutputTag<>("late-events") {
+    };
+
+    @Param({"100", "1000", "10000"})
+    public int devices;
+
+    @Param({"30", "300"})
+    public int windowSeconds;
+
+    @Param({"full", "incremental"})
+    public String checkpoint;
+
+    private File directory;
+    private KeyedOneInputStreamOperatorTestHarness<String, CpuUsageEvent, ProcessedCpuEvent> harness;
+    private long checkpointId;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class CheckpointSize {
+        public long checkpointedBytes;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("checkpoint-benchmark").toFile();
+        Duration size = Duration.ofSeconds(windowSeconds);
+        harness = new KeyedOneInputStreamOperatorTestHarness<>(
+                new KeyedProcessOperator<>(new SlidingPaneFunction<>(new CpuUsageAggregator(),
+                        TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class), size, SLIDE, size, Duration.ZERO, LATE_TAG)),
+                CpuUsageEvent::getDeviceId, Types.STRING);
+        harness.setStateBackend(new EmbeddedRocksDBStateBackend(true));
+        harness.setCheckpointStorage(new FileSystemCheckpointStorage(directory.toURI()));
+        harness.open();
+
+        Random random = new Random(42);
+        addEvents(random, 0, windowSeconds);
+        checkpointId = 1;
+        if ("incremental".equals(checkpoint)) {
+            harness.snapshot(checkpointId, 0);
+            harness.notifyOfCompletedCheckpoint(checkpointId);
+            checkpointId++;
+            addEvents(random, windowSeconds, windowSeconds + (int) SLIDE.toSeconds());
+        }
+    }
+
+    private void addEvents(Random random, int fromSecond, int toSecond) throws Exception {
+        for (int second = fromSecond; second < toSecond; second++) {
+            long timestamp = BASE + second * 1000L;
+            for (int device = 0; device < devices; device++) {
+                harness.processElement(new StreamRecord<>(
+                        new CpuUsageEvent("device-" + device, timestamp, random.nextDouble() * 100), timestamp));
+            }
+            // Fire windows as they close, as the job does
+            harness.processWatermark(new Watermark(timestamp - 1));
+            harness.getOutput().clear();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        harness.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public OperatorSubtaskState snapshot(CheckpointSize size) throws Exception {
+        OperatorSubtaskState state = harness.snapshot(checkpointId, 0);
+        size.checkpointedBytes += state.getCheckpointedSize();
+        return state;
+    }
+}
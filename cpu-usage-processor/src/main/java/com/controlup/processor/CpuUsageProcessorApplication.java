@@ -1,28 +1,85 @@
 package com.controlup.processor;
 
+import com.controlup.processor.function.AccumulatorPassThrough;
+import com.controlup.processor.function.CoalescingEventTimeTrigger;
+import com.controlup.processor.function.CpuUsageAggregateFunction;
 import com.controlup.processor.function.CpuUsageAggregator;
+import com.controlup.processor.function.CpuUsageHistogramAggregator;
+import com.controlup.processor.function.CpuUsageSketchAggregator;
+import com.controlup.processor.function.DeviceGroupEnrichmentFunction;
+import com.controlup.processor.function.HotDeviceSaltingPartitioner;
+import com.controlup.processor.function.JdbcDeviceGroupLookup;
+import com.controlup.processor.function.LateEventCorrectionFunction;
+import com.controlup.processor.function.LateEventCounter;
+import com.controlup.processor.function.LateRollupCounter;
+import com.controlup.processor.function.MeteredWindowResultFunction;
+import com.controlup.processor.function.PartialAccumulatorMerger;
+import com.controlup.processor.function.PreAggregationOperator;
+import com.controlup.processor.function.ResultEmissionFilter;
+import com.controlup.processor.function.ResultPercentiles;
+import com.controlup.processor.function.RollupWindowFunction;
+import com.controlup.processor.function.SlidingPaneFunction;
+import com.controlup.processor.function.TilingWindowSelector;
+import com.controlup.processor.function.ValidEventFilter;
 import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import com.controlup.processor.model.PartialAccumulator;
 import com.controlup.processor.model.ProcessedCpuEvent;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.controlup.processor.serialization.CpuUsageEventBinarySchema;
+import com.controlup.processor.serialization.CpuUsageEventJsonSchema;
+import com.controlup.processor.serialization.LateEventSerializationSchema;
+import com.controlup.processor.serialization.MalformedEventSerializationSchema;
+import com.controlup.processor.serialization.PartitionWatermarkLagSchema;
+import com.controlup.processor.serialization.ProcessedCpuEventSerializationSchema;
+import com.controlup.processor.sink.JdbcResultSink;
 import org.apache.flink.api.common.eventtime.WatermarkStrategy;
-import org.apache.flink.api.common.serialization.SimpleStringSchema;
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.connector.sink2.Sink;
+import org.apache.flink.configuration.CheckpointingOptions;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.ExternalizedCheckpointRetention;
+import org.apache.flink.configuration.JobManagerOptions;
+import org.apache.flink.configuration.MemorySize;
+import org.apache.flink.configuration.PipelineOptions;
+import org.apache.flink.configuration.SchedulerExecutionMode;
+import org.apache.flink.configuration.StateBackendOptions;
+import org.apache.flink.configuration.StateRecoveryOptions;
+import org.apache.flink.configuration.TaskManagerOptions;
 import org.apache.flink.connector.base.DeliveryGuarantee;
-import org.apache.flink.connector.kafka.sink.KafkaRecordSerializationSchema;
 import org.apache.flink.connector.kafka.sink.KafkaSink;
 import org.apache.flink.connector.kafka.source.KafkaSource;
 import org.apache.flink.connector.kafka.source.enumerator.initializer.OffsetsInitializer;
-import org.apache.flink.formats.json.JsonDeserializationSchema;
+import org.apache.flink.contrib.streaming.state.PredefinedOptions;
+import org.apache.flink.contrib.streaming.state.RocksDBConfigurableOptions;
+import org.apache.flink.contrib.streaming.state.RocksDBOptions;
+import org.apache.flink.core.execution.CheckpointingMode;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.streaming.api.datastream.AsyncDataStream;
 import org.apache.flink.streaming.api.datastream.DataStream;
+import org.apache.flink.streaming.api.datastream.DataStreamUtils;
+import org.apache.flink.streaming.api.datastream.KeyedStream;
 import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
+import org.apache.flink.streaming.api.datastream.WindowedStream;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
-import org.apache.flink.streaming.api.windowing.time.Time;
+import org.apache.flink.streaming.api.windowing.assigners.TumblingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.types.Either;
 import org.apache.flink.util.OutputTag;
+import org.apache.flink.util.TimeUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Apache Flink application that processes CPU usage events from Kafka
@@ -35,109 +92,599 @@ public class CpuUsageProcessorApplication {
     private static final String KAFKA_BOOTSTRAP_SERVERS = System.getenv().getOrDefault("KAFKA_BOOTSTRAP_SERVERS", "localhost:9092");
     private static final String INPUT_TOPIC = System.getenv().getOrDefault("KAFKA_INPUT_TOPIC", "events");
     private static final String OUTPUT_TOPIC = System.getenv().getOrDefault("KAFKA_OUTPUT_TOPIC", "processed-events");
+    // Events too late for their windows, written in the input format
+    private static final String LATE_EVENTS_TOPIC = System.getenv().getOrDefault("KAFKA_LATE_EVENTS_TOPIC", "late-events");
+    // Records that could not be decoded, with the decoding error in a header
+    private static final String MALFORMED_EVENTS_TOPIC = System.getenv().getOrDefault("KAFKA_MALFORMED_EVENTS_TOPIC", "malformed-events");
     private static final String CONSUMER_GROUP = System.getenv().getOrDefault("KAFKA_CONSUMER_GROUP", "cpu-usage-processor");
+    // "json" (CpuUsageEventJsonSchema) or "binary" (CpuUsageEventBinarySchema), must match the producer's KAFKA_EVENT_FORMAT
+    private static final String INPUT_FORMAT = System.getenv().getOrDefault("KAFKA_INPUT_FORMAT", "json");
+    // "sliding" copies each event into every overlapping window, "pane" adds it once to a slide-sized pane
+    private static final String WINDOW_MODE = System.getenv().getOrDefault("PROCESSOR_WINDOW_MODE", "sliding");
+    // "exact" keeps every sample, "sketch" keeps a bounded-size quantile sketch,
+    // "histogram" counts samples in fixed-resolution buckets over 0-100%
+    private static final String ACCUMULATOR = System.getenv().getOrDefault("PROCESSOR_ACCUMULATOR", "exact");
+    private static final double SKETCH_RELATIVE_ACCURACY = Double.parseDouble(System.getenv().getOrDefault(
+            "PROCESSOR_SKETCH_RELATIVE_ACCURACY", String.valueOf(CpuUsageSketchAggregator.DEFAULT_RELATIVE_ACCURACY)));
+    private static final double HISTOGRAM_RESOLUTION = Double.parseDouble(System.getenv().getOrDefault(
+            "PROCESSOR_HISTOGRAM_RESOLUTION", String.valueOf(CpuUsageHistogramAggregator.DEFAULT_RESOLUTION)));
+    // Percentiles reported with every result next to the p95, max, mean and event count
+    private static final ResultPercentiles PERCENTILES = ResultPercentiles.parse(
+            System.getenv().getOrDefault("PROCESSOR_PERCENTILES", "50,90,99"));
+
+    // How long past the allowed lateness late events still correct their windows, 0 disables corrections;
+    // needs the histogram or sketch accumulator, as every window's accumulator is kept for that long
+    private static final Duration CORRECTION_HORIZON = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("PROCESSOR_CORRECTION_HORIZON_MS", "0")));
+
+    // Late events refire their already fired windows at most once per interval of event time, 0 fires on every late event
+    private static final Duration LATE_FIRING_INTERVAL = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("PROCESSOR_LATE_FIRING_INTERVAL_MS", "5000")));
+
+    // Events are combined per device and slide into partial accumulators for this long before the shuffle
+    // (or until max events are buffered), 0 disables pre-aggregation; requires the sliding window mode
+    private static final Duration PREAGGREGATION_INTERVAL = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("PROCESSOR_PREAGGREGATION_INTERVAL_MS", "0")));
+    private static final int PREAGGREGATION_MAX_EVENTS = Integer.parseInt(
+            System.getenv().getOrDefault("PROCESSOR_PREAGGREGATION_MAX_EVENTS", "1000"));
+
+    // With more than one bucket, pre-aggregation runs after a shuffle that spreads each hot device over that many
+    // subtasks rather than chained to the source. Hot devices are the listed ones and those with at least the
+    // given share of the events (0 for listed devices only)
+    private static final int SALT_BUCKETS = Integer.parseInt(System.getenv().getOrDefault("PROCESSOR_SALT_BUCKETS", "0"));
+    private static final String HOT_DEVICES = System.getenv().getOrDefault("PROCESSOR_HOT_DEVICES", "");
+    private static final double HOT_DEVICE_SHARE = Double.parseDouble(System.getenv().getOrDefault("PROCESSOR_HOT_DEVICE_SHARE", "0.05"));
+
+    // Results whose p95 moved less than the epsilon from the device's last emitted one are dropped, and at most max per
+    // interval results are emitted per device per interval, the latest one held back over the cap when the interval
+    // ends. 0 disables each
+    private static final double EMIT_EPSILON = Double.parseDouble(System.getenv().getOrDefault("PROCESSOR_EMIT_EPSILON", "0"));
+    private static final int EMIT_MAX_PER_INTERVAL = Integer.parseInt(System.getenv().getOrDefault("PROCESSOR_EMIT_MAX_PER_INTERVAL", "0"));
+    private static final Duration EMIT_INTERVAL = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("PROCESSOR_EMIT_INTERVAL_MS", "30000")));
+
+    // Keyed state of the pane, correction and result filter stages that was not written for this long expires,
+    // so state of devices that stopped reporting does not pile up; 0 keeps state until the operators clear it
+    private static final Duration IDLE_STATE_TTL = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("PROCESSOR_IDLE_STATE_TTL_MS", "3600000")));
+
+    // Tumbling rollup levels, e.g. 1m,5m,1h, each a multiple of the previous one (the first of the window size) and
+    // built by merging its accumulators; level results go to <KAFKA_OUTPUT_TOPIC>-<level>, e.g. processed-events-1m.
+    // Empty disables rollups; they need the histogram or sketch accumulator
+    private static final String ROLLUPS = System.getenv().getOrDefault("PROCESSOR_ROLLUPS", "");
+
+    // With a device database URL, events are also aggregated per device group (the devices table's site,
+    // customer or pool column) into <KAFKA_OUTPUT_TOPIC>-groups. Groups are cached per subtask for the TTL
+    private static final String GROUP_DB_URL = System.getenv().getOrDefault("PROCESSOR_GROUP_DB_URL", "");
+    private static final String GROUP_DB_USER = System.getenv().getOrDefault("PROCESSOR_GROUP_DB_USER", "postgres");
+    private static final String GROUP_DB_PASSWORD = System.getenv().getOrDefault("PROCESSOR_GROUP_DB_PASSWORD", "postgres");
+    private static final String GROUP_COLUMN = System.getenv().getOrDefault("PROCESSOR_GROUP_COLUMN", "site");
+    private static final int GROUP_CACHE_SIZE = Integer.parseInt(System.getenv().getOrDefault("PROCESSOR_GROUP_CACHE_SIZE", "100000"));
+    private static final Duration GROUP_CACHE_TTL = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("PROCESSOR_GROUP_CACHE_TTL_MS", "600000")));
+    private static final Duration GROUP_LOOKUP_TIMEOUT = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("PROCESSOR_GROUP_LOOKUP_TIMEOUT_MS", "5000")));
+    // Events waiting for their group per subtask before the lookup stage backpressures
+    private static final int GROUP_LOOKUP_CAPACITY = 1000;
+
+    // "idleness" derives watermarks per Kafka partition and skips partitions idle for 10s; "aligned" additionally
+    // pauses the partitions (and source readers) whose watermark runs more than the max drift ahead of the
+    // slowest one, so a backlogged partition does not pile up window state for the others
+    private static final String WATERMARK_MODE = System.getenv().getOrDefault("PROCESSOR_WATERMARK_MODE", "idleness");
+    private static final Duration WATERMARK_MAX_DRIFT = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("PROCESSOR_WATERMARK_MAX_DRIFT_MS", "30000")));
+
+    // Database the results are also upserted into directly, bypassing Kafka and the handler; empty to disable
+    private static final String JDBC_SINK_URL = System.getenv().getOrDefault("PROCESSOR_JDBC_SINK_URL", "");
+    private static final String JDBC_SINK_USER = System.getenv().getOrDefault("PROCESSOR_JDBC_SINK_USER", "postgres");
+    private static final String JDBC_SINK_PASSWORD = System.getenv().getOrDefault("PROCESSOR_JDBC_SINK_PASSWORD", "postgres");
+    // Results per database write, and the longest a result waits for one; checkpoints also write
+    private static final int JDBC_SINK_BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("PROCESSOR_JDBC_SINK_BATCH_SIZE", "500"));
+    private static final Duration JDBC_SINK_INTERVAL = Duration.ofMillis(Long.parseLong(
+            System.getenv().getOrDefault("PROCESSOR_JDBC_SINK_INTERVAL_MS", "200")));
+
+    // Port of the Prometheus metrics reporter of the embedded cluster, empty to disable.
+    // On a Flink cluster reporters come from the cluster configuration instead.
+    private static final String METRICS_PORT = System.getenv().getOrDefault("PROCESSOR_METRICS_PORT", "9249");
+
+    // "disabled" keeps window state on the heap without checkpoints, "rocksdb" keeps it in embedded RocksDB
+    // with incremental checkpoints to PROCESSOR_CHECKPOINT_DIR
+    private static final String CHECKPOINTING = System.getenv().getOrDefault("PROCESSOR_CHECKPOINTING", "disabled");
+    private static final String CHECKPOINT_DIR = System.getenv().getOrDefault("PROCESSOR_CHECKPOINT_DIR", "file:///tmp/flink-checkpoints");
+    private static final long CHECKPOINT_INTERVAL_MS = Long.parseLong(System.getenv().getOrDefault("PROCESSOR_CHECKPOINT_INTERVAL_MS", "30000"));
+    // Managed memory of the embedded cluster, which bounds RocksDB's block cache and write buffers
+    private static final String MANAGED_MEMORY = System.getenv().getOrDefault("PROCESSOR_MANAGED_MEMORY", "256m");
+    // Retained checkpoint to resume from after a restart, e.g. file:///tmp/flink-checkpoints/<job id>/chk-42
+    private static final String RESTORE_PATH = System.getenv().getOrDefault("PROCESSOR_RESTORE_PATH", "");
+    // Number of key groups, the highest parallelism the keyed state can be rescaled to. 128 is what Flink derives
+    // for up to 128 subtasks, so checkpoints taken without it keep their key groups; it cannot change on restore
+    private static final int MAX_PARALLELISM = Integer.parseInt(System.getenv().getOrDefault("PROCESSOR_MAX_PARALLELISM", "128"));
+    // "default" fixes the parallelism at submission, "adaptive" runs with the slots available and rescales from
+    // the last checkpoint when slots come or go, "reactive" also always uses all slots, up to PROCESSOR_MAX_PARALLELISM.
+    // On a Flink cluster the scheduler comes from the cluster configuration instead.
+    private static final String SCHEDULER = System.getenv().getOrDefault("PROCESSOR_SCHEDULER", "default");
+
+    private static final Duration WINDOW_SIZE = Duration.of(30, ChronoUnit.SECONDS);
+    private static final Duration WINDOW_SLIDE = Duration.of(5, ChronoUnit.SECONDS);
+    private static final Duration ALLOWED_LATENESS = Duration.of(35, ChronoUnit.SECONDS);
+    private static final Duration MAX_OUT_OF_ORDERNESS = Duration.of(35, ChronoUnit.SECONDS);
+    // Partitions without records for this long no longer hold back the watermark
+    private static final Duration IDLE_TIMEOUT = Duration.of(10, ChronoUnit.SECONDS);
 
     public static void main(String[] args) throws Exception {
         LOG.info("Starting CPU Usage Processor Application - 95th Percentile Calculator");
 
         // Set up the execution environment
-        final StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
-        final OutputTag<CpuUsageEvent> lateEventsTag = new OutputTag<>("late-events") {
-        };
-
-        //TODO: Requires testing
-        //Disable checkpointing for testing - state is too large for memory-backed storage
-        //env.enableCheckpointing(10000, CheckpointingMode.EXACTLY_ONCE);
-        //env.getCheckpointConfig().setMinPauseBetweenCheckpoints(500);
-        //env.getCheckpointConfig().setCheckpointTimeout(60000);
-        //env.setStateBackend(new RocksDBStateBackend("s3://my-bucket/flink-checkpoints"));
+        final StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment(jobConfiguration());
 
         // Create Kafka source
-        KafkaSource<CpuUsageEvent> source = KafkaSource.<CpuUsageEvent>builder()
+        KafkaSource<Either<MalformedCpuUsageEvent, CpuUsageEvent>> source = KafkaSource
+                .<Either<MalformedCpuUsageEvent, CpuUsageEvent>>builder()
                 .setBootstrapServers(KAFKA_BOOTSTRAP_SERVERS)
                 .setTopics(INPUT_TOPIC)
                 .setGroupId(CONSUMER_GROUP)
                 .setStartingOffsets(OffsetsInitializer.earliest())
-                .setValueOnlyDeserializer(new JsonDeserializationSchema<>(CpuUsageEvent.class))
+                .setDeserializer(new PartitionWatermarkLagSchema(inputDeserializer(), MAX_OUT_OF_ORDERNESS, IDLE_TIMEOUT))
                 .build();
 
-        // Create Kafka sink for processed events
-        KafkaSink<String> sink = KafkaSink.<String>builder()
+        // Create Kafka sink for events too late for any window, keyed by deviceId
+        KafkaSink<CpuUsageEvent> lateEventsSink = KafkaSink.<CpuUsageEvent>builder()
                 .setBootstrapServers(KAFKA_BOOTSTRAP_SERVERS)
-                .setRecordSerializer(KafkaRecordSerializationSchema.builder()
-                        .setTopic(OUTPUT_TOPIC)
-                        .setValueSerializationSchema(new SimpleStringSchema())
-                        .build())
+                .setRecordSerializer(new LateEventSerializationSchema(LATE_EVENTS_TOPIC, INPUT_FORMAT))
                 .setDeliveryGuarantee(DeliveryGuarantee.AT_LEAST_ONCE)
                 .build();
 
-        ObjectMapper objectMapper = new ObjectMapper();
-
-        // Create data processing pipeline
-        DataStream<CpuUsageEvent> kafkaStream = env.fromSource(
-                source,
-                WatermarkStrategy.<CpuUsageEvent>forBoundedOutOfOrderness(Duration.ofSeconds(35))
-                        .withIdleness(Duration.ofSeconds(10))
-                        .withTimestampAssigner((event, timestamp) -> {
-                            long eventTime = event.getTimestamp();
-                            long currentTime = System.currentTimeMillis();
-                            LOG.debug("Event time: {}, current time: {}, lag: {}ms",
-                                    eventTime, currentTime, currentTime - eventTime);
-                            return eventTime;
-                        }),
-                "Kafka Source"
-        );
-
-        SingleOutputStreamOperator<ProcessedCpuEvent> processedEvents = kafkaStream
-                // Filter out invalid events
-                .filter(event -> event != null && event.getDeviceId() != null)
-                .name("Filter Valid Events")
+        // Create Kafka sink for records that could not be decoded
+        KafkaSink<MalformedCpuUsageEvent> malformedEventsSink = KafkaSink.<MalformedCpuUsageEvent>builder()
+                .setBootstrapServers(KAFKA_BOOTSTRAP_SERVERS)
+                .setRecordSerializer(new MalformedEventSerializationSchema(MALFORMED_EVENTS_TOPIC))
+                .setDeliveryGuarantee(DeliveryGuarantee.AT_LEAST_ONCE)
+                .build();
 
-                // Key by deviceId for windowing
-                .keyBy(CpuUsageEvent::getDeviceId)
-
-                // Apply sliding event-time window of 30 seconds, sliding every 5 seconds
-                .window(SlidingEventTimeWindows.of(Duration.of(30, ChronoUnit.SECONDS), Duration.of(5, ChronoUnit.SECONDS)))
-                .allowedLateness(Duration.of(35, ChronoUnit.SECONDS))
-                .sideOutputLateData(lateEventsTag)
-
-                // Aggregate events within the window
-                .aggregate(new CpuUsageAggregator())
-                .name("Aggregate CPU Usage");
-
-        // Convert processed events to JSON and send to output topic
-        processedEvents
-                .map(event -> {
-                    try {
-                        String json = objectMapper.writeValueAsString(event);
-                        LOG.info("Processed event: {}", event);
-                        return json;
-                    } catch (Exception e) {
-                        LOG.error("Failed to serialize processed event: {}", event, e);
-                        return "{}";
-                    }
-                })
-                .name("Serialize to JSON")
-                .sinkTo(sink)
-                .name("Kafka Sink");
-
-        // Log late events for monitoring
-        processedEvents.getSideOutput(lateEventsTag)
-                .map(ev -> "Late event: " + ev.getDeviceId() + " at " + ev.getTimestamp())
-                .print();
-
-        // Also log percentile results
-        processedEvents
-                .map(event -> {
-                    LOG.info("95th Percentile Result - Device: {}, Percentile95: {}%, Window: {} - {}",
-                            event.getDeviceId(), event.getPercentile95(),
-                            event.getWindowStart(), event.getWindowEnd());
-                    return event;
-                })
-                .name("Log Percentile Results");
+        // Create data processing pipeline, writing results to Kafka sinks keyed by deviceId
+        DataStream<Either<MalformedCpuUsageEvent, CpuUsageEvent>> kafkaStream = env
+                .fromSource(source, watermarkStrategy(), "Kafka Source")
+                .uid("kafka-source");
+        pipeline(kafkaStream, ACCUMULATOR, WINDOW_SIZE, CpuUsageProcessorApplication::resultSink, lateEventsSink,
+                malformedEventsSink);
+        LOG.info("Input format: {}, window mode: {}, accumulator: {}, pre-aggregation interval: {}, salt buckets: {}, rollups: {}, watermark mode: {}, checkpointing: {}, correction horizon: {}, scheduler: {}, max parallelism: {}",
+                INPUT_FORMAT, WINDOW_MODE, ACCUMULATOR, PREAGGREGATION_INTERVAL, SALT_BUCKETS, ROLLUPS, WATERMARK_MODE, CHECKPOINTING, CORRECTION_HORIZON,
+                SCHEDULER, MAX_PARALLELISM);
 
         // Execute the job
         LOG.info("Executing CPU Usage Processor job...");
         env.execute("CPU Usage Processor");
     }
+
+    /**
+     * Builds the job from the timestamped input events to the sinks, so it can run on any source; the Kafka
+     * job and the pipeline benchmark share it. Records the source could not decode come as the left side of
+     * {@code events} and go to {@code malformedEventsSink}. {@code resultSinks} creates the sink of a results topic:
+     * {@code KAFKA_OUTPUT_TOPIC}, a rollup level's or the groups' topic. The other settings come from the
+     * environment.
+     * <p>
+     * Every operator that keeps state, and every sink, has a fixed uid so its state is restored into the same
+     * operator after a rescale or a change of the job graph. Changing the window mode or the accumulator changes
+     * the state of the windows and needs a fresh start.
+     */
+    static void pipeline(
+            DataStream<Either<MalformedCpuUsageEvent, CpuUsageEvent>> events,
+            String accumulator,
+            Duration windowSize,
+            Function<String, Sink<ProcessedCpuEvent>> resultSinks,
+            Sink<CpuUsageEvent> lateEventsSink,
+            Sink<MalformedCpuUsageEvent> malformedEventsSink) {
+        if (windowSize.toMillis() <= 0 || windowSize.toMillis() % WINDOW_SLIDE.toMillis() != 0) {
+            throw new IllegalArgumentException("Window size must be a positive multiple of " + WINDOW_SLIDE + ": " + windowSize);
+        }
+        boolean mergeableAccumulator = "histogram".equalsIgnoreCase(accumulator) || "sketch".equalsIgnoreCase(accumulator);
+        if (!CORRECTION_HORIZON.isZero() && !mergeableAccumulator) {
+            throw new IllegalArgumentException("PROCESSOR_CORRECTION_HORIZON_MS requires PROCESSOR_ACCUMULATOR histogram or sketch");
+        }
+        if (!ROLLUPS.isBlank() && !mergeableAccumulator) {
+            throw new IllegalArgumentException("PROCESSOR_ROLLUPS requires PROCESSOR_ACCUMULATOR histogram or sketch");
+        }
+        // Only a sketch partial is smaller than the events it combines: a histogram partial is a dense int[10001] and
+        // an exact one copies every sample, which would grow the shuffle instead of shrinking it
+        if (!PREAGGREGATION_INTERVAL.isZero() && !"sketch".equalsIgnoreCase(accumulator)) {
+            throw new IllegalArgumentException("PROCESSOR_PREAGGREGATION_INTERVAL_MS requires PROCESSOR_ACCUMULATOR sketch");
+        }
+        final OutputTag<CpuUsageEvent> lateEventsTag = new OutputTag<>("late-events") {
+        };
+        final OutputTag<MalformedCpuUsageEvent> malformedEventsTag = new OutputTag<>("malformed-events") {
+        };
+
+        // Filter out invalid events into a side output; also registers the input metrics
+        SingleOutputStreamOperator<CpuUsageEvent> validEvents = events
+                .process(new ValidEventFilter(malformedEventsTag))
+                .name("Filter Valid Events")
+                .uid("filter-valid-events");
+
+        // Keep the invalid events in their own topic
+        validEvents.getSideOutput(malformedEventsTag)
+                .sinkTo(malformedEventsSink)
+                .name("Malformed Events Sink")
+                .uid("malformed-events-sink");
+
+        DataStream<ProcessedCpuEvent> results;
+        if ("histogram".equalsIgnoreCase(accumulator)) {
+            results = windowResults(validEvents, new CpuUsageHistogramAggregator(HISTOGRAM_RESOLUTION, PERCENTILES),
+                    TypeInformation.of(CpuUsageHistogramAggregator.HistogramAccumulator.class), windowSize, lateEventsTag,
+                    resultSinks, lateEventsSink);
+        } else if ("sketch".equalsIgnoreCase(accumulator)) {
+            results = windowResults(validEvents, new CpuUsageSketchAggregator(SKETCH_RELATIVE_ACCURACY, PERCENTILES),
+                    TypeInformation.of(CpuUsageSketchAggregator.SketchAccumulator.class), windowSize, lateEventsTag,
+                    resultSinks, lateEventsSink);
+        } else {
+            results = windowResults(validEvents, new CpuUsageAggregator(PERCENTILES),
+                    TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class), windowSize, lateEventsTag,
+                    resultSinks, lateEventsSink);
+        }
+
+        if (EMIT_EPSILON > 0 || EMIT_MAX_PER_INTERVAL > 0) {
+            // Drop results that barely moved from the device's last one and cap the results per device. The window
+            // and correction stages are keyed by device, so their results need no shuffle
+            results = DataStreamUtils
+                    .reinterpretAsKeyedStream(results, ProcessedCpuEvent::getDeviceId, Types.STRING)
+                    .process(new ResultEmissionFilter(EMIT_EPSILON, EMIT_MAX_PER_INTERVAL, EMIT_INTERVAL, ALLOWED_LATENESS)
+                            .withIdleStateTtl(IDLE_STATE_TTL))
+                    .name("Filter Results")
+                    .uid("filter-results");
+        }
+
+        // Send processed events and corrections to output topic as JSON
+        results
+                .sinkTo(resultSinks.apply(OUTPUT_TOPIC))
+                .name("Kafka Sink")
+                .uid("kafka-sink");
+
+        if (!JDBC_SINK_URL.isEmpty()) {
+            // Low latency path to the results table, next to the topic
+            results
+                    .sinkTo(new JdbcResultSink(JDBC_SINK_URL, JDBC_SINK_USER, JDBC_SINK_PASSWORD, JDBC_SINK_BATCH_SIZE, JDBC_SINK_INTERVAL))
+                    .name("JDBC Sink")
+                    .uid("jdbc-sink");
+        }
+    }
+
+    /**
+     * Configuration of the embedded cluster and the job: metrics reporter, state backend, checkpointing,
+     * key groups and scheduler
+     */
+    private static Configuration jobConfiguration() {
+        Configuration configuration = new Configuration();
+        if (!METRICS_PORT.isEmpty()) {
+            configuration.setString("metrics.reporter.prom.factory.class", "org.apache.flink.metrics.prometheus.PrometheusReporterFactory");
+            configuration.setString("metrics.reporter.prom.port", METRICS_PORT);
+        }
+
+        if ("rocksdb".equalsIgnoreCase(CHECKPOINTING)) {
+            configuration.set(StateBackendOptions.STATE_BACKEND, "rocksdb");
+            // Only upload the SST files created since the last checkpoint
+            configuration.set(CheckpointingOptions.INCREMENTAL_CHECKPOINTS, true);
+            configuration.set(CheckpointingOptions.CHECKPOINTS_DIRECTORY, CHECKPOINT_DIR);
+            configuration.set(CheckpointingOptions.CHECKPOINTING_INTERVAL, Duration.ofMillis(CHECKPOINT_INTERVAL_MS));
+            configuration.set(CheckpointingOptions.CHECKPOINTING_CONSISTENCY_MODE, CheckpointingMode.EXACTLY_ONCE);
+            configuration.set(CheckpointingOptions.MIN_PAUSE_BETWEEN_CHECKPOINTS, Duration.ofMillis(CHECKPOINT_INTERVAL_MS / 2));
+            configuration.set(CheckpointingOptions.CHECKPOINTING_TIMEOUT, Duration.ofMinutes(1));
+            // Keep the last checkpoint when the job is cancelled, so it can be passed as PROCESSOR_RESTORE_PATH
+            configuration.set(CheckpointingOptions.EXTERNALIZED_CHECKPOINT_RETENTION,
+                    ExternalizedCheckpointRetention.RETAIN_ON_CANCELLATION);
+
+            // Size RocksDB's memory from managed memory rather than per column family defaults
+            configuration.set(TaskManagerOptions.MANAGED_MEMORY_SIZE, MemorySize.parse(MANAGED_MEMORY));
+            configuration.set(RocksDBOptions.USE_MANAGED_MEMORY, true);
+            configuration.set(RocksDBOptions.PREDEFINED_OPTIONS, PredefinedOptions.FLASH_SSD_OPTIMIZED.name());
+            // Window state is read by key for every event, so skip SST files without the key
+            configuration.set(RocksDBConfigurableOptions.USE_BLOOM_FILTER, true);
+        }
+
+        if (!RESTORE_PATH.isEmpty()) {
+            configuration.set(StateRecoveryOptions.SAVEPOINT_PATH, RESTORE_PATH);
+        }
+
+        if (MAX_PARALLELISM < 1 || MAX_PARALLELISM > KeyGroupRangeAssignment.UPPER_BOUND_MAX_PARALLELISM) {
+            throw new IllegalArgumentException("PROCESSOR_MAX_PARALLELISM must be between 1 and "
+                    + KeyGroupRangeAssignment.UPPER_BOUND_MAX_PARALLELISM + ": " + MAX_PARALLELISM);
+        }
+        configuration.set(PipelineOptions.MAX_PARALLELISM, MAX_PARALLELISM);
+        if ("adaptive".equalsIgnoreCase(SCHEDULER) || "reactive".equalsIgnoreCase(SCHEDULER)) {
+            configuration.set(JobManagerOptions.SCHEDULER, JobManagerOptions.SchedulerType.Adaptive);
+            if ("reactive".equalsIgnoreCase(SCHEDULER)) {
+                configuration.set(JobManagerOptions.SCHEDULER_MODE, SchedulerExecutionMode.REACTIVE);
+            }
+            if (!"rocksdb".equalsIgnoreCase(CHECKPOINTING)) {
+                // The rescaled job restarts from the last checkpoint, without one the windows start empty
+                LOG.warn("PROCESSOR_SCHEDULER {} without PROCESSOR_CHECKPOINTING loses the window state on every rescale", SCHEDULER);
+            }
+        } else if (!"default".equalsIgnoreCase(SCHEDULER)) {
+            throw new IllegalArgumentException("PROCESSOR_SCHEDULER must be default, adaptive or reactive: " + SCHEDULER);
+        }
+        return configuration;
+    }
+
+    /**
+     * The Kafka source applies the strategy to every partition and emits the lowest of their watermarks.
+     * Malformed records have no timestamp and do not move the watermark.
+     * In the aligned mode all sources of the job share one alignment group.
+     */
+    static WatermarkStrategy<Either<MalformedCpuUsageEvent, CpuUsageEvent>> watermarkStrategy() {
+        WatermarkStrategy<Either<MalformedCpuUsageEvent, CpuUsageEvent>> strategy = WatermarkStrategy
+                .<Either<MalformedCpuUsageEvent, CpuUsageEvent>>forBoundedOutOfOrderness(MAX_OUT_OF_ORDERNESS)
+                .withIdleness(IDLE_TIMEOUT)
+                .withTimestampAssigner((decoded, timestamp) -> decoded.isRight() ? decoded.right().getTimestamp() : Long.MIN_VALUE);
+        if ("aligned".equalsIgnoreCase(WATERMARK_MODE)) {
+            if (WATERMARK_MAX_DRIFT.isNegative() || WATERMARK_MAX_DRIFT.isZero()) {
+                throw new IllegalArgumentException("PROCESSOR_WATERMARK_MAX_DRIFT_MS must be positive: " + WATERMARK_MAX_DRIFT);
+            }
+            return strategy.withWatermarkAlignment("cpu-events", WATERMARK_MAX_DRIFT, Duration.ofSeconds(1));
+        }
+        return strategy;
+    }
+
+    private static DeserializationSchema<Either<MalformedCpuUsageEvent, CpuUsageEvent>> inputDeserializer() {
+        if ("binary".equalsIgnoreCase(INPUT_FORMAT)) {
+            return new CpuUsageEventBinarySchema();
+        }
+        return new CpuUsageEventJsonSchema();
+    }
+
+    /**
+     * Window results and corrections of the valid events; events too late for their windows are written to the late events sink,
+     * rollups and group results to their own sinks
+     */
+    private static <ACC> DataStream<ProcessedCpuEvent> windowResults(
+            DataStream<CpuUsageEvent> validEvents,
+            CpuUsageAggregateFunction<ACC> aggregateFunction,
+            TypeInformation<ACC> accumulatorType,
+            Duration windowSize,
+            OutputTag<CpuUsageEvent> lateEventsTag,
+            Function<String, Sink<ProcessedCpuEvent>> resultSinks,
+            Sink<CpuUsageEvent> lateEventsSink) {
+        SingleOutputStreamOperator<ProcessedCpuEvent> processedEvents;
+        DataStream<CpuUsageEvent> lateEvents;
+        // Window accumulators handed to the correction stage and the rollups, only when one of them is enabled
+        final OutputTag<PartialAccumulator<ACC>> windowAccumulatorsTag = CORRECTION_HORIZON.isZero() && ROLLUPS.isBlank() ? null
+                : new OutputTag<PartialAccumulator<ACC>>("window-accumulators", PartialAccumulator.typeInfo(accumulatorType));
+        if (SALT_BUCKETS > 1 && PREAGGREGATION_INTERVAL.isZero()) {
+            throw new IllegalArgumentException("PROCESSOR_SALT_BUCKETS requires PROCESSOR_PREAGGREGATION_INTERVAL_MS");
+        }
+        if (!PREAGGREGATION_INTERVAL.isZero()) {
+            if ("pane".equalsIgnoreCase(WINDOW_MODE)) {
+                throw new IllegalArgumentException("PROCESSOR_PREAGGREGATION_INTERVAL_MS requires PROCESSOR_WINDOW_MODE sliding");
+            }
+            DataStream<CpuUsageEvent> combinerInput = validEvents;
+            if (SALT_BUCKETS > 1) {
+                // First phase of the salted mode: hot devices are combined on several subtasks, the windows merge their partials
+                Set<String> hotDevices = Arrays.stream(HOT_DEVICES.split(","))
+                        .map(String::trim)
+                        .filter(deviceId -> !deviceId.isEmpty())
+                        .collect(Collectors.toSet());
+                combinerInput = validEvents.partitionCustom(
+                        new HotDeviceSaltingPartitioner(hotDevices, SALT_BUCKETS, HOT_DEVICE_SHARE), CpuUsageEvent::getDeviceId);
+            }
+
+            // Combine events per device and slide before the keyed windows, so only partial accumulators are sent to them
+            SingleOutputStreamOperator<PartialAccumulator<ACC>> partials = combinerInput
+                    .transform("Pre-aggregate", PartialAccumulator.typeInfo(accumulatorType),
+                            new PreAggregationOperator<>(aggregateFunction, windowSize, WINDOW_SLIDE, ALLOWED_LATENESS,
+                                    PREAGGREGATION_INTERVAL, PREAGGREGATION_MAX_EVENTS, lateEventsTag))
+                    .uid("pre-aggregate");
+            KeyedStream<PartialAccumulator<ACC>, String> keyedPartials = partials.keyBy(PartialAccumulator::getDeviceId, Types.STRING);
+
+            PartialAccumulatorMerger<ACC> partialMerger = new PartialAccumulatorMerger<>(aggregateFunction);
+            processedEvents = slidingWindows(keyedPartials, partialMerger, aggregateFunction, accumulatorType, windowSize, null,
+                    windowAccumulatorsTag);
+            lateEvents = partials.getSideOutput(lateEventsTag);
+        } else {
+            // Key by deviceId for windowing
+            KeyedStream<CpuUsageEvent, String> keyedEvents = validEvents.keyBy(CpuUsageEvent::getDeviceId);
+
+            processedEvents = aggregate(keyedEvents, aggregateFunction, accumulatorType, windowSize, lateEventsTag,
+                    windowAccumulatorsTag);
+            lateEvents = processedEvents.getSideOutput(lateEventsTag);
+        }
+        DataStream<ProcessedCpuEvent> corrections = correctLateWindows(processedEvents, windowAccumulatorsTag, lateEvents,
+                aggregateFunction, accumulatorType, windowSize);
+        rollUp(processedEvents, windowAccumulatorsTag, aggregateFunction, accumulatorType, windowSize, resultSinks);
+        groupWindows(validEvents, aggregateFunction, accumulatorType, windowSize, resultSinks);
+
+        // Count late events for monitoring and keep them in their own topic
+        lateEvents
+                .map(new LateEventCounter())
+                .name("Count Late Events")
+                .uid("count-late-events")
+                .sinkTo(lateEventsSink)
+                .name("Late Events Sink")
+                .uid("late-events-sink");
+
+        return corrections == null ? processedEvents : processedEvents.union(corrections);
+    }
+
+    /**
+     * Tumbling rollups of the configured levels, each writing its results to its own topic. The first level
+     * merges the accumulators of the base sliding windows that tile it, every coarser level those of the
+     * previous one, all on the partitions of the window stage, without reading or shuffling the events again.
+     * Every level keeps the allowed lateness of the base windows and fires again with the late firings of the
+     * finer windows; late accumulators past it go to a side output and are counted.
+     */
+    private static <ACC> void rollUp(
+            SingleOutputStreamOperator<ProcessedCpuEvent> processedEvents,
+            OutputTag<PartialAccumulator<ACC>> windowAccumulatorsTag,
+            CpuUsageAggregateFunction<ACC> aggregateFunction,
+            TypeInformation<ACC> accumulatorType,
+            Duration windowSize,
+            Function<String, Sink<ProcessedCpuEvent>> resultSinks) {
+        if (ROLLUPS.isBlank()) {
+            return;
+        }
+        TypeInformation<PartialAccumulator<ACC>> partialType = PartialAccumulator.typeInfo(accumulatorType);
+        final OutputTag<ProcessedCpuEvent> rollupResultsTag = new OutputTag<>("rollup-results") {
+        };
+        final OutputTag<PartialAccumulator<ACC>> lateAccumulatorsTag = new OutputTag<>("late-rollup-accumulators", partialType);
+
+        // The base windows starting at a multiple of their size tile time, so they make up the first level
+        DataStream<PartialAccumulator<ACC>> previousAccumulators = processedEvents.getSideOutput(windowAccumulatorsTag)
+                .transform("Select Tiling Windows", partialType, new TilingWindowSelector<>(windowSize))
+                .uid("select-tiling-windows");
+        Duration previousLevel = windowSize;
+        DataStream<PartialAccumulator<ACC>> lateAccumulators = null;
+        for (String level : ROLLUPS.split(",")) {
+            if (level.isBlank()) {
+                continue;
+            }
+            Duration size = TimeUtils.parseDuration(level.trim());
+            if (size.toMillis() % previousLevel.toMillis() != 0) {
+                throw new IllegalArgumentException("Rollup level " + level + " must be a multiple of " + previousLevel);
+            }
+
+            // Already partitioned by device, so no level needs a shuffle
+            SingleOutputStreamOperator<PartialAccumulator<ACC>> accumulators = DataStreamUtils
+                    .reinterpretAsKeyedStream(previousAccumulators, PartialAccumulator::getDeviceId, Types.STRING)
+                    .window(TumblingEventTimeWindows.of(size))
+                    .allowedLateness(ALLOWED_LATENESS)
+                    .sideOutputLateData(lateAccumulatorsTag)
+                    .process(new RollupWindowFunction<>(aggregateFunction, rollupResultsTag), partialType)
+                    .name("Roll Up " + level.trim())
+                    .uid("roll-up-" + level.trim());
+
+            String topic = OUTPUT_TOPIC + "-" + level.trim();
+            accumulators.getSideOutput(rollupResultsTag)
+                    .sinkTo(resultSinks.apply(topic))
+                    .name("Kafka Sink " + topic)
+                    .uid("kafka-sink-" + level.trim());
+            lateAccumulators = lateAccumulators == null ? accumulators.getSideOutput(lateAccumulatorsTag)
+                    : lateAccumulators.union(accumulators.getSideOutput(lateAccumulatorsTag));
+
+            previousLevel = size;
+            previousAccumulators = accumulators;
+        }
+        if (lateAccumulators != null) {
+            lateAccumulators
+                    .process(new LateRollupCounter<>(), Types.VOID)
+                    .name("Count Late Rollup Accumulators")
+                    .uid("count-late-rollup-accumulators");
+        }
+    }
+
+    /**
+     * Sliding windows per device group when a device database is configured. Events are enriched with their
+     * group without waiting for lookups in order, as the async operator still keeps them between the same
+     * watermarks; the results carry the group in their deviceId and go to their own topic. Late events are
+     * only counted by the device windows.
+     */
+    private static <ACC> void groupWindows(
+            DataStream<CpuUsageEvent> validEvents,
+            CpuUsageAggregateFunction<ACC> aggregateFunction,
+            TypeInformation<ACC> accumulatorType,
+            Duration windowSize,
+            Function<String, Sink<ProcessedCpuEvent>> resultSinks) {
+        if (GROUP_DB_URL.isEmpty()) {
+            return;
+        }
+        DataStream<CpuUsageEvent> groupEvents = AsyncDataStream.unorderedWait(validEvents,
+                        new DeviceGroupEnrichmentFunction(new JdbcDeviceGroupLookup(GROUP_DB_URL, GROUP_DB_USER, GROUP_DB_PASSWORD, GROUP_COLUMN),
+                                GROUP_CACHE_SIZE, GROUP_CACHE_TTL),
+                        GROUP_LOOKUP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS, GROUP_LOOKUP_CAPACITY)
+                .name("Look Up Device Groups")
+                .uid("look-up-device-groups");
+
+        String topic = OUTPUT_TOPIC + "-groups";
+        slidingWindows(groupEvents.keyBy(CpuUsageEvent::getDeviceId), new AccumulatorPassThrough<>(aggregateFunction),
+                aggregateFunction, accumulatorType, windowSize, null, null)
+                .name("Aggregate Group CPU Usage")
+                .uid("aggregate-group-cpu-usage")
+                .sinkTo(resultSinks.apply(topic))
+                .name("Kafka Sink " + topic)
+                .uid("kafka-sink-groups");
+    }
+
+    /**
+     * Kafka sink for window results, keyed by deviceId
+     */
+    private static Sink<ProcessedCpuEvent> resultSink(String topic) {
+        return KafkaSink.<ProcessedCpuEvent>builder()
+                .setBootstrapServers(KAFKA_BOOTSTRAP_SERVERS)
+                .setRecordSerializer(new ProcessedCpuEventSerializationSchema(topic))
+                .setDeliveryGuarantee(DeliveryGuarantee.AT_LEAST_ONCE)
+                .build();
+    }
+
+    /**
+     * Recomputes windows that received events after their allowed lateness from the window accumulators the
+     * window stage hands over and its late events, or returns null when corrections are disabled
+     */
+    private static <ACC> DataStream<ProcessedCpuEvent> correctLateWindows(
+            SingleOutputStreamOperator<ProcessedCpuEvent> processedEvents,
+            OutputTag<PartialAccumulator<ACC>> windowAccumulatorsTag,
+            DataStream<CpuUsageEvent> lateEvents,
+            CpuUsageAggregateFunction<ACC> aggregateFunction,
+            TypeInformation<ACC> accumulatorType,
+            Duration windowSize) {
+        if (CORRECTION_HORIZON.isZero()) {
+            return null;
+        }
+        // Already partitioned by device, so the accumulators need no shuffle; the few late events are keyed again
+        return DataStreamUtils.reinterpretAsKeyedStream(processedEvents.getSideOutput(windowAccumulatorsTag),
+                        PartialAccumulator::getDeviceId, Types.STRING)
+                .connect(lateEvents.keyBy(CpuUsageEvent::getDeviceId))
+                .process(new LateEventCorrectionFunction<>(aggregateFunction, accumulatorType,
+                        windowSize, WINDOW_SLIDE, ALLOWED_LATENESS, CORRECTION_HORIZON).withIdleStateTtl(IDLE_STATE_TTL))
+                .name("Correct Late Windows")
+                .uid("correct-late-windows");
+    }
+
+    /**
+     * Applies the window (30 seconds in the job) sliding every 5 seconds with the configured window mode
+     */
+    private static <ACC> SingleOutputStreamOperator<ProcessedCpuEvent> aggregate(
+            KeyedStream<CpuUsageEvent, String> keyedEvents,
+            CpuUsageAggregateFunction<ACC> aggregateFunction,
+            TypeInformation<ACC> accumulatorType,
+            Duration windowSize,
+            OutputTag<CpuUsageEvent> lateEventsTag,
+            OutputTag<PartialAccumulator<ACC>> accumulatorsTag) {
+        if ("pane".equalsIgnoreCase(WINDOW_MODE)) {
+            // Same windows, built by merging six 5 second panes
+            return keyedEvents
+                    .process(new SlidingPaneFunction<>(aggregateFunction, accumulatorType, windowSize, WINDOW_SLIDE,
+                            ALLOWED_LATENESS, LATE_FIRING_INTERVAL, lateEventsTag)
+                            .withIdleStateTtl(IDLE_STATE_TTL)
+                            .withAccumulatorsOutput(accumulatorsTag))
+                    .name("Aggregate CPU Usage")
+                    .uid("aggregate-cpu-usage-panes");
+        }
+        return slidingWindows(keyedEvents, new AccumulatorPassThrough<>(aggregateFunction), aggregateFunction,
+                accumulatorType, windowSize, lateEventsTag, accumulatorsTag);
+    }
+
+    /**
+     * Sliding event-time window of the given size, sliding every 5 seconds, over events or partial accumulators.
+     * Late data and the accumulator of every firing go to their side outputs when tags are given.
+     */
+    private static <IN, ACC> SingleOutputStreamOperator<ProcessedCpuEvent> slidingWindows(
+            KeyedStream<IN, String> keyedInput,
+            AggregateFunction<IN, ACC, ACC> inputFunction,
+            CpuUsageAggregateFunction<ACC> aggregateFunction,
+            TypeInformation<ACC> accumulatorType,
+            Duration windowSize,
+            OutputTag<IN> lateDataTag,
+            OutputTag<PartialAccumulator<ACC>> accumulatorsTag) {
+        WindowedStream<IN, String, TimeWindow> windows = keyedInput
+                .window(SlidingEventTimeWindows.of(windowSize, WINDOW_SLIDE));
+        if (!LATE_FIRING_INTERVAL.isZero()) {
+            windows = windows.trigger(new CoalescingEventTimeTrigger(LATE_FIRING_INTERVAL, ALLOWED_LATENESS));
+        }
+        windows = windows.allowedLateness(ALLOWED_LATENESS);
+        if (lateDataTag != null) {
+            windows = windows.sideOutputLateData(lateDataTag);
+        }
+
+        // Aggregate within the window, computing the result in the window function for its metrics
+        return windows
+                .aggregate(inputFunction, new MeteredWindowResultFunction<>(aggregateFunction, accumulatorsTag),
+                        accumulatorType, accumulatorType, TypeInformation.of(ProcessedCpuEvent.class))
+                .name("Aggregate CPU Usage")
+                .uid("aggregate-cpu-usage");
+    }
 }
@@ -0,0 +1,40 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import org.apache.flink.api.common.functions.AggregateFunction;
+
+/**
+ * Aggregates like the wrapped function but hands the accumulator itself to the window function,
+ * which computes the result with {@link MeteredWindowResultFunction}. Aggregate functions of a
+ * window cannot be rich functions, so this is where metrics get access to the accumulator.
+ */
+public class AccumulatorPassThrough<ACC> implements AggregateFunction<CpuUsageEvent, ACC, ACC> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CpuUsageAggregateFunction<ACC> aggregateFunction;
+
+    public AccumulatorPassThrough(CpuUsageAggregateFunction<ACC> aggregateFunction) {
+        this.aggregateFunction = aggregateFunction;
+    }
+
+    @Override
+    public ACC createAccumulator() {
+        return aggregateFunction.createAccumulator();
+    }
+
+    @Override
+    public ACC add(CpuUsageEvent event, ACC accumulator) {
+        return aggregateFunction.add(event, accumulator);
+    }
+
+    @Override
+    public ACC getResult(ACC accumulator) {
+        return accumulator;
+    }
+
+    @Override
+    public ACC merge(ACC acc1, ACC acc2) {
+        return aggregateFunction.merge(acc1, acc2);
+    }
+}
@@ -0,0 +1,90 @@
+package com.controlup.processor.function;
+
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.streaming.api.windowing.triggers.Trigger;
+import org.apache.flink.streaming.api.windowing.triggers.TriggerResult;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+
+import java.time.Duration;
+
+/**
+ * Event-time trigger that fires a window once its end passes the watermark, like {@code EventTimeTrigger},
+ * but batches the late elements of a fired window instead of firing on each of them.
+ * <p>
+ * The first late element schedules a firing one interval of event time later, capped at the window's
+ * cleanup time so no late element is left out. Late elements until then are added to the window without
+ * firing, so a burst of late events costs one result per window per interval.
+ */
+public class CoalescingEventTimeTrigger extends Trigger<Object, TimeWindow> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long interval;
+    private final long allowedLateness;
+
+    // Time of the scheduled late firing of the window, if any
+    private final ValueStateDescriptor<Long> lateFiringDescriptor =
+            new ValueStateDescriptor<>("late-firing", LongSerializer.INSTANCE);
+
+    public CoalescingEventTimeTrigger(Duration interval, Duration allowedLateness) {
+        if (interval.toMillis() <= 0) {
+            throw new IllegalArgumentException("Late firing interval must be positive: " + interval);
+        }
+        this.interval = interval.toMillis();
+        this.allowedLateness = allowedLateness.toMillis();
+    }
+
+    @Override
+    public TriggerResult onElement(Object element, long timestamp, TimeWindow window, TriggerContext ctx) throws Exception {
+        long watermark = ctx.getCurrentWatermark();
+        if (window.maxTimestamp() > watermark) {
+            ctx.registerEventTimeTimer(window.maxTimestamp());
+            return TriggerResult.CONTINUE;
+        }
+
+        ValueState<Long> lateFiring = ctx.getPartitionedState(lateFiringDescriptor);
+        if (lateFiring.value() == null) {
+            long fireTime = Math.min(watermark + interval, window.maxTimestamp() + allowedLateness);
+            lateFiring.update(fireTime);
+            ctx.registerEventTimeTimer(fireTime);
+        }
+        return TriggerResult.CONTINUE;
+    }
+
+    @Override
+    public TriggerResult onEventTime(long time, TimeWindow window, TriggerContext ctx) throws Exception {
+        if (time == window.maxTimestamp()) {
+            return TriggerResult.FIRE;
+        }
+        ValueState<Long> lateFiring = ctx.getPartitionedState(lateFiringDescriptor);
+        Long fireTime = lateFiring.value();
+        if (fireTime != null && fireTime == time) {
+            lateFiring.clear();
+            return TriggerResult.FIRE;
+        }
+        return TriggerResult.CONTINUE;
+    }
+
+    @Override
+    public TriggerResult onProcessingTime(long time, TimeWindow window, TriggerContext ctx) {
+        return TriggerResult.CONTINUE;
+    }
+
+    @Override
+    public void clear(TimeWindow window, TriggerContext ctx) throws Exception {
+        ctx.deleteEventTimeTimer(window.maxTimestamp());
+        ValueState<Long> lateFiring = ctx.getPartitionedState(lateFiringDescriptor);
+        Long fireTime = lateFiring.value();
+        if (fireTime != null) {
+            ctx.deleteEventTimeTimer(fireTime);
+            lateFiring.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CoalescingEventTimeTrigger(" + interval + ")";
+    }
+}
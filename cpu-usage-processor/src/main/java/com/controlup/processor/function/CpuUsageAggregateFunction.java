@@ -0,0 +1,23 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.functions.AggregateFunction;
+
+/**
+ * Window aggregation of CPU usage events into a percentile result that also reports how many
+ * samples an accumulator holds, for the samples per window metric
+ */
+public interface CpuUsageAggregateFunction<ACC> extends AggregateFunction<CpuUsageEvent, ACC, ProcessedCpuEvent> {
+
+    /**
+     * Returns the number of events added to the accumulator, including merged ones
+     */
+    long getSampleCount(ACC accumulator);
+
+    /**
+     * Returns the result of the device's window with the given bounds. {@link #getResult(Object)} reports
+     * the range of the accumulator's samples instead, which late events widen.
+     */
+    ProcessedCpuEvent getResult(ACC accumulator, String deviceId, long windowStart, long windowEnd);
+}
@@ -2,17 +2,20 @@ package com.controlup.processor.function;
 
 import com.controlup.processor.model.CpuUsageEvent;
 import com.controlup.processor.model.ProcessedCpuEvent;
-import org.apache.commons.math3.stat.descriptive.rank.Percentile;
-import org.apache.flink.api.common.functions.AggregateFunction;
+import com.controlup.processor.serialization.CpuAccumulatorTypeInfo;
+import org.apache.flink.api.common.typeinfo.TypeInfo;
 
 import java.io.Serializable;
-import java.util.UUID;
 
 /**
- * Aggregates CPU usage events within a sliding time window and calculates 95th percentile
+ * Aggregates CPU usage events within a sliding time window and calculates 95th percentile, the other
+ * result percentiles, max and mean of the samples
  */
-public class CpuUsageAggregator implements AggregateFunction<CpuUsageEvent, CpuUsageAggregator.CpuAccumulator, ProcessedCpuEvent> {
+public class CpuUsageAggregator implements CpuUsageAggregateFunction<CpuUsageAggregator.CpuAccumulator> {
 
+    private final ResultPercentiles percentiles;
+
+    @TypeInfo(CpuAccumulatorTypeInfo.Factory.class)
     public static class CpuAccumulator implements Serializable {
         private static final long serialVersionUID = 1L;
 
@@ -32,6 +35,12 @@ public class CpuUsageAggregator implements AggregateFunction<CpuUsageEvent, CpuU
             this.cpuUsageArray = new double[capacity];
         }
 
+        public CpuAccumulator(String deviceId, int capacity) {
+            this.deviceId = deviceId;
+            this.capacity = capacity;
+            this.cpuUsageArray = new double[capacity];
+        }
+
         public void addValue(double value) {
             if (count >= cpuUsageArray.length) {
                 // Resize array if needed
@@ -53,6 +62,14 @@ public class CpuUsageAggregator implements AggregateFunction<CpuUsageEvent, CpuU
         }
     }
 
+    public CpuUsageAggregator() {
+        this(new ResultPercentiles(ResultPercentiles.DEFAULT_PERCENTILES));
+    }
+
+    public CpuUsageAggregator(ResultPercentiles percentiles) {
+        this.percentiles = percentiles;
+    }
+
     @Override
     public CpuAccumulator createAccumulator() {
         return new CpuAccumulator();
@@ -78,27 +95,32 @@ public class CpuUsageAggregator implements AggregateFunction<CpuUsageEvent, CpuU
 
     @Override
     public ProcessedCpuEvent getResult(CpuAccumulator accumulator) {
-        System.out.println("DEBUG: getResult called for device: " + accumulator.deviceId + ", count: " + accumulator.count);
+        return getResult(accumulator, accumulator.deviceId, accumulator.windowStart, accumulator.windowEnd);
+    }
 
+    @Override
+    public ProcessedCpuEvent getResult(CpuAccumulator accumulator, String deviceId, long windowStart, long windowEnd) {
         if (accumulator.isEmpty()) {
             long currentTime = System.currentTimeMillis();
-            System.out.println("DEBUG: Empty accumulator, returning unknown result");
-            return new ProcessedCpuEvent(UUID.randomUUID().toString(), "unknown", currentTime, currentTime, 0.0, currentTime);
+            return new ProcessedCpuEvent(ProcessedCpuEvent.windowId("unknown", currentTime, currentTime),
+                    "unknown", currentTime, currentTime, 0.0, currentTime);
         }
 
-        double percentile95 = calculatePercentile95(accumulator.getValues());
-        long lastUpdated = System.currentTimeMillis();
+        double[] values = calculatePercentiles(accumulator);
+        double sum = 0;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < accumulator.count; i++) {
+            sum += accumulator.cpuUsageArray[i];
+            max = Math.max(max, accumulator.cpuUsageArray[i]);
+        }
 
-        System.out.println("DEBUG: Calculated 95th percentile: " + percentile95 + " for device: " + accumulator.deviceId);
+        return percentiles.result(deviceId, windowStart, windowEnd, values,
+                max, sum / accumulator.count, accumulator.count);
+    }
 
-        return new ProcessedCpuEvent(
-                UUID.randomUUID().toString(),
-                accumulator.deviceId,
-                accumulator.windowStart,
-                accumulator.windowEnd,
-                percentile95,
-                lastUpdated
-        );
+    @Override
+    public long getSampleCount(CpuAccumulator accumulator) {
+        return accumulator.count;
     }
 
     @Override
@@ -123,13 +145,12 @@ public class CpuUsageAggregator implements AggregateFunction<CpuUsageEvent, CpuU
     }
 
     /**
-     * Calculates the 95th percentile from a list of CPU usage values
+     * Calculates the result percentiles in place on the accumulator's backing array, with the same results
+     * as commons-math Percentile. Only the order of the samples changes, which the window state does not depend on.
      */
-    private double calculatePercentile95(double[] values) {
-        if (values == null || values.length == 0) {
-            return 0.0;
-        }
-        Percentile percentile = new Percentile(95);
-        return percentile.evaluate(values);
+    private double[] calculatePercentiles(CpuAccumulator accumulator) {
+        double[] values = new double[percentiles.percentiles().length];
+        InPlacePercentile.evaluate(accumulator.cpuUsageArray, accumulator.count, percentiles.percentiles(), values);
+        return values;
     }
 }
@@ -0,0 +1,192 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+
+import java.io.Serializable;
+
+/**
+ * Calculates the 95th percentile of CPU usage within a window from a fixed-resolution histogram.
+ * <p>
+ * CPU usage is bounded to [0, 100], so every sample is counted in one of 100 / resolution + 1 buckets.
+ * The result equals {@code Percentile(95)} over the samples rounded to the resolution, while the
+ * accumulator size stays constant regardless of the event rate. Values outside the range are clamped.
+ */
+public class CpuUsageHistogramAggregator implements CpuUsageAggregateFunction<CpuUsageHistogramAggregator.HistogramAccumulator> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final double DEFAULT_RESOLUTION = 0.01;
+    private static final double MAX_CPU_USAGE = 100.0;
+
+    private final double resolution;
+    private final int bucketCount;
+    private final ResultPercentiles percentiles;
+
+    public static class HistogramAccumulator implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public String deviceId;
+        public int[] counts;
+        public long count = 0;
+        public long windowStart = Long.MAX_VALUE;
+        public long windowEnd = Long.MIN_VALUE;
+
+        public HistogramAccumulator() {
+        }
+
+        public HistogramAccumulator(int bucketCount) {
+            this.counts = new int[bucketCount];
+        }
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+    }
+
+    public CpuUsageHistogramAggregator() {
+        this(DEFAULT_RESOLUTION);
+    }
+
+    public CpuUsageHistogramAggregator(double resolution) {
+        this(resolution, new ResultPercentiles(ResultPercentiles.DEFAULT_PERCENTILES));
+    }
+
+    public CpuUsageHistogramAggregator(double resolution, ResultPercentiles percentiles) {
+        if (resolution <= 0 || resolution > MAX_CPU_USAGE) {
+            throw new IllegalArgumentException("Resolution must be between 0 and 100: " + resolution);
+        }
+        this.resolution = resolution;
+        this.bucketCount = (int) Math.round(MAX_CPU_USAGE / resolution) + 1;
+        this.percentiles = percentiles;
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    @Override
+    public HistogramAccumulator createAccumulator() {
+        return new HistogramAccumulator(bucketCount);
+    }
+
+    @Override
+    public HistogramAccumulator add(CpuUsageEvent event, HistogramAccumulator accumulator) {
+        if (accumulator.deviceId == null) {
+            accumulator.deviceId = event.getDeviceId();
+        }
+
+        accumulator.counts[bucket(event.getCpuUsage())]++;
+        accumulator.count++;
+
+        if (event.getTimestamp() < accumulator.windowStart) {
+            accumulator.windowStart = event.getTimestamp();
+        }
+        if (event.getTimestamp() > accumulator.windowEnd) {
+            accumulator.windowEnd = event.getTimestamp();
+        }
+
+        return accumulator;
+    }
+
+    @Override
+    public ProcessedCpuEvent getResult(HistogramAccumulator accumulator) {
+        return getResult(accumulator, accumulator.deviceId, accumulator.windowStart, accumulator.windowEnd);
+    }
+
+    @Override
+    public ProcessedCpuEvent getResult(HistogramAccumulator accumulator, String deviceId, long windowStart, long windowEnd) {
+        if (accumulator.isEmpty()) {
+            long currentTime = System.currentTimeMillis();
+            return new ProcessedCpuEvent(ProcessedCpuEvent.windowId("unknown", currentTime, currentTime),
+                    "unknown", currentTime, currentTime, 0.0, currentTime);
+        }
+
+        double[] ps = percentiles.percentiles();
+        double[] values = new double[ps.length];
+        for (int i = 0; i < ps.length; i++) {
+            values[i] = percentile(accumulator, ps[i]);
+        }
+
+        // Max and mean of the samples rounded to the resolution, like the percentiles
+        double sum = 0;
+        double max = 0;
+        for (int i = 0; i < accumulator.counts.length; i++) {
+            if (accumulator.counts[i] != 0) {
+                sum += i * resolution * accumulator.counts[i];
+                max = i * resolution;
+            }
+        }
+
+        return percentiles.result(deviceId, windowStart, windowEnd, values,
+                max, sum / accumulator.count, accumulator.count);
+    }
+
+    /**
+     * Number of samples added to the accumulator
+     */
+    @Override
+    public long getSampleCount(HistogramAccumulator accumulator) {
+        return accumulator.count;
+    }
+
+    /**
+     * Merges acc2 into acc1; acc2 is left unchanged
+     */
+    @Override
+    public HistogramAccumulator merge(HistogramAccumulator acc1, HistogramAccumulator acc2) {
+        if (acc2.isEmpty()) return acc1;
+
+        if (acc1.deviceId == null) {
+            acc1.deviceId = acc2.deviceId;
+        }
+        for (int i = 0; i < acc1.counts.length; i++) {
+            acc1.counts[i] += acc2.counts[i];
+        }
+        acc1.count += acc2.count;
+        acc1.windowStart = Math.min(acc1.windowStart, acc2.windowStart);
+        acc1.windowEnd = Math.max(acc1.windowEnd, acc2.windowEnd);
+
+        return acc1;
+    }
+
+    /**
+     * Same estimate as commons-math {@code Percentile(p).evaluate}: the order statistics around
+     * position p / 100 * (n + 1) are found with one cumulative scan and interpolated.
+     */
+    double percentile(HistogramAccumulator accumulator, double p) {
+        long n = accumulator.count;
+        double position = p / 100 * (n + 1);
+        long lowerRank;
+        double fraction = 0;
+        if (position < 1) {
+            lowerRank = 1;
+        } else if (position >= n) {
+            lowerRank = n;
+        } else {
+            lowerRank = (long) Math.floor(position);
+            fraction = position - lowerRank;
+        }
+        long upperRank = fraction > 0 ? lowerRank + 1 : lowerRank;
+
+        double lower = Double.NaN;
+        long seen = 0;
+        for (int i = 0; i < accumulator.counts.length; i++) {
+            seen += accumulator.counts[i];
+            if (Double.isNaN(lower) && seen >= lowerRank) {
+                lower = i * resolution;
+            }
+            if (seen >= upperRank) {
+                return lower + fraction * (i * resolution - lower);
+            }
+        }
+        return MAX_CPU_USAGE;
+    }
+
+    private int bucket(double value) {
+        if (!(value > 0)) {
+            return 0;
+        }
+        return (int) Math.min(bucketCount - 1, Math.round(value / resolution));
+    }
+}
@@ -0,0 +1,229 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+
+import java.io.Serializable;
+
+/**
+ * Approximates the 95th percentile of CPU usage within a window using a DDSketch-style quantile sketch.
+ * <p>
+ * Values are counted in logarithmically sized buckets, so any quantile is returned with a bounded
+ * relative error while memory depends only on the value range, not on the number of events.
+ * Merging two sketches adds their bucket counts.
+ */
+public class CpuUsageSketchAggregator implements CpuUsageAggregateFunction<CpuUsageSketchAggregator.SketchAccumulator> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    // Values below this are counted as zero; CPU usage is not reported with a finer resolution
+    static final double MIN_INDEXABLE_VALUE = 1e-3;
+    // Upper bound on bucket count, lowest buckets are collapsed beyond it
+    static final int MAX_BUCKETS = 2048;
+    private static final int INITIAL_BUCKETS = 32;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double multiplier;
+    private final ResultPercentiles percentiles;
+
+    public static class SketchAccumulator implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        public String deviceId;
+        public int[] counts = new int[0];
+        public int offset = 0; // Bucket index of counts[0]
+        public long count = 0;
+        public long zeroCount = 0;
+        public long windowStart = Long.MAX_VALUE;
+        public long windowEnd = Long.MIN_VALUE;
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+    }
+
+    public CpuUsageSketchAggregator() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public CpuUsageSketchAggregator(double relativeAccuracy) {
+        this(relativeAccuracy, new ResultPercentiles(ResultPercentiles.DEFAULT_PERCENTILES));
+    }
+
+    public CpuUsageSketchAggregator(double relativeAccuracy, ResultPercentiles percentiles) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.multiplier = 1 / Math.log(gamma);
+        this.percentiles = percentiles;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    @Override
+    public SketchAccumulator createAccumulator() {
+        return new SketchAccumulator();
+    }
+
+    @Override
+    public SketchAccumulator add(CpuUsageEvent event, SketchAccumulator accumulator) {
+        if (accumulator.deviceId == null) {
+            accumulator.deviceId = event.getDeviceId();
+        }
+
+        addValue(accumulator, event.getCpuUsage());
+
+        if (event.getTimestamp() < accumulator.windowStart) {
+            accumulator.windowStart = event.getTimestamp();
+        }
+        if (event.getTimestamp() > accumulator.windowEnd) {
+            accumulator.windowEnd = event.getTimestamp();
+        }
+
+        return accumulator;
+    }
+
+    @Override
+    public ProcessedCpuEvent getResult(SketchAccumulator accumulator) {
+        return getResult(accumulator, accumulator.deviceId, accumulator.windowStart, accumulator.windowEnd);
+    }
+
+    @Override
+    public ProcessedCpuEvent getResult(SketchAccumulator accumulator, String deviceId, long windowStart, long windowEnd) {
+        if (accumulator.isEmpty()) {
+            long currentTime = System.currentTimeMillis();
+            return new ProcessedCpuEvent(ProcessedCpuEvent.windowId("unknown", currentTime, currentTime),
+                    "unknown", currentTime, currentTime, 0.0, currentTime);
+        }
+
+        double[] ps = percentiles.percentiles();
+        double[] values = new double[ps.length];
+        for (int i = 0; i < ps.length; i++) {
+            values[i] = quantile(accumulator, ps[i] / 100);
+        }
+
+        // Max and mean from the bucket values, within the relative accuracy like the quantiles
+        double sum = 0;
+        double max = 0;
+        for (int i = 0; i < accumulator.counts.length; i++) {
+            if (accumulator.counts[i] != 0) {
+                double value = value(accumulator.offset + i);
+                sum += value * accumulator.counts[i];
+                max = value;
+            }
+        }
+
+        return percentiles.result(deviceId, windowStart, windowEnd, values,
+                max, sum / accumulator.count, accumulator.count);
+    }
+
+    /**
+     * Number of samples added to the accumulator
+     */
+    @Override
+    public long getSampleCount(SketchAccumulator accumulator) {
+        return accumulator.count;
+    }
+
+    /**
+     * Merges acc2 into acc1; acc2 is left unchanged
+     */
+    @Override
+    public SketchAccumulator merge(SketchAccumulator acc1, SketchAccumulator acc2) {
+        if (acc2.isEmpty()) return acc1;
+
+        if (acc1.deviceId == null) {
+            acc1.deviceId = acc2.deviceId;
+        }
+        for (int i = 0; i < acc2.counts.length; i++) {
+            if (acc2.counts[i] != 0) {
+                addToBucket(acc1, acc2.offset + i, acc2.counts[i]);
+            }
+        }
+        acc1.zeroCount += acc2.zeroCount;
+        acc1.count += acc2.count;
+        acc1.windowStart = Math.min(acc1.windowStart, acc2.windowStart);
+        acc1.windowEnd = Math.max(acc1.windowEnd, acc2.windowEnd);
+
+        return acc1;
+    }
+
+    void addValue(SketchAccumulator accumulator, double value) {
+        if (value < MIN_INDEXABLE_VALUE) {
+            accumulator.zeroCount++;
+        } else {
+            addToBucket(accumulator, index(value), 1);
+        }
+        accumulator.count++;
+    }
+
+    /**
+     * Returns the value at rank q * (count - 1), within the relative accuracy of the exact value
+     */
+    double quantile(SketchAccumulator accumulator, double q) {
+        if (accumulator.isEmpty()) {
+            return 0.0;
+        }
+        double rank = q * (accumulator.count - 1);
+        long seen = accumulator.zeroCount;
+        if (seen > rank) {
+            return 0.0;
+        }
+        for (int i = 0; i < accumulator.counts.length; i++) {
+            seen += accumulator.counts[i];
+            if (seen > rank) {
+                return value(accumulator.offset + i);
+            }
+        }
+        return value(accumulator.offset + accumulator.counts.length - 1);
+    }
+
+    int index(double value) {
+        return (int) Math.ceil(Math.log(value) * multiplier);
+    }
+
+    double value(int index) {
+        // Midpoint of (gamma^(index-1), gamma^index] in relative terms
+        return Math.pow(gamma, index - 1) * (1 + relativeAccuracy);
+    }
+
+    private void addToBucket(SketchAccumulator accumulator, int index, int increment) {
+        int[] counts = accumulator.counts;
+        if (counts.length == 0) {
+            accumulator.counts = new int[INITIAL_BUCKETS];
+            accumulator.offset = index - INITIAL_BUCKETS / 2;
+        } else if (index < accumulator.offset) {
+            int top = accumulator.offset + counts.length - 1;
+            int length = Math.min(MAX_BUCKETS, Math.max(top - index + 1, counts.length * 2));
+            resize(accumulator, top - length + 1, length);
+        } else if (index >= accumulator.offset + counts.length) {
+            int length = Math.min(MAX_BUCKETS, Math.max(index - accumulator.offset + 1, counts.length * 2));
+            resize(accumulator, Math.max(accumulator.offset, index - length + 1), length);
+        }
+        // Collapsed into the lowest bucket once the sketch spans MAX_BUCKETS
+        int position = Math.max(index, accumulator.offset) - accumulator.offset;
+        accumulator.counts[position] += increment;
+    }
+
+    private void resize(SketchAccumulator accumulator, int newOffset, int newLength) {
+        int[] resized = new int[newLength];
+        int[] counts = accumulator.counts;
+        for (int i = 0; i < counts.length; i++) {
+            int position = accumulator.offset + i - newOffset;
+            if (position < 0) {
+                resized[0] += counts[i];
+            } else if (position < newLength) {
+                resized[position] += counts[i];
+            }
+        }
+        accumulator.counts = resized;
+        accumulator.offset = newOffset;
+    }
+}
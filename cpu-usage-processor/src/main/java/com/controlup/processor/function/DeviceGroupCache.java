@@ -0,0 +1,69 @@
+package com.controlup.processor.function;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Size-bounded cache of group lookups, evicting the least recently used device. Entries are the lookup
+ * futures, so concurrent misses of a device share one lookup; they expire {@code ttl} ms after the lookup
+ * started, and failed lookups are dropped so the next event retries them. Devices without a group are cached
+ * like the others.
+ */
+final class DeviceGroupCache {
+
+    private final long ttl;
+    private final LinkedHashMap<String, Entry> entries;
+
+    DeviceGroupCache(int maxSize, long ttl) {
+        if (maxSize <= 0 || ttl <= 0) {
+            throw new IllegalArgumentException("Invalid device group cache settings: size " + maxSize + ", TTL " + ttl);
+        }
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * The cached group of the device, or the lookup started by the loader when there is none or it expired
+     */
+    synchronized CompletableFuture<String> get(String deviceId, long now, Function<String, CompletableFuture<String>> loader) {
+        Entry entry = entries.get(deviceId);
+        if (entry != null && entry.expiresAt > now) {
+            return entry.group;
+        }
+
+        CompletableFuture<String> group = loader.apply(deviceId);
+        Entry loaded = new Entry(group, now + ttl);
+        entries.put(deviceId, loaded);
+        group.whenComplete((result, error) -> {
+            if (error != null) {
+                remove(deviceId, loaded);
+            }
+        });
+        return group;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void remove(String deviceId, Entry entry) {
+        entries.remove(deviceId, entry);
+    }
+
+    private static final class Entry {
+        final CompletableFuture<String> group;
+        final long expiresAt;
+
+        Entry(CompletableFuture<String> group, long expiresAt) {
+            this.group = group;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.ThreadSafeSimpleCounter;
+import org.apache.flink.streaming.api.functions.async.ResultFuture;
+import org.apache.flink.streaming.api.functions.async.RichAsyncFunction;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaces the deviceId of each event with the device's group, so the group windows can reuse the device
+ * pipeline keyed by group. Groups come from a {@link DeviceGroupLookup} run on a thread of this function,
+ * behind a {@link DeviceGroupCache}, so the task thread never waits for the database and most events
+ * complete from the cache.
+ * <p>
+ * Events of devices without a group are dropped ({@value #UNGROUPED_EVENTS}), as are events whose lookup
+ * failed or timed out ({@value #GROUP_LOOKUP_FAILURES}); the device results still include them.
+ * <p>
+ * The lookup is opened on its thread before the first lookup rather than when the task starts, so an
+ * unreachable database never fails the job. After a failure it is closed and reopened on a later lookup,
+ * waiting twice as long after every consecutive failure, from 1 second up to 1 minute; lookups within
+ * the wait fail without querying the database.
+ */
+public class DeviceGroupEnrichmentFunction extends RichAsyncFunction<CpuUsageEvent, CpuUsageEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String GROUP_LOOKUPS = "groupLookups";
+    public static final String UNGROUPED_EVENTS = "ungroupedEvents";
+    public static final String GROUP_LOOKUP_FAILURES = "groupLookupFailures";
+
+    static final Duration MIN_RETRY_BACKOFF = Duration.ofSeconds(1);
+    static final Duration MAX_RETRY_BACKOFF = Duration.ofMinutes(1);
+
+    private final DeviceGroupLookup lookup;
+    private final int cacheSize;
+    private final long cacheTtl;
+
+    private transient DeviceGroupCache cache;
+    private transient ExecutorService executor;
+    private transient Counter groupLookups;
+    private transient Counter ungroupedEvents;
+    private transient Counter groupLookupFailures;
+
+    // Used on the lookup thread, and on close once it has ended
+    private transient boolean lookupOpen;
+    private transient long retryBackoff;
+    private transient long retryAt;
+
+    public DeviceGroupEnrichmentFunction(DeviceGroupLookup lookup, int cacheSize, Duration cacheTtl) {
+        this.lookup = lookup;
+        this.cacheSize = cacheSize;
+        this.cacheTtl = cacheTtl.toMillis();
+    }
+
+    @Override
+    public void open(OpenContext openContext) throws Exception {
+        cache = new DeviceGroupCache(cacheSize, cacheTtl);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "device-group-lookup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Completions run on the lookup thread, or on the task thread for cached groups
+        groupLookups = getRuntimeContext().getMetricGroup().counter(GROUP_LOOKUPS, new ThreadSafeSimpleCounter());
+        ungroupedEvents = getRuntimeContext().getMetricGroup().counter(UNGROUPED_EVENTS, new ThreadSafeSimpleCounter());
+        groupLookupFailures = getRuntimeContext().getMetricGroup().counter(GROUP_LOOKUP_FAILURES, new ThreadSafeSimpleCounter());
+    }
+
+    @Override
+    public void asyncInvoke(CpuUsageEvent event, ResultFuture<CpuUsageEvent> resultFuture) {
+        cache.get(event.getDeviceId(), System.currentTimeMillis(), this::lookUp)
+                .whenComplete((group, error) -> {
+                    if (error != null) {
+                        groupLookupFailures.inc();
+                        resultFuture.complete(Collections.emptyList());
+                    } else if (group == null) {
+                        ungroupedEvents.inc();
+                        resultFuture.complete(Collections.emptyList());
+                    } else {
+                        resultFuture.complete(Collections.singletonList(
+                                new CpuUsageEvent(group, event.getTimestamp(), event.getCpuUsage())));
+                    }
+                });
+    }
+
+    @Override
+    public void timeout(CpuUsageEvent event, ResultFuture<CpuUsageEvent> resultFuture) {
+        groupLookupFailures.inc();
+        resultFuture.complete(Collections.emptyList());
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (executor != null) {
+            executor.shutdownNow();
+            // The lookup in flight finishes before the lookup is closed
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        closeLookup();
+    }
+
+    private CompletableFuture<String> lookUp(String deviceId) {
+        return CompletableFuture.supplyAsync(() -> {
+            long now = System.currentTimeMillis();
+            if (now < retryAt) {
+                throw new CompletionException(new IllegalStateException(
+                        "Device group lookup unavailable for another " + (retryAt - now) + " ms"));
+            }
+            groupLookups.inc();
+            try {
+                if (!lookupOpen) {
+                    lookup.open();
+                    lookupOpen = true;
+                }
+                String group = lookup.groupOf(deviceId);
+                retryBackoff = 0;
+                return group;
+            } catch (Exception e) {
+                closeLookup();
+                retryBackoff = retryBackoff == 0 ? MIN_RETRY_BACKOFF.toMillis()
+                        : Math.min(retryBackoff * 2, MAX_RETRY_BACKOFF.toMillis());
+                retryAt = now + retryBackoff;
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private void closeLookup() {
+        if (lookupOpen) {
+            lookupOpen = false;
+            try {
+                lookup.close();
+            } catch (Exception e) {
+                // Reopened on the next lookup anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.controlup.processor.function;
+
+import java.io.Serializable;
+
+/**
+ * Blocking lookup of the group a device belongs to. {@link DeviceGroupEnrichmentFunction} calls it from
+ * a single thread of its own, between {@link #open()} and {@link #close()}: opened before the first lookup
+ * and closed after a failed one, to be opened again for a later lookup.
+ */
+public interface DeviceGroupLookup extends Serializable {
+
+    void open() throws Exception;
+
+    /**
+     * The device's group, or null when it belongs to none
+     */
+    String groupOf(String deviceId) throws Exception;
+
+    void close() throws Exception;
+}
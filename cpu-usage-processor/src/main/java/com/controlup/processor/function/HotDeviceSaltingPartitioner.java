@@ -0,0 +1,85 @@
+package com.controlup.processor.function;
+
+import org.apache.flink.api.common.functions.Partitioner;
+import org.apache.flink.util.MathUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Routes events by deviceId, spreading the events of hot devices round-robin over {@code buckets} consecutive
+ * channels instead of one, so their first aggregation phase is shared by several subtasks.
+ * <p>
+ * Hot devices are the configured ones and, when {@code hotShare} is positive, those that had at least that
+ * share of the events this sender routed in the previous {@value #DETECTION_WINDOW} events. Routing is only
+ * placement: the second, keyed phase merges the partials of a device whichever channel produced them.
+ */
+public class HotDeviceSaltingPartitioner implements Partitioner<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final int DETECTION_WINDOW = 10000;
+
+    private final HashSet<String> hotDevices;
+    private final int buckets;
+    private final double hotShare;
+
+    private transient Map<String, Integer> eventCounts;
+    private transient Set<String> detectedHotDevices;
+    private transient int routedEvents;
+    private transient int salt;
+
+    /**
+     * @param hotDevices devices that are always salted
+     * @param buckets    channels a hot device is spread over
+     * @param hotShare   share of the routed events that makes a device hot, 0 to salt only the configured devices
+     */
+    public HotDeviceSaltingPartitioner(Set<String> hotDevices, int buckets, double hotShare) {
+        if (buckets < 2 || hotShare < 0 || hotShare > 1) {
+            throw new IllegalArgumentException("Invalid salting settings: buckets " + buckets + ", hot share " + hotShare);
+        }
+        this.hotDevices = new HashSet<>(hotDevices);
+        this.buckets = buckets;
+        this.hotShare = hotShare;
+    }
+
+    @Override
+    public int partition(String deviceId, int numPartitions) {
+        int home = MathUtils.murmurHash(deviceId.hashCode()) % numPartitions;
+        if (!isHot(deviceId)) {
+            return home;
+        }
+        salt = (salt + 1) % buckets;
+        return (home + salt) % numPartitions;
+    }
+
+    private boolean isHot(String deviceId) {
+        if (hotDevices.contains(deviceId)) {
+            return true;
+        }
+        if (hotShare == 0) {
+            return false;
+        }
+        if (eventCounts == null) {
+            eventCounts = new HashMap<>();
+            detectedHotDevices = Collections.emptySet();
+        }
+
+        eventCounts.merge(deviceId, 1, Integer::sum);
+        if (++routedEvents >= DETECTION_WINDOW) {
+            Set<String> detected = new HashSet<>();
+            for (Map.Entry<String, Integer> count : eventCounts.entrySet()) {
+                if (count.getValue() >= hotShare * routedEvents) {
+                    detected.add(count.getKey());
+                }
+            }
+            detectedHotDevices = detected;
+            eventCounts.clear();
+            routedEvents = 0;
+        }
+        return detectedHotDevices.contains(deviceId);
+    }
+}
@@ -0,0 +1,40 @@
+package com.controlup.processor.function;
+
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.state.StateTtlConfig;
+
+import java.time.Duration;
+
+/**
+ * State TTL for keyed state of devices that stop reporting. Entries expire a processing-time TTL after
+ * they were last written and are never read back once expired; the state backend drops them in the
+ * background (incrementally on the heap, in compaction with RocksDB).
+ */
+final class IdleStateTtl {
+
+    private IdleStateTtl() {
+    }
+
+    /**
+     * Enables the TTL on the descriptor, unless it is zero
+     */
+    static <T extends StateDescriptor<?, ?>> T apply(T descriptor, Duration ttl) {
+        if (!ttl.isZero()) {
+            descriptor.enableTimeToLive(StateTtlConfig.newBuilder(ttl)
+                    .setUpdateType(StateTtlConfig.UpdateType.OnCreateAndWrite)
+                    .setStateVisibility(StateTtlConfig.StateVisibility.NeverReturnExpired)
+                    .build());
+        }
+        return descriptor;
+    }
+
+    /**
+     * Checks that the TTL outlives the event-time lifetime of an operator's state, so that only state of
+     * idle devices expires
+     */
+    static void checkOutlives(Duration ttl, Duration lifetime) {
+        if (ttl.isNegative() || (!ttl.isZero() && ttl.compareTo(lifetime) <= 0)) {
+            throw new IllegalArgumentException("Idle state TTL " + ttl + " must be 0 or longer than " + lifetime);
+        }
+    }
+}
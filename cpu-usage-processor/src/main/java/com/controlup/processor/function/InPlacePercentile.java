@@ -0,0 +1,241 @@
+package com.controlup.processor.function;
+
+import java.util.Arrays;
+
+/**
+ * Percentile of the first {@code length} values of an array, computed in place by selection.
+ * <p>
+ * Returns exactly what commons-math {@code new Percentile(p).evaluate(values, 0, length)} returns
+ * (LEGACY estimation, NaNs removed) without copying or sorting the data: the array is reordered
+ * and only the order statistics around the estimated position are selected, in expected O(n)
+ * time with no allocation. Selection falls back to heapsort if partitioning degenerates.
+ */
+public final class InPlacePercentile {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private InPlacePercentile() {
+    }
+
+    public static double evaluate(double[] values, int length, double p) {
+        if (p <= 0 || p > 100) {
+            throw new IllegalArgumentException("Percentile must be in (0, 100]: " + p);
+        }
+        if (length == 0) {
+            return Double.NaN;
+        }
+        if (length == 1) {
+            return values[0];
+        }
+
+        int n = moveNaNsToEnd(values, length);
+        if (n == 0) {
+            return Double.NaN;
+        }
+
+        // Same arithmetic as Percentile.EstimationType.LEGACY
+        double position = p / 100 * (n + 1);
+        if (position < 1) {
+            return min(values, 0, n);
+        }
+        if (position >= n) {
+            return max(values, 0, n);
+        }
+        double floor = Math.floor(position);
+        int rank = (int) floor;
+        double fraction = position - floor;
+
+        select(values, 0, n, rank - 1);
+        double lower = values[rank - 1];
+        // Everything after the selected position is >= lower, so the next order statistic is their minimum
+        double upper = min(values, rank, n);
+        return lower + fraction * (upper - lower);
+    }
+
+    /**
+     * Writes the percentiles {@code ps}, in ascending order, of the first {@code length} values to
+     * {@code results}, each exactly what {@link #evaluate(double[], int, double)} returns. Every selection
+     * only reorders the values above the previous one, so the percentiles together cost little more
+     * than the highest alone.
+     */
+    public static void evaluate(double[] values, int length, double[] ps, double[] results) {
+        for (int i = 0; i < ps.length; i++) {
+            if (ps[i] <= 0 || ps[i] > 100 || (i > 0 && ps[i] < ps[i - 1])) {
+                throw new IllegalArgumentException("Percentiles must be ascending in (0, 100]: " + Arrays.toString(ps));
+            }
+        }
+        if (length <= 1) {
+            Arrays.fill(results, 0, ps.length, length == 0 ? Double.NaN : values[0]);
+            return;
+        }
+
+        int n = moveNaNsToEnd(values, length);
+        if (n == 0) {
+            Arrays.fill(results, 0, ps.length, Double.NaN);
+            return;
+        }
+
+        // values[0, selected) are all <= the values from selected on
+        int selected = 0;
+        for (int i = 0; i < ps.length; i++) {
+            double position = ps[i] / 100 * (n + 1);
+            if (position < 1) {
+                results[i] = min(values, 0, n);
+                continue;
+            }
+            if (position >= n) {
+                results[i] = max(values, selected, n);
+                continue;
+            }
+            double floor = Math.floor(position);
+            int rank = (int) floor;
+            double fraction = position - floor;
+
+            select(values, selected, n, rank - 1);
+            selected = rank - 1;
+            double lower = values[rank - 1];
+            double upper = min(values, rank, n);
+            results[i] = lower + fraction * (upper - lower);
+        }
+    }
+
+    /**
+     * Reorders values so that values[k] holds the k-th smallest of values[from, to)
+     * with smaller values before it and larger ones after it
+     */
+    static void select(double[] values, int from, int to, int k) {
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                heapSort(values, from, to);
+                return;
+            }
+
+            // Median-of-3 pivot moved to the front, then two-pointer partitioning. Both scans stop on
+            // values equal to the pivot, so runs of equal CPU values are still split in half
+            int mid = (from + to) >>> 1;
+            sort3(values, from, mid, to - 1);
+            swap(values, from, mid);
+            double pivot = values[from];
+            int i = from;
+            int j = to;
+            while (true) {
+                while (values[++i] < pivot) {
+                    if (i == to - 1) {
+                        break;
+                    }
+                }
+                while (pivot < values[--j]) {
+                    if (j == from) {
+                        break;
+                    }
+                }
+                if (i >= j) {
+                    break;
+                }
+                swap(values, i, j);
+            }
+            swap(values, from, j);
+
+            if (k < j) {
+                to = j;
+            } else if (k > j) {
+                from = j + 1;
+            } else {
+                return;
+            }
+        }
+        insertionSort(values, from, to);
+    }
+
+    private static int moveNaNsToEnd(double[] values, int length) {
+        int end = length;
+        int i = 0;
+        while (i < end) {
+            if (Double.isNaN(values[i])) {
+                swap(values, i, --end);
+            } else {
+                i++;
+            }
+        }
+        return end;
+    }
+
+    private static double min(double[] values, int from, int to) {
+        double min = values[from];
+        for (int i = from + 1; i < to; i++) {
+            if (values[i] < min) {
+                min = values[i];
+            }
+        }
+        return min;
+    }
+
+    private static double max(double[] values, int from, int to) {
+        double max = values[from];
+        for (int i = from + 1; i < to; i++) {
+            if (values[i] > max) {
+                max = values[i];
+            }
+        }
+        return max;
+    }
+
+    private static void sort3(double[] values, int a, int b, int c) {
+        if (values[b] < values[a]) {
+            swap(values, a, b);
+        }
+        if (values[c] < values[b]) {
+            swap(values, b, c);
+            if (values[b] < values[a]) {
+                swap(values, a, b);
+            }
+        }
+    }
+
+    private static void insertionSort(double[] values, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            double value = values[i];
+            int j = i - 1;
+            while (j >= from && values[j] > value) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    private static void heapSort(double[] values, int from, int to) {
+        int size = to - from;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(values, from, i, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(values, from, from + end);
+            siftDown(values, from, 0, end);
+        }
+    }
+
+    private static void siftDown(double[] values, int offset, int root, int size) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && values[offset + child + 1] > values[offset + child]) {
+                child++;
+            }
+            if (values[offset + root] >= values[offset + child]) {
+                return;
+            }
+            swap(values, offset + root, offset + child);
+            root = child;
+        }
+    }
+
+    private static void swap(double[] values, int i, int j) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+}
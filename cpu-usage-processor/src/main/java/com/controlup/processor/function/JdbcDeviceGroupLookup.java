@@ -0,0 +1,72 @@
+package com.controlup.processor.function;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Reads one group column of the {@code "cpu-metrics".devices} table by device_id. The connection is
+ * reopened on the next lookup after a failure.
+ */
+public class JdbcDeviceGroupLookup implements DeviceGroupLookup {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final Set<String> GROUP_COLUMNS = Set.of("site", "customer", "pool");
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String groupColumn;
+
+    private transient Connection connection;
+    private transient PreparedStatement statement;
+
+    public JdbcDeviceGroupLookup(String url, String user, String password, String groupColumn) {
+        if (!GROUP_COLUMNS.contains(groupColumn)) {
+            throw new IllegalArgumentException("Unknown group column " + groupColumn + ", expected one of " + GROUP_COLUMNS);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.groupColumn = groupColumn;
+    }
+
+    @Override
+    public void open() throws SQLException {
+        connection = DriverManager.getConnection(url, user, password);
+        statement = connection.prepareStatement(
+                "SELECT " + groupColumn + " FROM \"cpu-metrics\".devices WHERE device_id = ?");
+    }
+
+    @Override
+    public String groupOf(String deviceId) throws SQLException {
+        if (connection == null) {
+            open();
+        }
+        try {
+            statement.setString(1, deviceId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (connection != null) {
+            try {
+                connection.close();
+            } finally {
+                connection = null;
+                statement = null;
+            }
+        }
+    }
+}
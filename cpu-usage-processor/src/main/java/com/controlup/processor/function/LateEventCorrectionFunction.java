@@ -0,0 +1,220 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.PartialAccumulator;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.streaming.api.functions.co.KeyedCoProcessFunction;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.util.Collector;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recomputes sliding windows that received events after their allowed lateness and emits the
+ * results as corrections ({@link ProcessedCpuEvent#isCorrection()}), which supersede the window's earlier result.
+ * <p>
+ * It does not see the on-time events. Its first input is the accumulator of every window firing, which the
+ * window stage hands over through a side output with the window's max timestamp; it keeps the latest one per
+ * window for a correction horizon past the allowed lateness. Its second input is the window stage's late events,
+ * which it adds to every window containing them within the horizon. A correction has the id of the window's
+ * earlier results and a higher revision, so downstream replaces them. Late events arriving until the next
+ * watermark are applied together, one correction per affected window, and never before the window stage's
+ * last firing of the window has arrived.
+ * <p>
+ * Registers {@value #CORRECTIONS_OUT} for corrections emitted and {@value #UNCORRECTABLE_LATE_EVENTS}
+ * for late events whose windows have already passed the correction horizon. A {@link LiveKeyCounter} counts
+ * the devices holding windows.
+ */
+public class LateEventCorrectionFunction<ACC>
+        extends KeyedCoProcessFunction<String, PartialAccumulator<ACC>, CpuUsageEvent, ProcessedCpuEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CORRECTIONS_OUT = "correctionsOut";
+    public static final String UNCORRECTABLE_LATE_EVENTS = "uncorrectableLateEvents";
+    // Revision of a window's first correction, above the firings of any window, so corrections supersede them
+    static final long FIRST_CORRECTION_REVISION = 1L << 32;
+
+    private final CpuUsageAggregateFunction<ACC> aggregateFunction;
+    private final TypeInformation<ACC> accumulatorType;
+    private final long size;
+    private final long slide;
+    private final long allowedLateness;
+    private final long horizon;
+    private Duration idleStateTtl = Duration.ZERO;
+
+    // Latest accumulator of each window, fired or corrected, keyed by window end
+    private transient MapState<Long, ACC> windows;
+    // Late events not corrected yet keyed by window end
+    private transient MapState<Long, ACC> pending;
+    // Revision of the last correction keyed by window end
+    private transient MapState<Long, Long> revisions;
+    private transient Counter correctionsOut;
+    private transient Counter uncorrectableLateEvents;
+    private transient ValueState<Long> liveKey;
+    private transient LiveKeyCounter liveKeys;
+
+    public LateEventCorrectionFunction(CpuUsageAggregateFunction<ACC> aggregateFunction,
+                                       TypeInformation<ACC> accumulatorType,
+                                       Duration size,
+                                       Duration slide,
+                                       Duration allowedLateness,
+                                       Duration horizon) {
+        if (size.toMillis() <= 0 || slide.toMillis() <= 0 || size.toMillis() % slide.toMillis() != 0) {
+            throw new IllegalArgumentException("Window size must be a positive multiple of the slide: "
+                    + size + " / " + slide);
+        }
+        if (horizon.toMillis() <= 0) {
+            throw new IllegalArgumentException("Correction horizon must be positive: " + horizon);
+        }
+        this.aggregateFunction = aggregateFunction;
+        this.accumulatorType = accumulatorType;
+        this.size = size.toMillis();
+        this.slide = slide.toMillis();
+        this.allowedLateness = allowedLateness.toMillis();
+        this.horizon = horizon.toMillis();
+    }
+
+    /**
+     * Expires state not written for the TTL, as a backstop to the cleanup timers for devices whose timers
+     * wait on a stalled watermark. The TTL must be longer than the window size, allowed lateness and horizon.
+     */
+    public LateEventCorrectionFunction<ACC> withIdleStateTtl(Duration ttl) {
+        IdleStateTtl.checkOutlives(ttl, Duration.ofMillis(size + allowedLateness + horizon));
+        this.idleStateTtl = ttl;
+        return this;
+    }
+
+    @Override
+    public void open(OpenContext openContext) {
+        windows = getRuntimeContext().getMapState(IdleStateTtl.apply(
+                new MapStateDescriptor<>("windows", Types.LONG, accumulatorType), idleStateTtl));
+        pending = getRuntimeContext().getMapState(IdleStateTtl.apply(
+                new MapStateDescriptor<>("pending", Types.LONG, accumulatorType), idleStateTtl));
+        revisions = getRuntimeContext().getMapState(IdleStateTtl.apply(
+                new MapStateDescriptor<>("revisions", Types.LONG, Types.LONG), idleStateTtl));
+
+        MetricGroup metricGroup = getRuntimeContext().getMetricGroup();
+        correctionsOut = metricGroup.counter(CORRECTIONS_OUT);
+        uncorrectableLateEvents = metricGroup.counter(UNCORRECTABLE_LATE_EVENTS);
+        liveKey = getRuntimeContext().getState(LiveKeyCounter.descriptor());
+        liveKeys = new LiveKeyCounter(metricGroup);
+    }
+
+    /**
+     * Keeps the accumulator of a window firing, which replaces the window's earlier firings
+     */
+    @Override
+    public void processElement1(PartialAccumulator<ACC> window, Context ctx, Collector<ProcessedCpuEvent> out) throws Exception {
+        long windowEnd = window.getTimestamp() + 1;
+        liveKeys.add(liveKey);
+        windows.put(windowEnd, window.getAccumulator());
+        ctx.timerService().registerEventTimeTimer(windowEnd - 1 + allowedLateness + horizon);
+    }
+
+    @Override
+    public void processElement2(CpuUsageEvent event, Context ctx, Collector<ProcessedCpuEvent> out) throws Exception {
+        long watermark = ctx.timerService().currentWatermark();
+        long paneEnd = TimeWindow.getWindowStartWithOffset(event.getTimestamp(), 0, slide) + slide;
+        long lastWindowEnd = paneEnd + size - slide;
+
+        if (isPastHorizon(lastWindowEnd, watermark)) {
+            uncorrectableLateEvents.inc();
+            return;
+        }
+
+        liveKeys.add(liveKey);
+        for (long windowEnd = paneEnd; windowEnd <= lastWindowEnd; windowEnd += slide) {
+            if (isPastHorizon(windowEnd, watermark)) {
+                continue;
+            }
+            ACC accumulator = pending.get(windowEnd);
+            pending.put(windowEnd, aggregateFunction.add(event,
+                    accumulator == null ? aggregateFunction.createAccumulator() : accumulator));
+            ctx.timerService().registerEventTimeTimer(windowEnd - 1 + allowedLateness + horizon);
+        }
+        // Correct once the watermark moves on, together with any other late events until then,
+        // and once the window stage has handed over the last firing of every window of the event
+        ctx.timerService().registerEventTimeTimer(Math.max(watermark + 1, lastWindowEnd - 1 + allowedLateness));
+    }
+
+    @Override
+    public void onTimer(long timestamp, OnTimerContext ctx, Collector<ProcessedCpuEvent> out) throws Exception {
+        if (!pending.isEmpty()) {
+            emitCorrections(ctx.getCurrentKey(), timestamp, out);
+        }
+
+        // Drop the windows past the correction horizon
+        List<Long> expired = new ArrayList<>();
+        for (Long windowEnd : windows.keys()) {
+            if (isPastHorizon(windowEnd, timestamp)) {
+                expired.add(windowEnd);
+            }
+        }
+        for (Long windowEnd : revisions.keys()) {
+            if (isPastHorizon(windowEnd, timestamp)) {
+                expired.add(windowEnd);
+            }
+        }
+        for (Long windowEnd : expired) {
+            windows.remove(windowEnd);
+            revisions.remove(windowEnd);
+        }
+        // Also reached when the windows expired through the idle state TTL
+        if (windows.isEmpty() && pending.isEmpty()) {
+            liveKeys.remove(liveKey);
+        }
+    }
+
+    long liveKeys() {
+        return liveKeys.count();
+    }
+
+    /**
+     * Merges the late events into the windows past their allowed lateness, which fire no more, and emits them
+     */
+    private void emitCorrections(String deviceId, long timestamp, Collector<ProcessedCpuEvent> out) throws Exception {
+        List<Map.Entry<Long, ACC>> due = new ArrayList<>();
+        for (Map.Entry<Long, ACC> entry : pending.entries()) {
+            if (entry.getKey() - 1 + allowedLateness <= timestamp) {
+                due.add(entry);
+            }
+        }
+        due.sort(Map.Entry.comparingByKey());
+
+        for (Map.Entry<Long, ACC> entry : due) {
+            long windowEnd = entry.getKey();
+            ACC window = windows.get(windowEnd);
+            ACC corrected = window == null ? entry.getValue() : aggregateFunction.merge(window, entry.getValue());
+            pending.remove(windowEnd);
+            if (isPastHorizon(windowEnd, timestamp)) {
+                continue;
+            }
+            windows.put(windowEnd, corrected);
+
+            Long last = revisions.get(windowEnd);
+            long revision = last == null ? FIRST_CORRECTION_REVISION : last + 1;
+            revisions.put(windowEnd, revision);
+            ProcessedCpuEvent correction = aggregateFunction.getResult(corrected, deviceId, windowEnd - size, windowEnd);
+            correction.setRevision(revision);
+            correction.setCorrection(true);
+            correctionsOut.inc();
+            out.collect(correction);
+        }
+    }
+
+    private boolean isPastHorizon(long windowEnd, long watermark) {
+        return windowEnd - 1 + allowedLateness + horizon <= watermark;
+    }
+}
@@ -0,0 +1,29 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.metrics.Counter;
+
+/**
+ * Counts the events of the late events side output in the {@value #LATE_EVENTS} metric and passes them on
+ */
+public class LateEventCounter extends RichMapFunction<CpuUsageEvent, CpuUsageEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String LATE_EVENTS = "lateEvents";
+
+    private transient Counter lateEvents;
+
+    @Override
+    public void open(OpenContext openContext) {
+        lateEvents = getRuntimeContext().getMetricGroup().counter(LATE_EVENTS);
+    }
+
+    @Override
+    public CpuUsageEvent map(CpuUsageEvent event) {
+        lateEvents.inc();
+        return event;
+    }
+}
@@ -0,0 +1,31 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.PartialAccumulator;
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.streaming.api.functions.ProcessFunction;
+import org.apache.flink.util.Collector;
+
+/**
+ * Counts the accumulators of the rollup levels' late data side outputs in the {@value #LATE_ROLLUP_ACCUMULATORS}
+ * metric. A finer window's last firing arrives before its level's allowed lateness ends, so any count means the
+ * levels lost data and their lateness does not match the windows they roll up.
+ */
+public class LateRollupCounter<ACC> extends ProcessFunction<PartialAccumulator<ACC>, Void> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String LATE_ROLLUP_ACCUMULATORS = "lateRollupAccumulators";
+
+    private transient Counter lateRollupAccumulators;
+
+    @Override
+    public void open(OpenContext openContext) {
+        lateRollupAccumulators = getRuntimeContext().getMetricGroup().counter(LATE_ROLLUP_ACCUMULATORS);
+    }
+
+    @Override
+    public void processElement(PartialAccumulator<ACC> accumulator, Context ctx, Collector<Void> out) {
+        lateRollupAccumulators.inc();
+    }
+}
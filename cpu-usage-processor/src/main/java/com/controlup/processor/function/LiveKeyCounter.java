@@ -0,0 +1,67 @@
+package com.controlup.processor.function;
+
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Registers {@value #LIVE_KEYS}, the number of keys of this subtask that hold a function's state, and keeps it
+ * up to date as the function writes and clears that state, without reading the state backend for other keys.
+ * <p>
+ * Each counted key carries a marker in {@value #STATE} holding the id of the run that counted it. The count is
+ * not part of checkpoints: after a restore the markers are from an earlier run, so a key is counted again at its
+ * next write and a key cleared before that is not subtracted. The marker has no TTL; the function must call
+ * {@link #remove} once the key's state is gone, also when it expired, which its cleanup timers notice.
+ */
+final class LiveKeyCounter {
+
+    static final String LIVE_KEYS = "liveKeys";
+    static final String STATE = "live-key";
+
+    private final long runId = ThreadLocalRandom.current().nextLong();
+    private volatile long count;
+
+    LiveKeyCounter(MetricGroup metricGroup) {
+        metricGroup.gauge(LIVE_KEYS, (Gauge<Long>) () -> count);
+    }
+
+    static ValueStateDescriptor<Long> descriptor() {
+        return new ValueStateDescriptor<>(STATE, Types.LONG);
+    }
+
+    /**
+     * Counts the current key, unless it is already counted
+     *
+     * @return whether the key was not counted before
+     */
+    boolean add(ValueState<Long> marker) throws Exception {
+        Long counted = marker.value();
+        if (counted != null && counted == runId) {
+            return false;
+        }
+        marker.update(runId);
+        count++;
+        return true;
+    }
+
+    /**
+     * Stops counting the current key, which holds no more state
+     */
+    void remove(ValueState<Long> marker) throws Exception {
+        Long counted = marker.value();
+        if (counted != null) {
+            marker.clear();
+            if (counted == runId) {
+                count--;
+            }
+        }
+    }
+
+    long count() {
+        return count;
+    }
+}
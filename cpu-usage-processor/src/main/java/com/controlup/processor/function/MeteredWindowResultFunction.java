@@ -0,0 +1,106 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.metrics.WindowResultMetrics;
+import com.controlup.processor.model.PartialAccumulator;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.functions.windowing.ProcessWindowFunction;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.OutputTag;
+
+/**
+ * Computes the result of each window accumulator produced by {@link AccumulatorPassThrough}
+ * and records it in the {@link WindowResultMetrics}. Results are identified by device and window,
+ * so every firing of a window has the same id, and their revision counts the window's firings.
+ * With an accumulators tag, every firing also hands its accumulator, timestamped with the window's max
+ * timestamp, to {@link LateEventCorrectionFunction}.
+ * <p>
+ * Counts the devices in {@link LiveKeyCounter} from their first fired window until the window operator purges
+ * the last one that fired.
+ */
+public class MeteredWindowResultFunction<ACC> extends ProcessWindowFunction<ACC, ProcessedCpuEvent, String, TimeWindow> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final ValueStateDescriptor<Long> FIRINGS = new ValueStateDescriptor<>("firings", Types.LONG);
+    private static final ValueStateDescriptor<Long> LAST_WINDOW = new ValueStateDescriptor<>("last-window", Types.LONG);
+
+    private final CpuUsageAggregateFunction<ACC> aggregateFunction;
+    private final OutputTag<PartialAccumulator<ACC>> accumulatorsTag;
+
+    private transient WindowResultMetrics metrics;
+    private transient LiveKeyCounter liveKeys;
+
+    public MeteredWindowResultFunction(CpuUsageAggregateFunction<ACC> aggregateFunction) {
+        this(aggregateFunction, null);
+    }
+
+    /**
+     * @param accumulatorsTag side output of the window accumulators, or null to not hand them over
+     */
+    public MeteredWindowResultFunction(CpuUsageAggregateFunction<ACC> aggregateFunction,
+                                       OutputTag<PartialAccumulator<ACC>> accumulatorsTag) {
+        this.aggregateFunction = aggregateFunction;
+        this.accumulatorsTag = accumulatorsTag;
+    }
+
+    @Override
+    public void open(OpenContext openContext) {
+        metrics = new WindowResultMetrics(getRuntimeContext().getMetricGroup());
+        liveKeys = new LiveKeyCounter(getRuntimeContext().getMetricGroup());
+    }
+
+    @Override
+    public void process(String deviceId, Context context, Iterable<ACC> accumulators, Collector<ProcessedCpuEvent> out) throws Exception {
+        TimeWindow window = context.window();
+        long revision = nextFiring(context.windowState().getState(FIRINGS));
+        for (ACC accumulator : accumulators) {
+            ProcessedCpuEvent result = metrics.computeResult(aggregateFunction, accumulator,
+                    deviceId, window.getStart(), window.getEnd());
+            result.setRevision(revision);
+            out.collect(result);
+            if (accumulatorsTag != null) {
+                context.output(accumulatorsTag, new PartialAccumulator<>(deviceId, window.maxTimestamp(), accumulator));
+            }
+        }
+
+        liveKeys.add(context.globalState().getState(LiveKeyCounter.descriptor()));
+        ValueState<Long> lastWindow = context.globalState().getState(LAST_WINDOW);
+        Long last = lastWindow.value();
+        if (last == null || last < window.maxTimestamp()) {
+            lastWindow.update(window.maxTimestamp());
+        }
+    }
+
+    /**
+     * Called when the window operator purges a window, after its allowed lateness
+     */
+    @Override
+    public void clear(Context context) throws Exception {
+        context.windowState().getState(FIRINGS).clear();
+        ValueState<Long> lastWindow = context.globalState().getState(LAST_WINDOW);
+        Long last = lastWindow.value();
+        if (last != null && context.window().maxTimestamp() >= last) {
+            lastWindow.clear();
+            liveKeys.remove(context.globalState().getState(LiveKeyCounter.descriptor()));
+        }
+    }
+
+    long liveKeys() {
+        return liveKeys.count();
+    }
+
+    /**
+     * Counts a firing of the window, starting at 1
+     */
+    static long nextFiring(ValueState<Long> firings) throws Exception {
+        Long fired = firings.value();
+        long firing = fired == null ? 1 : fired + 1;
+        firings.update(firing);
+        return firing;
+    }
+}
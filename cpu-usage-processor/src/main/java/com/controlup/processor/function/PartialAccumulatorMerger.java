@@ -0,0 +1,39 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.PartialAccumulator;
+import org.apache.flink.api.common.functions.AggregateFunction;
+
+/**
+ * Counterpart of {@link AccumulatorPassThrough} for pre-aggregated input: merges the partial accumulators
+ * of a device into the window accumulator and hands it to the window function.
+ */
+public class PartialAccumulatorMerger<ACC> implements AggregateFunction<PartialAccumulator<ACC>, ACC, ACC> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CpuUsageAggregateFunction<ACC> aggregateFunction;
+
+    public PartialAccumulatorMerger(CpuUsageAggregateFunction<ACC> aggregateFunction) {
+        this.aggregateFunction = aggregateFunction;
+    }
+
+    @Override
+    public ACC createAccumulator() {
+        return aggregateFunction.createAccumulator();
+    }
+
+    @Override
+    public ACC add(PartialAccumulator<ACC> partial, ACC accumulator) {
+        return aggregateFunction.merge(accumulator, partial.getAccumulator());
+    }
+
+    @Override
+    public ACC getResult(ACC accumulator) {
+        return accumulator;
+    }
+
+    @Override
+    public ACC merge(ACC acc1, ACC acc2) {
+        return aggregateFunction.merge(acc1, acc2);
+    }
+}
@@ -0,0 +1,149 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.PartialAccumulator;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.ChainingStrategy;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.util.OutputTag;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mini-batch combiner that runs before the stream is keyed by device, so only partial accumulators
+ * cross the network instead of every event. Chained to the source it saves the shuffle of the events;
+ * behind a {@link HotDeviceSaltingPartitioner} it is the first phase of the salted mode, sharing hot devices
+ * among several subtasks. It only pays off with accumulators whose partials are smaller than the events
+ * they combine, which the job limits to the sketch.
+ * <p>
+ * Events are added to one {@link PartialAccumulator} per device and window slide. The buffer is flushed
+ * every {@code interval} of processing time, once it holds {@code maxEvents} events, before a watermark
+ * is forwarded (so partials are never late because of the buffering) and before a checkpoint barrier
+ * (so the buffer needs no state).
+ * <p>
+ * Events whose windows have all passed their allowed lateness at this operator's watermark go to the
+ * late-data side output only, for the correction stage, so a window stage lagging behind this operator's
+ * watermark cannot count them a second time in a late firing.
+ */
+public class PreAggregationOperator<ACC> extends AbstractStreamOperator<PartialAccumulator<ACC>>
+        implements OneInputStreamOperator<CpuUsageEvent, PartialAccumulator<ACC>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CpuUsageAggregateFunction<ACC> aggregateFunction;
+    private final long size;
+    private final long slide;
+    private final long allowedLateness;
+    private final long interval;
+    private final int maxEvents;
+    private final OutputTag<CpuUsageEvent> lateEventsTag;
+
+    // Partials keyed by device and pane end (exclusive)
+    private transient Map<String, Map<Long, PartialAccumulator<ACC>>> buffer;
+    private transient int bufferedEvents;
+    private transient long currentWatermark;
+
+    public PreAggregationOperator(CpuUsageAggregateFunction<ACC> aggregateFunction,
+                                  Duration size,
+                                  Duration slide,
+                                  Duration allowedLateness,
+                                  Duration interval,
+                                  int maxEvents,
+                                  OutputTag<CpuUsageEvent> lateEventsTag) {
+        if (size.toMillis() <= 0 || slide.toMillis() <= 0 || size.toMillis() % slide.toMillis() != 0) {
+            throw new IllegalArgumentException("Window size must be a positive multiple of the slide: "
+                    + size + " / " + slide);
+        }
+        if (interval.toMillis() <= 0 || maxEvents <= 0) {
+            throw new IllegalArgumentException("Invalid pre-aggregation settings: interval " + interval
+                    + ", max events " + maxEvents);
+        }
+        this.aggregateFunction = aggregateFunction;
+        this.size = size.toMillis();
+        this.slide = slide.toMillis();
+        this.allowedLateness = allowedLateness.toMillis();
+        this.interval = interval.toMillis();
+        this.maxEvents = maxEvents;
+        this.lateEventsTag = lateEventsTag;
+        // Chain to the source so raw events are never serialized
+        this.chainingStrategy = ChainingStrategy.ALWAYS;
+    }
+
+    @Override
+    public void open() throws Exception {
+        super.open();
+        buffer = new HashMap<>();
+        bufferedEvents = 0;
+        currentWatermark = Long.MIN_VALUE;
+        long now = getProcessingTimeService().getCurrentProcessingTime();
+        getProcessingTimeService().registerTimer(now + interval, this::onFlushTimer);
+    }
+
+    @Override
+    public void processElement(StreamRecord<CpuUsageEvent> element) throws Exception {
+        CpuUsageEvent event = element.getValue();
+        long timestamp = element.getTimestamp();
+        long paneEnd = TimeWindow.getWindowStartWithOffset(timestamp, 0, slide) + slide;
+
+        // Every window containing this pane has already been cleaned up, same rule as the window stage
+        if (paneEnd + size - slide - 1 + allowedLateness <= currentWatermark) {
+            output.collect(lateEventsTag, element);
+            return;
+        }
+
+        Map<Long, PartialAccumulator<ACC>> devicePanes = buffer.computeIfAbsent(event.getDeviceId(), deviceId -> new HashMap<>());
+        PartialAccumulator<ACC> partial = devicePanes.get(paneEnd);
+        if (partial == null) {
+            partial = new PartialAccumulator<>(event.getDeviceId(), timestamp, aggregateFunction.createAccumulator());
+            devicePanes.put(paneEnd, partial);
+        }
+        partial.setAccumulator(aggregateFunction.add(event, partial.getAccumulator()));
+        partial.setTimestamp(Math.max(partial.getTimestamp(), timestamp));
+
+        if (++bufferedEvents >= maxEvents) {
+            flush();
+        }
+    }
+
+    @Override
+    public void processWatermark(Watermark mark) throws Exception {
+        flush();
+        currentWatermark = mark.getTimestamp();
+        super.processWatermark(mark);
+    }
+
+    @Override
+    public void prepareSnapshotPreBarrier(long checkpointId) throws Exception {
+        flush();
+        super.prepareSnapshotPreBarrier(checkpointId);
+    }
+
+    @Override
+    public void finish() throws Exception {
+        flush();
+        super.finish();
+    }
+
+    private void onFlushTimer(long time) throws Exception {
+        flush();
+        getProcessingTimeService().registerTimer(time + interval, this::onFlushTimer);
+    }
+
+    private void flush() {
+        if (bufferedEvents == 0) {
+            return;
+        }
+        for (Map<Long, PartialAccumulator<ACC>> devicePanes : buffer.values()) {
+            for (PartialAccumulator<ACC> partial : devicePanes.values()) {
+                output.collect(new StreamRecord<>(partial, partial.getTimestamp()));
+            }
+        }
+        buffer.clear();
+        bufferedEvents = 0;
+    }
+}
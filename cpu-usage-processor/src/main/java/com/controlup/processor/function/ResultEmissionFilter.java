@@ -0,0 +1,282 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.streaming.api.TimeDomain;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.util.Collector;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thins out the results of a device across its consecutive windows before they are written downstream.
+ * <ul>
+ *     <li>A result whose p95 differs by less than {@code epsilon} from the device's last emitted p95 is dropped.
+ *     A later firing of a window that already has a row is compared with that row instead, so a row is never
+ *     left more than {@code epsilon} away from its window's latest firing.</li>
+ *     <li>At most {@code maxPerInterval} results are emitted per device per processing-time interval. Over the
+ *     cap only the device's latest result is held back, replacing an earlier held back one, and emitted when the
+ *     interval ends, so the final value of a burst always gets out.</li>
+ * </ul>
+ * Every window has its own row downstream, identified by its id and upserted by revision, the count of the
+ * window's firings. A window whose results were all dropped has no row: its p95 was within {@code epsilon} of
+ * the device's previous row, or a later window's result replaced it under the cap, so readers take a device's
+ * latest row as its current p95. A row's revision may skip the dropped firings and still only grows.
+ * Corrections always pass. Registers {@value #SUPPRESSED_RESULTS} and {@value #RATE_LIMITED_RESULTS}.
+ * <p>
+ * The rows of a window are forgotten once its allowed lateness has passed, and the device's state once its
+ * latest window's has. With an idle state TTL the state also expires when the device has not sent a result for
+ * the TTL, as a backstop for a stalled watermark. A {@link LiveKeyCounter} counts the devices holding state;
+ * a processing-time check every TTL notices the expiry.
+ */
+public class ResultEmissionFilter extends KeyedProcessFunction<String, ProcessedCpuEvent, ProcessedCpuEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String SUPPRESSED_RESULTS = "suppressedResults";
+    public static final String RATE_LIMITED_RESULTS = "rateLimitedResults";
+
+    private final double epsilon;
+    private final int maxPerInterval;
+    private final long interval;
+    private final long allowedLateness;
+    private Duration idleStateTtl = Duration.ZERO;
+
+    // p95 of the device's last emitted result
+    private transient ValueState<Double> lastPercentile;
+    // End of the device's latest window seen
+    private transient ValueState<Long> lastWindowEnd;
+    // p95 of the rows of the device's windows still within their allowed lateness, keyed by window end
+    private transient MapState<Long, Double> rows;
+    // Latest result held back by the cap
+    private transient ValueState<ProcessedCpuEvent> held;
+    private transient ValueState<Long> intervalEnd;
+    private transient ValueState<Integer> emittedInInterval;
+    private transient Counter suppressedResults;
+    private transient Counter rateLimitedResults;
+    private transient ValueState<Long> liveKey;
+    private transient LiveKeyCounter liveKeys;
+
+    /**
+     * @param epsilon         smallest p95 change from the device's last emitted result that is emitted, 0 to emit every change
+     * @param maxPerInterval  results emitted per device per interval, 0 for no cap
+     * @param interval        length of the rate limiting interval
+     * @param allowedLateness allowed lateness of the windows, after which a window fires no more
+     */
+    public ResultEmissionFilter(double epsilon, int maxPerInterval, Duration interval, Duration allowedLateness) {
+        if (epsilon < 0 || maxPerInterval < 0 || interval.toMillis() <= 0 || allowedLateness.isNegative()) {
+            throw new IllegalArgumentException("Invalid emission settings: epsilon " + epsilon
+                    + ", max per interval " + maxPerInterval + ", interval " + interval
+                    + ", allowed lateness " + allowedLateness);
+        }
+        this.epsilon = epsilon;
+        this.maxPerInterval = maxPerInterval;
+        this.interval = interval.toMillis();
+        this.allowedLateness = allowedLateness.toMillis();
+    }
+
+    /**
+     * Expires the state of devices that have not sent a result for the TTL, which must be longer than the interval
+     * and the allowed lateness
+     */
+    public ResultEmissionFilter withIdleStateTtl(Duration ttl) {
+        IdleStateTtl.checkOutlives(ttl, Duration.ofMillis(Math.max(interval, allowedLateness)));
+        this.idleStateTtl = ttl;
+        return this;
+    }
+
+    @Override
+    public void open(OpenContext openContext) {
+        lastPercentile = getRuntimeContext().getState(IdleStateTtl.apply(
+                new ValueStateDescriptor<>("last-percentile", Types.DOUBLE), idleStateTtl));
+        lastWindowEnd = getRuntimeContext().getState(IdleStateTtl.apply(
+                new ValueStateDescriptor<>("last-window-end", Types.LONG), idleStateTtl));
+        rows = getRuntimeContext().getMapState(IdleStateTtl.apply(
+                new MapStateDescriptor<>("rows", Types.LONG, Types.DOUBLE), idleStateTtl));
+        held = getRuntimeContext().getState(IdleStateTtl.apply(
+                new ValueStateDescriptor<>("held", TypeInformation.of(ProcessedCpuEvent.class)), idleStateTtl));
+        intervalEnd = getRuntimeContext().getState(IdleStateTtl.apply(
+                new ValueStateDescriptor<>("interval-end", Types.LONG), idleStateTtl));
+        emittedInInterval = getRuntimeContext().getState(IdleStateTtl.apply(
+                new ValueStateDescriptor<>("emitted-in-interval", Types.INT), idleStateTtl));
+
+        MetricGroup metricGroup = getRuntimeContext().getMetricGroup();
+        suppressedResults = metricGroup.counter(SUPPRESSED_RESULTS);
+        rateLimitedResults = metricGroup.counter(RATE_LIMITED_RESULTS);
+        liveKey = getRuntimeContext().getState(LiveKeyCounter.descriptor());
+        liveKeys = new LiveKeyCounter(metricGroup);
+    }
+
+    @Override
+    public void processElement(ProcessedCpuEvent result, Context ctx, Collector<ProcessedCpuEvent> out) throws Exception {
+        if (result.isCorrection()) {
+            out.collect(result);
+            return;
+        }
+
+        long now = ctx.timerService().currentProcessingTime();
+        if (liveKeys.add(liveKey) && !idleStateTtl.isZero()) {
+            // Checks fall on multiples of the TTL, so checks scheduled twice for a device collapse into one timer
+            long ttl = idleStateTtl.toMillis();
+            ctx.timerService().registerProcessingTimeTimer((now / ttl + 2) * ttl);
+        }
+        Long latest = lastWindowEnd.value();
+        if (latest == null || result.getWindowEnd() > latest) {
+            lastWindowEnd.update(result.getWindowEnd());
+            ctx.timerService().registerEventTimeTimer(result.getWindowEnd() - 1 + allowedLateness);
+        }
+
+        if (isUnchanged(result)) {
+            // The held back result is older than this one, which says nothing changed since the last emission
+            replaceHeld(null);
+            suppressedResults.inc();
+            return;
+        }
+        if (!takeEmission(now)) {
+            rateLimitedResults.inc();
+            replaceHeld(result);
+            ctx.timerService().registerProcessingTimeTimer(intervalEnd.value());
+            return;
+        }
+        replaceHeld(null);
+        emit(result, ctx, out);
+    }
+
+    @Override
+    public void onTimer(long timestamp, OnTimerContext ctx, Collector<ProcessedCpuEvent> out) throws Exception {
+        if (ctx.timeDomain() == TimeDomain.EVENT_TIME) {
+            forgetFinishedWindows(timestamp);
+            return;
+        }
+        if (!idleStateTtl.isZero() && timestamp % idleStateTtl.toMillis() == 0) {
+            checkExpiry(timestamp, ctx);
+        }
+        emitHeldResult(timestamp, ctx, out);
+    }
+
+    long liveKeys() {
+        return liveKeys.count();
+    }
+
+    /**
+     * Whether the result is within epsilon of its window's row, or of the device's last emitted result when the
+     * window has none
+     */
+    private boolean isUnchanged(ProcessedCpuEvent result) throws Exception {
+        Double reference = rows.get(result.getWindowEnd());
+        if (reference == null) {
+            reference = lastPercentile.value();
+        }
+        return reference != null && Math.abs(result.getPercentile95() - reference) < epsilon;
+    }
+
+    /**
+     * Counts an emission in the device's current interval, unless the cap is reached
+     */
+    private boolean takeEmission(long now) throws Exception {
+        if (maxPerInterval == 0) {
+            return true;
+        }
+        Long end = intervalEnd.value();
+        int emitted = 0;
+        if (end == null || now >= end) {
+            intervalEnd.update(now + interval);
+        } else if (emittedInInterval.value() != null) {
+            emitted = emittedInInterval.value();
+        }
+        if (emitted >= maxPerInterval) {
+            return false;
+        }
+        emittedInInterval.update(emitted + 1);
+        return true;
+    }
+
+    /**
+     * Holds back the result, or none, dropping the one held back so far as the device's later result replaces it
+     */
+    private void replaceHeld(ProcessedCpuEvent result) throws Exception {
+        if (held.value() != null) {
+            suppressedResults.inc();
+        }
+        if (result == null) {
+            held.clear();
+        } else {
+            held.update(result);
+        }
+    }
+
+    private void emit(ProcessedCpuEvent result, Context ctx, Collector<ProcessedCpuEvent> out) throws Exception {
+        lastPercentile.update(result.getPercentile95());
+        rows.put(result.getWindowEnd(), result.getPercentile95());
+        ctx.timerService().registerEventTimeTimer(result.getWindowEnd() - 1 + allowedLateness);
+        out.collect(result);
+    }
+
+    /**
+     * Emits the result held back by the cap, if it still differs from what was emitted and the cap of the current
+     * interval allows it
+     */
+    private void emitHeldResult(long timestamp, OnTimerContext ctx, Collector<ProcessedCpuEvent> out) throws Exception {
+        ProcessedCpuEvent result = held.value();
+        if (result == null) {
+            return;
+        }
+        if (isUnchanged(result)) {
+            replaceHeld(null);
+            // The device may have been kept past its latest window for the held back result
+            ctx.timerService().registerEventTimeTimer(lastWindowEnd.value() - 1 + allowedLateness);
+            return;
+        }
+        if (!takeEmission(timestamp)) {
+            ctx.timerService().registerProcessingTimeTimer(intervalEnd.value());
+            return;
+        }
+        held.clear();
+        emit(result, ctx, out);
+    }
+
+    /**
+     * Forgets the rows of the windows past their allowed lateness, and the device once its latest window is past it
+     * and no result is held back
+     */
+    private void forgetFinishedWindows(long timestamp) throws Exception {
+        List<Long> finished = new ArrayList<>();
+        for (Long windowEnd : rows.keys()) {
+            if (windowEnd - 1 + allowedLateness <= timestamp) {
+                finished.add(windowEnd);
+            }
+        }
+        for (Long windowEnd : finished) {
+            rows.remove(windowEnd);
+        }
+        Long latest = lastWindowEnd.value();
+        if (latest != null && latest - 1 + allowedLateness <= timestamp && held.value() == null) {
+            lastPercentile.clear();
+            lastWindowEnd.clear();
+            intervalEnd.clear();
+            emittedInInterval.clear();
+            liveKeys.remove(liveKey);
+        }
+    }
+
+    /**
+     * Stops counting the device once its state expired, or checks again a TTL later
+     */
+    private void checkExpiry(long timestamp, Context ctx) throws Exception {
+        if (lastWindowEnd.value() == null && held.value() == null) {
+            liveKeys.remove(liveKey);
+        } else {
+            ctx.timerService().registerProcessingTimeTimer(timestamp + idleStateTtl.toMillis());
+        }
+    }
+}
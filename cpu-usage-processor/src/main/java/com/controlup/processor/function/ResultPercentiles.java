@@ -0,0 +1,90 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.ProcessedCpuEvent;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The percentiles the aggregators report with every window result: the configured ones and the p95,
+ * in ascending order. Results carry them by name ({@code p50}, {@code p99.9}) next to the max, mean and
+ * count of the window, all computed from the same accumulator by one getResult call.
+ */
+public final class ResultPercentiles implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final double[] DEFAULT_PERCENTILES = {50, 90, 99};
+
+    private final double[] percentiles;
+    private final String[] names;
+    private final int p95Index;
+
+    public ResultPercentiles(double[] configured) {
+        TreeSet<Double> sorted = new TreeSet<>();
+        for (double p : configured) {
+            if (!(p > 0 && p <= 100)) {
+                throw new IllegalArgumentException("Percentiles must be in (0, 100]: " + Arrays.toString(configured));
+            }
+            sorted.add(p);
+        }
+        sorted.add(95.0);
+
+        percentiles = sorted.stream().mapToDouble(Double::doubleValue).toArray();
+        names = new String[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            names[i] = name(percentiles[i]);
+        }
+        p95Index = Arrays.binarySearch(percentiles, 95.0);
+    }
+
+    /**
+     * Parses a comma separated list such as {@code 50,90,99.9}
+     */
+    public static ResultPercentiles parse(String percentiles) {
+        return new ResultPercentiles(Arrays.stream(percentiles.split(","))
+                .map(String::trim)
+                .filter(p -> !p.isEmpty())
+                .mapToDouble(Double::parseDouble)
+                .toArray());
+    }
+
+    public static String name(double percentile) {
+        return percentile == Math.rint(percentile) ? "p" + (long) percentile : "p" + percentile;
+    }
+
+    /**
+     * Ascending, including 95
+     */
+    double[] percentiles() {
+        return percentiles;
+    }
+
+    /**
+     * Result of a non-empty window with the values of {@link #percentiles()} in the same order. The caller
+     * sets the revision, which counts the window's firings.
+     */
+    ProcessedCpuEvent result(String deviceId, long windowStart, long windowEnd, double[] values,
+                             double max, double mean, long count) {
+        ProcessedCpuEvent result = new ProcessedCpuEvent(
+                ProcessedCpuEvent.windowId(deviceId, windowStart, windowEnd),
+                deviceId,
+                windowStart,
+                windowEnd,
+                values[p95Index],
+                System.currentTimeMillis()
+        );
+        Map<String, Double> byName = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            byName.put(names[i], values[i]);
+        }
+        result.setPercentiles(byName);
+        result.setMax(max);
+        result.setMean(mean);
+        result.setEventCount(count);
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.metrics.WindowResultMetrics;
+import com.controlup.processor.model.PartialAccumulator;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.functions.windowing.ProcessWindowFunction;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.OutputTag;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Window function of one level of the tumbling rollups. Its input are the accumulators of the finer windows,
+ * timestamped with their last millisecond: the base sliding windows that tile the level, or the previous level.
+ * A finer window fires again when late data arrives, with its whole accumulator, so only the latest firing of
+ * each finer window is merged. The level's accumulator is emitted as a {@link PartialAccumulator}, timestamped
+ * with the window's last millisecond, for the next coarser level, and its result goes to the {@code resultsTag}
+ * side output, identified by device and window, revised with every firing of the window and recorded in the
+ * {@link WindowResultMetrics}.
+ */
+public class RollupWindowFunction<ACC>
+        extends ProcessWindowFunction<PartialAccumulator<ACC>, PartialAccumulator<ACC>, String, TimeWindow> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final ValueStateDescriptor<Long> FIRINGS = new ValueStateDescriptor<>("firings", Types.LONG);
+
+    private final CpuUsageAggregateFunction<ACC> aggregateFunction;
+    private final OutputTag<ProcessedCpuEvent> resultsTag;
+
+    private transient WindowResultMetrics metrics;
+
+    public RollupWindowFunction(CpuUsageAggregateFunction<ACC> aggregateFunction, OutputTag<ProcessedCpuEvent> resultsTag) {
+        this.aggregateFunction = aggregateFunction;
+        this.resultsTag = resultsTag;
+    }
+
+    @Override
+    public void open(OpenContext openContext) {
+        metrics = new WindowResultMetrics(getRuntimeContext().getMetricGroup());
+    }
+
+    @Override
+    public void process(String deviceId, Context context, Iterable<PartialAccumulator<ACC>> firings,
+                        Collector<PartialAccumulator<ACC>> out) throws Exception {
+        // Firings are kept in arrival order, so a later firing of a finer window replaces the earlier ones
+        Map<Long, ACC> finerWindows = new TreeMap<>();
+        for (PartialAccumulator<ACC> firing : firings) {
+            finerWindows.put(firing.getTimestamp(), firing.getAccumulator());
+        }
+        ACC accumulator = aggregateFunction.createAccumulator();
+        for (ACC finerWindow : finerWindows.values()) {
+            accumulator = aggregateFunction.merge(accumulator, finerWindow);
+        }
+
+        TimeWindow window = context.window();
+        long revision = MeteredWindowResultFunction.nextFiring(context.windowState().getState(FIRINGS));
+        out.collect(new PartialAccumulator<>(deviceId, window.maxTimestamp(), accumulator));
+
+        ProcessedCpuEvent result = metrics.computeResult(aggregateFunction, accumulator,
+                deviceId, window.getStart(), window.getEnd());
+        result.setRevision(revision);
+        context.output(resultsTag, result);
+    }
+
+    @Override
+    public void clear(Context context) {
+        context.windowState().getState(FIRINGS).clear();
+    }
+}
@@ -0,0 +1,232 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.metrics.WindowResultMetrics;
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.PartialAccumulator;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.OutputTag;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pane-based evaluation of sliding event-time windows.
+ * <p>
+ * Every event is added exactly once to the pane (one slide long) it falls into, and each window
+ * result is produced by merging the size / slide panes the window covers. This replaces copying
+ * every event into size / slide overlapping windows while emitting the same results as
+ * {@code SlidingEventTimeWindows} with the default event-time trigger, allowed lateness and a
+ * late-data side output.
+ * <p>
+ * With a late firing interval, late events are batched the same as with {@link CoalescingEventTimeTrigger}:
+ * an already fired window is fired again at most once per interval of event time instead of on every late event.
+ * <p>
+ * The accumulator returned by {@link CpuUsageAggregateFunction#merge} may reuse its first argument but
+ * must leave the second one untouched, as pane accumulators are merged into several windows.
+ * <p>
+ * Window results are computed through {@link WindowResultMetrics}, identified by device and window and
+ * revised with every firing of the window, the same as in the window operator path. With an accumulators tag,
+ * every firing also hands the window's accumulator to {@link LateEventCorrectionFunction}, the same as
+ * {@link MeteredWindowResultFunction}. A {@link LiveKeyCounter} counts the devices holding panes.
+ */
+public class SlidingPaneFunction<ACC> extends KeyedProcessFunction<String, CpuUsageEvent, ProcessedCpuEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final CpuUsageAggregateFunction<ACC> aggregateFunction;
+    private final TypeInformation<ACC> accumulatorType;
+    private final long size;
+    private final long slide;
+    private final long allowedLateness;
+    private final long lateFiringInterval;
+    private final OutputTag<CpuUsageEvent> lateEventsTag;
+    private OutputTag<PartialAccumulator<ACC>> accumulatorsTag;
+    private Duration idleStateTtl = Duration.ZERO;
+
+    // Pane accumulators keyed by pane end (exclusive)
+    private transient MapState<Long, ACC> panes;
+    // Scheduled late firing time keyed by window end
+    private transient MapState<Long, Long> lateFirings;
+    // Firings so far keyed by window end, the revision of the window's last result
+    private transient MapState<Long, Long> firings;
+    private transient ValueState<Long> liveKey;
+    private transient WindowResultMetrics metrics;
+    private transient LiveKeyCounter liveKeys;
+
+    public SlidingPaneFunction(CpuUsageAggregateFunction<ACC> aggregateFunction,
+                               TypeInformation<ACC> accumulatorType,
+                               Duration size,
+                               Duration slide,
+                               Duration allowedLateness,
+                               Duration lateFiringInterval,
+                               OutputTag<CpuUsageEvent> lateEventsTag) {
+        if (size.toMillis() <= 0 || slide.toMillis() <= 0 || size.toMillis() % slide.toMillis() != 0) {
+            throw new IllegalArgumentException("Window size must be a positive multiple of the slide: "
+                    + size + " / " + slide);
+        }
+        this.aggregateFunction = aggregateFunction;
+        this.accumulatorType = accumulatorType;
+        this.size = size.toMillis();
+        this.slide = slide.toMillis();
+        this.allowedLateness = allowedLateness.toMillis();
+        this.lateFiringInterval = lateFiringInterval.toMillis();
+        this.lateEventsTag = lateEventsTag;
+    }
+
+    /**
+     * Expires state not written for the TTL, as a backstop to the cleanup timers for devices whose timers
+     * wait on a stalled watermark. The TTL must be longer than the window size and allowed lateness.
+     */
+    public SlidingPaneFunction<ACC> withIdleStateTtl(Duration ttl) {
+        IdleStateTtl.checkOutlives(ttl, Duration.ofMillis(size + allowedLateness));
+        this.idleStateTtl = ttl;
+        return this;
+    }
+
+    /**
+     * Hands the accumulator of every window firing over to the given side output
+     */
+    public SlidingPaneFunction<ACC> withAccumulatorsOutput(OutputTag<PartialAccumulator<ACC>> tag) {
+        this.accumulatorsTag = tag;
+        return this;
+    }
+
+    @Override
+    public void open(OpenContext openContext) {
+        panes = getRuntimeContext().getMapState(IdleStateTtl.apply(
+                new MapStateDescriptor<>("panes", Types.LONG, accumulatorType), idleStateTtl));
+        lateFirings = getRuntimeContext().getMapState(IdleStateTtl.apply(
+                new MapStateDescriptor<>("late-firings", Types.LONG, Types.LONG), idleStateTtl));
+        firings = getRuntimeContext().getMapState(IdleStateTtl.apply(
+                new MapStateDescriptor<>("firings", Types.LONG, Types.LONG), idleStateTtl));
+        liveKey = getRuntimeContext().getState(LiveKeyCounter.descriptor());
+        metrics = new WindowResultMetrics(getRuntimeContext().getMetricGroup());
+        liveKeys = new LiveKeyCounter(getRuntimeContext().getMetricGroup());
+    }
+
+    @Override
+    public void processElement(CpuUsageEvent event, Context ctx, Collector<ProcessedCpuEvent> out) throws Exception {
+        long watermark = ctx.timerService().currentWatermark();
+        long paneEnd = TimeWindow.getWindowStartWithOffset(ctx.timestamp(), 0, slide) + slide;
+        long lastWindowEnd = paneEnd + size - slide;
+
+        // Every window containing this pane has already been cleaned up
+        if (isCleanedUp(lastWindowEnd, watermark)) {
+            ctx.output(lateEventsTag, event);
+            return;
+        }
+
+        ACC accumulator = panes.get(paneEnd);
+        if (accumulator == null) {
+            accumulator = aggregateFunction.createAccumulator();
+            liveKeys.add(liveKey);
+        }
+        panes.put(paneEnd, aggregateFunction.add(event, accumulator));
+
+        for (long windowEnd = paneEnd; windowEnd <= lastWindowEnd; windowEnd += slide) {
+            if (isCleanedUp(windowEnd, watermark)) {
+                continue;
+            }
+            if (windowEnd - 1 > watermark) {
+                ctx.timerService().registerEventTimeTimer(windowEnd - 1);
+            } else if (lateFiringInterval <= 0) {
+                // Late firing, same as EventTimeTrigger.onElement for an already fired window
+                emitWindow(ctx, windowEnd, out);
+            } else if (!lateFirings.contains(windowEnd)) {
+                // Same as CoalescingEventTimeTrigger.onElement
+                long fireTime = Math.min(watermark + lateFiringInterval, windowEnd - 1 + allowedLateness);
+                lateFirings.put(windowEnd, fireTime);
+                ctx.timerService().registerEventTimeTimer(fireTime);
+            }
+        }
+        ctx.timerService().registerEventTimeTimer(lastWindowEnd - 1 + allowedLateness);
+    }
+
+    @Override
+    public void onTimer(long timestamp, OnTimerContext ctx, Collector<ProcessedCpuEvent> out) throws Exception {
+        long windowEnd = timestamp + 1;
+        if (windowEnd % slide == 0) {
+            emitWindow(ctx, windowEnd, out);
+        }
+        if (!lateFirings.isEmpty()) {
+            List<Long> due = new ArrayList<>();
+            for (Map.Entry<Long, Long> lateFiring : lateFirings.entries()) {
+                if (lateFiring.getValue() <= timestamp) {
+                    due.add(lateFiring.getKey());
+                }
+            }
+            for (Long dueWindowEnd : due) {
+                lateFirings.remove(dueWindowEnd);
+                emitWindow(ctx, dueWindowEnd, out);
+            }
+        }
+
+        // Drop the firing counts of windows past their allowed lateness, and panes whose last window is
+        List<Long> cleanedUp = new ArrayList<>();
+        for (Long firedWindowEnd : firings.keys()) {
+            if (isCleanedUp(firedWindowEnd, timestamp)) {
+                cleanedUp.add(firedWindowEnd);
+            }
+        }
+        for (Long firedWindowEnd : cleanedUp) {
+            firings.remove(firedWindowEnd);
+        }
+        List<Long> expired = new ArrayList<>();
+        int remaining = 0;
+        for (Long paneEnd : panes.keys()) {
+            if (paneEnd + size - slide - 1 + allowedLateness <= timestamp) {
+                expired.add(paneEnd);
+            } else {
+                remaining++;
+            }
+        }
+        for (Long paneEnd : expired) {
+            panes.remove(paneEnd);
+        }
+        // Also reached when the panes expired through the idle state TTL
+        if (remaining == 0) {
+            liveKeys.remove(liveKey);
+        }
+    }
+
+    long liveKeys() {
+        return liveKeys.count();
+    }
+
+    private void emitWindow(Context ctx, long windowEnd, Collector<ProcessedCpuEvent> out) throws Exception {
+        String deviceId = ctx.getCurrentKey();
+        ACC merged = null;
+        for (long paneEnd = windowEnd - size + slide; paneEnd <= windowEnd; paneEnd += slide) {
+            ACC pane = panes.get(paneEnd);
+            if (pane != null) {
+                merged = aggregateFunction.merge(merged == null ? aggregateFunction.createAccumulator() : merged, pane);
+            }
+        }
+        if (merged != null) {
+            Long fired = firings.get(windowEnd);
+            long revision = fired == null ? 1 : fired + 1;
+            firings.put(windowEnd, revision);
+            ProcessedCpuEvent result = metrics.computeResult(aggregateFunction, merged, deviceId, windowEnd - size, windowEnd);
+            result.setRevision(revision);
+            out.collect(result);
+            if (accumulatorsTag != null) {
+                ctx.output(accumulatorsTag, new PartialAccumulator<>(deviceId, windowEnd - 1, merged));
+            }
+        }
+    }
+
+    private boolean isCleanedUp(long windowEnd, long watermark) {
+        return windowEnd - 1 + allowedLateness <= watermark;
+    }
+}
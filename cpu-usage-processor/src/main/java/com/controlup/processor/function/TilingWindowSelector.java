@@ -0,0 +1,40 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.PartialAccumulator;
+import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.ChainingStrategy;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import java.time.Duration;
+
+/**
+ * Picks the sliding window accumulators that make up the first rollup level: those of the windows starting at a
+ * multiple of the window size, which tile time. Each one is passed on with its window's max timestamp as the record
+ * timestamp, so the rollup assigns it to the window it belongs to; the pane mode emits a late firing at the time of
+ * its timer, which may lie past the window's end and past a rollup boundary.
+ */
+public class TilingWindowSelector<ACC> extends AbstractStreamOperator<PartialAccumulator<ACC>>
+        implements OneInputStreamOperator<PartialAccumulator<ACC>, PartialAccumulator<ACC>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long windowSize;
+
+    public TilingWindowSelector(Duration windowSize) {
+        if (windowSize.toMillis() <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        this.windowSize = windowSize.toMillis();
+        // Chain to the window stage, which keeps the stream partitioned by device
+        this.chainingStrategy = ChainingStrategy.ALWAYS;
+    }
+
+    @Override
+    public void processElement(StreamRecord<PartialAccumulator<ACC>> element) {
+        PartialAccumulator<ACC> window = element.getValue();
+        if ((window.getTimestamp() + 1) % windowSize == 0) {
+            output.collect(element.replace(window, window.getTimestamp()));
+        }
+    }
+}
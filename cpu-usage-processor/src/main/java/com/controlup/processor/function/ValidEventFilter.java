@@ -0,0 +1,92 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MeterView;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.streaming.api.functions.ProcessFunction;
+import org.apache.flink.types.Either;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.OutputTag;
+
+/**
+ * Passes on events that can be keyed by device and sends everything else, including records the
+ * source deserializer could not decode, to the malformed events side output, which the job writes to the
+ * malformed events topic.
+ * <p>
+ * As the first operator after the source it also registers the input metrics:
+ * <ul>
+ *     <li>{@value #EVENTS_IN} / {@value #EVENTS_IN_RATE} - valid events passed on, in total and per second</li>
+ *     <li>{@value #MALFORMED_EVENTS} - records sent to the malformed events side output</li>
+ *     <li>{@value #EVENT_TIME_LAG} - wall clock time minus the timestamp of the latest valid event, in milliseconds</li>
+ *     <li>{@value #WATERMARK_SKEW} - highest event timestamp seen minus the current watermark, in milliseconds</li>
+ * </ul>
+ * The gauges only store timestamps per event and read the clock when a reporter polls them.
+ */
+public class ValidEventFilter extends ProcessFunction<Either<MalformedCpuUsageEvent, CpuUsageEvent>, CpuUsageEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String EVENTS_IN = "eventsIn";
+    public static final String EVENTS_IN_RATE = "eventsInPerSecond";
+    public static final String MALFORMED_EVENTS = "malformedEvents";
+    public static final String EVENT_TIME_LAG = "eventTimeLagMs";
+    public static final String WATERMARK_SKEW = "watermarkSkewMs";
+
+    private final OutputTag<MalformedCpuUsageEvent> malformedEventsTag;
+
+    private transient Counter eventsIn;
+    private transient Counter malformedEvents;
+    private transient long latestTimestamp = Long.MIN_VALUE;
+    private transient long maxTimestamp = Long.MIN_VALUE;
+    private transient long currentWatermark = Long.MIN_VALUE;
+
+    public ValidEventFilter(OutputTag<MalformedCpuUsageEvent> malformedEventsTag) {
+        this.malformedEventsTag = malformedEventsTag;
+    }
+
+    @Override
+    public void open(OpenContext openContext) {
+        latestTimestamp = Long.MIN_VALUE;
+        maxTimestamp = Long.MIN_VALUE;
+        currentWatermark = Long.MIN_VALUE;
+
+        MetricGroup metricGroup = getRuntimeContext().getMetricGroup();
+        eventsIn = metricGroup.counter(EVENTS_IN);
+        metricGroup.meter(EVENTS_IN_RATE, new MeterView(eventsIn));
+        malformedEvents = metricGroup.counter(MALFORMED_EVENTS);
+        metricGroup.gauge(EVENT_TIME_LAG, (Gauge<Long>) this::eventTimeLag);
+        metricGroup.gauge(WATERMARK_SKEW, (Gauge<Long>) this::watermarkSkew);
+    }
+
+    @Override
+    public void processElement(Either<MalformedCpuUsageEvent, CpuUsageEvent> decoded, Context ctx, Collector<CpuUsageEvent> out) {
+        if (decoded.isLeft()) {
+            malformedEvents.inc();
+            ctx.output(malformedEventsTag, decoded.left());
+            return;
+        }
+        CpuUsageEvent event = decoded.right();
+        if (event == null || event.getDeviceId() == null) {
+            malformedEvents.inc();
+            ctx.output(malformedEventsTag, new MalformedCpuUsageEvent(String.valueOf(event), "Missing deviceId"));
+        } else {
+            eventsIn.inc();
+            latestTimestamp = event.getTimestamp();
+            maxTimestamp = Math.max(maxTimestamp, latestTimestamp);
+            currentWatermark = ctx.timerService().currentWatermark();
+            out.collect(event);
+        }
+    }
+
+    long eventTimeLag() {
+        return latestTimestamp == Long.MIN_VALUE ? 0L : System.currentTimeMillis() - latestTimestamp;
+    }
+
+    long watermarkSkew() {
+        return maxTimestamp == Long.MIN_VALUE || currentWatermark == Long.MIN_VALUE ? 0L : maxTimestamp - currentWatermark;
+    }
+}
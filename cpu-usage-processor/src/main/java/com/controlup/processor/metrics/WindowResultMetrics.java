@@ -0,0 +1,56 @@
+package com.controlup.processor.metrics;
+
+import com.controlup.processor.function.CpuUsageAggregateFunction;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.MeterView;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.metrics.DescriptiveStatisticsHistogram;
+
+/**
+ * Metrics of the window results an operator emits, registered on its metric group:
+ * <ul>
+ *     <li>{@value #EVENTS_OUT} / {@value #EVENTS_OUT_RATE} - results emitted, in total and per second</li>
+ *     <li>{@value #SAMPLES_PER_WINDOW} - histogram of the number of events behind each result</li>
+ *     <li>{@value #PERCENTILE_COMPUTE_NANOS} - histogram of the time spent in getResult, in nanoseconds</li>
+ * </ul>
+ * Results are computed through {@link #computeResult}, so aggregate functions stay free of metric code.
+ */
+public class WindowResultMetrics {
+
+    public static final String EVENTS_OUT = "eventsOut";
+    public static final String EVENTS_OUT_RATE = "eventsOutPerSecond";
+    public static final String SAMPLES_PER_WINDOW = "samplesPerWindow";
+    public static final String PERCENTILE_COMPUTE_NANOS = "percentileComputeNanos";
+
+    // Number of most recent values the histograms report statistics over
+    static final int HISTOGRAM_WINDOW_SIZE = 1024;
+
+    private final Counter eventsOut;
+    private final Histogram samplesPerWindow;
+    private final Histogram percentileComputeNanos;
+
+    public WindowResultMetrics(MetricGroup metricGroup) {
+        this.eventsOut = metricGroup.counter(EVENTS_OUT);
+        metricGroup.meter(EVENTS_OUT_RATE, new MeterView(eventsOut));
+        this.samplesPerWindow = metricGroup.histogram(SAMPLES_PER_WINDOW,
+                new DescriptiveStatisticsHistogram(HISTOGRAM_WINDOW_SIZE));
+        this.percentileComputeNanos = metricGroup.histogram(PERCENTILE_COMPUTE_NANOS,
+                new DescriptiveStatisticsHistogram(HISTOGRAM_WINDOW_SIZE));
+    }
+
+    /**
+     * Computes the result of a device's window from its accumulator and records it
+     */
+    public <ACC> ProcessedCpuEvent computeResult(CpuUsageAggregateFunction<ACC> aggregateFunction, ACC accumulator,
+                                                 String deviceId, long windowStart, long windowEnd) {
+        long samples = aggregateFunction.getSampleCount(accumulator);
+        long start = System.nanoTime();
+        ProcessedCpuEvent result = aggregateFunction.getResult(accumulator, deviceId, windowStart, windowEnd);
+        percentileComputeNanos.update(System.nanoTime() - start);
+        samplesPerWindow.update(samples);
+        eventsOut.inc();
+        return result;
+    }
+}
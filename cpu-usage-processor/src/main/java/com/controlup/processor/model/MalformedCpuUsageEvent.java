@@ -0,0 +1,66 @@
+package com.controlup.processor.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Input record that could not be decoded into a {@link CpuUsageEvent}.
+ * <p>
+ * The source deserializers return it as the left side of their {@code Either} result, in place of the event,
+ * so that it reaches the malformed events side output instead of failing the job or being dropped.
+ */
+public class MalformedCpuUsageEvent {
+
+    private String payload;
+    private String error;
+
+    // Default constructor for Flink POJO serialization
+    public MalformedCpuUsageEvent() {
+    }
+
+    public MalformedCpuUsageEvent(String payload, String error) {
+        this.payload = payload;
+        this.error = error;
+    }
+
+    public MalformedCpuUsageEvent(byte[] message, String error) {
+        this(new String(message, StandardCharsets.UTF_8), error);
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MalformedCpuUsageEvent that = (MalformedCpuUsageEvent) o;
+        return Objects.equals(payload, that.payload) && Objects.equals(error, that.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(payload, error);
+    }
+
+    @Override
+    public String toString() {
+        return "MalformedCpuUsageEvent{" +
+                "error='" + error + '\'' +
+                ", payload='" + payload + '\'' +
+                '}';
+    }
+}
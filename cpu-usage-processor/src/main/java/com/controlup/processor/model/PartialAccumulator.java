@@ -0,0 +1,72 @@
+package com.controlup.processor.model;
+
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+
+import java.util.Map;
+
+/**
+ * Accumulator of the events of one device within a span of time that lies in a single window: one window slide
+ * when built before the stream is keyed by device, or a fired sliding or rollup window handed to the correction
+ * stage and the next coarser rollup. Its timestamp falls within that span, so it is assigned to the same windows
+ * as its events.
+ */
+public class PartialAccumulator<ACC> {
+
+    private String deviceId;
+    private long timestamp;
+    private ACC accumulator;
+
+    public PartialAccumulator() {
+    }
+
+    public PartialAccumulator(String deviceId, long timestamp, ACC accumulator) {
+        this.deviceId = deviceId;
+        this.timestamp = timestamp;
+        this.accumulator = accumulator;
+    }
+
+    /**
+     * Type information for partials of the given accumulator type, which cannot be extracted from the generic class
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <ACC> TypeInformation<PartialAccumulator<ACC>> typeInfo(TypeInformation<ACC> accumulatorType) {
+        return (TypeInformation) Types.POJO(PartialAccumulator.class, Map.of(
+                "deviceId", Types.STRING,
+                "timestamp", Types.LONG,
+                "accumulator", accumulatorType));
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public ACC getAccumulator() {
+        return accumulator;
+    }
+
+    public void setAccumulator(ACC accumulator) {
+        this.accumulator = accumulator;
+    }
+
+    @Override
+    public String toString() {
+        return "PartialAccumulator{" +
+                "deviceId='" + deviceId + '\'' +
+                ", timestamp=" + timestamp +
+                ", accumulator=" + accumulator +
+                '}';
+    }
+}
@@ -4,7 +4,9 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -18,7 +20,24 @@ public class ProcessedCpuEvent {
     private long windowStart;
     private long windowEnd;
     private double percentile95;
+    // Percentiles of the window by name (p50, p95, p99.9), including the p95
+    private Map<String, Double> percentiles;
+    private double max;
+    private double mean;
+    private long eventCount;
     private long lastUpdated;
+    // Firing of the window the result is from, starting at 1; corrections count on from 2^32
+    private long revision;
+    // True for results recomputed from events too late for the window, superseding the earlier result
+    private boolean correction;
+
+    /**
+     * Id of the result of a device's window, the same for every firing of the window and for replays
+     */
+    public static String windowId(String deviceId, long windowStart, long windowEnd) {
+        return UUID.nameUUIDFromBytes((deviceId + "|" + windowStart + "|" + windowEnd)
+                .getBytes(StandardCharsets.UTF_8)).toString();
+    }
 
     // Default constructor for Jackson deserialization
     public ProcessedCpuEvent() {
@@ -61,10 +80,34 @@ public class ProcessedCpuEvent {
         this.percentile95 = percentile95;
     }
 
+    public void setPercentiles(Map<String, Double> percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+
+    public void setMean(double mean) {
+        this.mean = mean;
+    }
+
+    public void setEventCount(long eventCount) {
+        this.eventCount = eventCount;
+    }
+
     public void setLastUpdated(long lastUpdated) {
         this.lastUpdated = lastUpdated;
     }
 
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    public void setCorrection(boolean correction) {
+        this.correction = correction;
+    }
+
     public String getId() {
         return id;
     }
@@ -85,10 +128,34 @@ public class ProcessedCpuEvent {
         return percentile95;
     }
 
+    public Map<String, Double> getPercentiles() {
+        return percentiles;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
     public long getLastUpdated() {
         return lastUpdated;
     }
 
+    public long getRevision() {
+        return revision;
+    }
+
+    public boolean isCorrection() {
+        return correction;
+    }
+
     @JsonIgnore
     public Instant getWindowStartAsInstant() {
         return Instant.ofEpochMilli(windowStart);
@@ -125,7 +192,13 @@ public class ProcessedCpuEvent {
                 ", windowStart=" + windowStart +
                 ", windowEnd=" + windowEnd +
                 ", percentile95=" + String.format("%.2f", percentile95) +
+                ", percentiles=" + percentiles +
+                ", max=" + max +
+                ", mean=" + mean +
+                ", eventCount=" + eventCount +
                 ", lastUpdated=" + lastUpdated +
+                ", revision=" + revision +
+                ", correction=" + correction +
                 '}';
     }
 }
@@ -0,0 +1,155 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.function.CpuUsageAggregator.CpuAccumulator;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.TypeSerializerSchemaCompatibility;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.base.TypeSerializerSingleton;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.types.StringValue;
+
+import java.io.IOException;
+
+/**
+ * Compact serializer for {@link CpuAccumulator} state.
+ * <p>
+ * Only the {@code count} used slots of the sample array are written, never its spare capacity.
+ * Layout (version 1): deviceId, windowStart, windowEnd, count, count samples.
+ */
+public final class CpuAccumulatorSerializer extends TypeSerializerSingleton<CpuAccumulator> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final CpuAccumulatorSerializer INSTANCE = new CpuAccumulatorSerializer();
+
+    private CpuAccumulatorSerializer() {
+    }
+
+    @Override
+    public boolean isImmutableType() {
+        return false;
+    }
+
+    @Override
+    public CpuAccumulator createInstance() {
+        return new CpuAccumulator();
+    }
+
+    @Override
+    public CpuAccumulator copy(CpuAccumulator from) {
+        CpuAccumulator copy = new CpuAccumulator(from.deviceId, Math.max(from.count, 1));
+        System.arraycopy(from.cpuUsageArray, 0, copy.cpuUsageArray, 0, from.count);
+        copy.count = from.count;
+        copy.windowStart = from.windowStart;
+        copy.windowEnd = from.windowEnd;
+        return copy;
+    }
+
+    @Override
+    public CpuAccumulator copy(CpuAccumulator from, CpuAccumulator reuse) {
+        return copy(from);
+    }
+
+    @Override
+    public int getLength() {
+        return -1;
+    }
+
+    @Override
+    public void serialize(CpuAccumulator record, DataOutputView target) throws IOException {
+        StringValue.writeString(record.deviceId, target);
+        target.writeLong(record.windowStart);
+        target.writeLong(record.windowEnd);
+        target.writeInt(record.count);
+        for (int i = 0; i < record.count; i++) {
+            target.writeDouble(record.cpuUsageArray[i]);
+        }
+    }
+
+    @Override
+    public CpuAccumulator deserialize(DataInputView source) throws IOException {
+        String deviceId = StringValue.readString(source);
+        long windowStart = source.readLong();
+        long windowEnd = source.readLong();
+        int count = source.readInt();
+
+        // Sized to the samples only; addValue grows it when the window receives more
+        CpuAccumulator accumulator = new CpuAccumulator(deviceId, Math.max(count, 1));
+        for (int i = 0; i < count; i++) {
+            accumulator.cpuUsageArray[i] = source.readDouble();
+        }
+        accumulator.count = count;
+        accumulator.windowStart = windowStart;
+        accumulator.windowEnd = windowEnd;
+        return accumulator;
+    }
+
+    @Override
+    public CpuAccumulator deserialize(CpuAccumulator reuse, DataInputView source) throws IOException {
+        return deserialize(source);
+    }
+
+    @Override
+    public void copy(DataInputView source, DataOutputView target) throws IOException {
+        StringValue.copyString(source, target);
+        target.writeLong(source.readLong());
+        target.writeLong(source.readLong());
+        int count = source.readInt();
+        target.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            target.writeDouble(source.readDouble());
+        }
+    }
+
+    @Override
+    public TypeSerializerSnapshot<CpuAccumulator> snapshotConfiguration() {
+        return new CpuAccumulatorSerializerSnapshot();
+    }
+
+    /**
+     * Records the layout version with every checkpoint or savepoint. A new layout gets a new version,
+     * and restoreSerializer keeps a reader for each older version so state is migrated on restore.
+     */
+    public static final class CpuAccumulatorSerializerSnapshot implements TypeSerializerSnapshot<CpuAccumulator> {
+
+        private static final int CURRENT_VERSION = 1;
+
+        private int version = CURRENT_VERSION;
+
+        @Override
+        public int getCurrentVersion() {
+            return CURRENT_VERSION;
+        }
+
+        @Override
+        public void writeSnapshot(DataOutputView out) {
+            // The layout is fully described by the snapshot version
+        }
+
+        @Override
+        public void readSnapshot(int readVersion, DataInputView in, ClassLoader userCodeClassLoader) throws IOException {
+            if (readVersion < 1 || readVersion > CURRENT_VERSION) {
+                throw new IOException("Unsupported CpuAccumulator serializer version: " + readVersion);
+            }
+            this.version = readVersion;
+        }
+
+        @Override
+        public TypeSerializer<CpuAccumulator> restoreSerializer() {
+            return INSTANCE;
+        }
+
+        @Override
+        public TypeSerializerSchemaCompatibility<CpuAccumulator> resolveSchemaCompatibility(
+                TypeSerializerSnapshot<CpuAccumulator> oldSerializerSnapshot) {
+            if (!(oldSerializerSnapshot instanceof CpuAccumulatorSerializerSnapshot)) {
+                return TypeSerializerSchemaCompatibility.incompatible();
+            }
+            if (((CpuAccumulatorSerializerSnapshot) oldSerializerSnapshot).version < CURRENT_VERSION) {
+                return TypeSerializerSchemaCompatibility.compatibleAfterMigration();
+            }
+            return TypeSerializerSchemaCompatibility.compatibleAsIs();
+        }
+    }
+}
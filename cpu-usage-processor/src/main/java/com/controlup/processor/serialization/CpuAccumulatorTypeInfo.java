@@ -0,0 +1,91 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.function.CpuUsageAggregator.CpuAccumulator;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.serialization.SerializerConfig;
+import org.apache.flink.api.common.typeinfo.TypeInfoFactory;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+
+/**
+ * Type information for {@link CpuAccumulator} that always uses {@link CpuAccumulatorSerializer}
+ * instead of the POJO or Kryo serializer
+ */
+public class CpuAccumulatorTypeInfo extends TypeInformation<CpuAccumulator> {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public boolean isBasicType() {
+        return false;
+    }
+
+    @Override
+    public boolean isTupleType() {
+        return false;
+    }
+
+    @Override
+    public int getArity() {
+        return 1;
+    }
+
+    @Override
+    public int getTotalFields() {
+        return 1;
+    }
+
+    @Override
+    public Class<CpuAccumulator> getTypeClass() {
+        return CpuAccumulator.class;
+    }
+
+    @Override
+    public boolean isKeyType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<CpuAccumulator> createSerializer(SerializerConfig config) {
+        return CpuAccumulatorSerializer.INSTANCE;
+    }
+
+    @Override
+    public TypeSerializer<CpuAccumulator> createSerializer(ExecutionConfig config) {
+        return CpuAccumulatorSerializer.INSTANCE;
+    }
+
+    @Override
+    public String toString() {
+        return "CpuAccumulatorTypeInfo";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof CpuAccumulatorTypeInfo;
+    }
+
+    @Override
+    public int hashCode() {
+        return CpuAccumulatorTypeInfo.class.hashCode();
+    }
+
+    @Override
+    public boolean canEqual(Object obj) {
+        return obj instanceof CpuAccumulatorTypeInfo;
+    }
+
+    /**
+     * Picked up through the {@code @TypeInfo} annotation on {@link CpuAccumulator}
+     */
+    public static class Factory extends TypeInfoFactory<CpuAccumulator> {
+
+        @Override
+        public TypeInformation<CpuAccumulator> createTypeInfo(Type type, Map<String, TypeInformation<?>> genericParameters) {
+            return new CpuAccumulatorTypeInfo();
+        }
+    }
+}
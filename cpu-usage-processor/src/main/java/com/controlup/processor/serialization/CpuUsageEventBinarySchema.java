@@ -0,0 +1,82 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.common.serialization.SerializationSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.types.Either;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary wire format for {@link CpuUsageEvent} on the events topic, selected with {@code KAFKA_INPUT_FORMAT=binary}.
+ * <p>
+ * Layout (version 1, big-endian): version byte, timestamp (long), cpuUsage (double),
+ * deviceId length (short, -1 for null), deviceId UTF-8 bytes. A device id like "device-001" takes
+ * 29 bytes instead of about 70 as JSON. The test producer writes the same layout.
+ * <p>
+ * Records of another version or cut short are returned as {@link MalformedCpuUsageEvent}, on the left of the result.
+ */
+public class CpuUsageEventBinarySchema
+        implements DeserializationSchema<Either<MalformedCpuUsageEvent, CpuUsageEvent>>, SerializationSchema<CpuUsageEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final byte VERSION = 1;
+
+    private static final int HEADER_BYTES = Byte.BYTES + Long.BYTES + Double.BYTES + Short.BYTES;
+
+    @Override
+    public Either<MalformedCpuUsageEvent, CpuUsageEvent> deserialize(byte[] message) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(message);
+            byte version = buffer.get();
+            if (version != VERSION) {
+                return Either.Left(new MalformedCpuUsageEvent(message, "Unsupported binary format version: " + version));
+            }
+            long timestamp = buffer.getLong();
+            double cpuUsage = buffer.getDouble();
+            short deviceIdLength = buffer.getShort();
+            String deviceId = null;
+            if (deviceIdLength >= 0) {
+                deviceId = new String(message, buffer.position(), deviceIdLength, StandardCharsets.UTF_8);
+            }
+            return Either.Right(new CpuUsageEvent(deviceId, timestamp, cpuUsage));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            return Either.Left(new MalformedCpuUsageEvent(message, "Truncated record of " + message.length + " bytes"));
+        }
+    }
+
+    @Override
+    public byte[] serialize(CpuUsageEvent event) {
+        byte[] deviceId = event.getDeviceId() == null ? null : event.getDeviceId().getBytes(StandardCharsets.UTF_8);
+        int deviceIdLength = deviceId == null ? 0 : deviceId.length;
+        if (deviceIdLength > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Device id longer than " + Short.MAX_VALUE + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + deviceIdLength)
+                .put(VERSION)
+                .putLong(event.getTimestamp())
+                .putDouble(event.getCpuUsage())
+                .putShort(deviceId == null ? -1 : (short) deviceIdLength);
+        if (deviceId != null) {
+            buffer.put(deviceId);
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public boolean isEndOfStream(Either<MalformedCpuUsageEvent, CpuUsageEvent> nextElement) {
+        return false;
+    }
+
+    @Override
+    public TypeInformation<Either<MalformedCpuUsageEvent, CpuUsageEvent>> getProducedType() {
+        return Types.EITHER(TypeInformation.of(MalformedCpuUsageEvent.class), TypeInformation.of(CpuUsageEvent.class));
+    }
+}
@@ -0,0 +1,460 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.types.Either;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes {@code {deviceId, timestamp, cpuUsage}} JSON events with a scanner over the record's
+ * UTF-8 bytes, without databinding, reflection or a parser object per record.
+ * <p>
+ * Fields may come in any order and unknown fields (of any JSON type) are skipped. Device ids are
+ * interned by their bytes, so an id seen before is not allocated again. Records that are not a
+ * JSON object or miss one of the three fields are returned as {@link MalformedCpuUsageEvent}, on the
+ * left of the result.
+ * <p>
+ * Compared to the Jackson databinding it replaced, fractional and exponent timestamps are still accepted
+ * and truncated to a long, and a null or missing deviceId still ends up as a malformed record. It is
+ * stricter in two ways: a missing or null timestamp or cpuUsage is malformed instead of defaulting to 0,
+ * and numbers given as strings are malformed instead of being coerced.
+ * <p>
+ * Like every Flink deserialization schema an instance is used by a single source thread only.
+ */
+public class CpuUsageEventJsonSchema implements DeserializationSchema<Either<MalformedCpuUsageEvent, CpuUsageEvent>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_INTERNED_DEVICE_IDS = 16_384;
+
+    private static final byte[] DEVICE_ID = "deviceId".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = "timestamp".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CPU_USAGE = "cpuUsage".getBytes(StandardCharsets.US_ASCII);
+
+    // Powers of ten that are exact doubles, for the fast path of number parsing
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final int maxInternedDeviceIds;
+
+    private transient DeviceIdInterner deviceIds;
+
+    private transient byte[] json;
+    private transient int pos;
+
+    public CpuUsageEventJsonSchema() {
+        this(DEFAULT_INTERNED_DEVICE_IDS);
+    }
+
+    public CpuUsageEventJsonSchema(int maxInternedDeviceIds) {
+        this.maxInternedDeviceIds = maxInternedDeviceIds;
+    }
+
+    @Override
+    public void open(InitializationContext context) {
+        deviceIds = new DeviceIdInterner(maxInternedDeviceIds);
+    }
+
+    @Override
+    public Either<MalformedCpuUsageEvent, CpuUsageEvent> deserialize(byte[] message) {
+        json = message;
+        pos = 0;
+        try {
+            return Either.Right(parseEvent());
+        } catch (MalformedJsonException e) {
+            return Either.Left(new MalformedCpuUsageEvent(message, e.getMessage()));
+        } finally {
+            json = null;
+        }
+    }
+
+    private CpuUsageEvent parseEvent() throws MalformedJsonException {
+        String deviceId = null;
+        long timestamp = 0;
+        double cpuUsage = 0;
+        boolean hasTimestamp = false;
+        boolean hasCpuUsage = false;
+
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+        } else {
+            while (true) {
+                expect('"');
+                int keyStart = pos;
+                skipStringBody();
+                int keyEnd = pos - 1;
+                expect(':');
+                skipWhitespace();
+
+                if (keyEquals(keyStart, keyEnd, DEVICE_ID)) {
+                    deviceId = parseDeviceId();
+                } else if (keyEquals(keyStart, keyEnd, TIMESTAMP)) {
+                    timestamp = parseTimestamp();
+                    hasTimestamp = true;
+                } else if (keyEquals(keyStart, keyEnd, CPU_USAGE)) {
+                    cpuUsage = parseDouble("cpuUsage");
+                    hasCpuUsage = true;
+                } else {
+                    skipValue();
+                }
+
+                byte next = peek();
+                pos++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new MalformedJsonException("Expected ',' or '}' at offset " + (pos - 1));
+                }
+                skipWhitespace();
+            }
+        }
+        skipWhitespace();
+        if (pos < json.length) {
+            throw new MalformedJsonException("Unexpected content after the event object at offset " + pos);
+        }
+
+        if (deviceId == null || !hasTimestamp || !hasCpuUsage) {
+            throw new MalformedJsonException("Missing deviceId, timestamp or cpuUsage");
+        }
+        return new CpuUsageEvent(deviceId, timestamp, cpuUsage);
+    }
+
+    /**
+     * @return the device id, null for a JSON null
+     */
+    private String parseDeviceId() throws MalformedJsonException {
+        if (skipLiteral("null")) {
+            return null;
+        }
+        if (peek() != '"') {
+            throw new MalformedJsonException("deviceId must be a string");
+        }
+        int start = ++pos;
+        boolean escaped = skipStringBody();
+        int end = pos - 1;
+        if (escaped) {
+            // Escaped ids are rare enough to decode without interning
+            return unescape(start, end);
+        }
+        return deviceIds.intern(json, start, end - start);
+    }
+
+    private long parseTimestamp() throws MalformedJsonException {
+        int start = pos;
+        boolean negative = pos < json.length && json[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        int digitsStart = pos;
+        long value = 0;
+        while (pos < json.length && isDigit(json[pos])) {
+            int digit = json[pos++] - '0';
+            // Accumulated negatively so that Long.MIN_VALUE fits
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw new MalformedJsonException("timestamp out of range at offset " + start);
+            }
+            value = value * 10 - digit;
+        }
+        if (pos == digitsStart) {
+            throw new MalformedJsonException("timestamp must be a number");
+        }
+        if (pos < json.length && (json[pos] == '.' || json[pos] == 'e' || json[pos] == 'E')) {
+            // Truncated like Jackson's coercion of a floating point number to a long
+            pos = start;
+            double fractional = parseDouble("timestamp");
+            if (!(fractional >= Long.MIN_VALUE && fractional <= Long.MAX_VALUE)) {
+                throw new MalformedJsonException("timestamp out of range at offset " + start);
+            }
+            return (long) fractional;
+        }
+        if (pos < json.length && isNumberPart(json[pos])) {
+            throw new MalformedJsonException("timestamp must be a number");
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new MalformedJsonException("timestamp out of range at offset " + start);
+        }
+        return negative ? value : -value;
+    }
+
+    private double parseDouble(String field) throws MalformedJsonException {
+        int start = pos;
+        boolean negative = pos < json.length && json[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        int intStart = pos;
+        while (pos < json.length && isDigit(json[pos])) {
+            mantissa = mantissa * 10 + (json[pos++] - '0');
+            digits++;
+        }
+        if (pos == intStart) {
+            throw new MalformedJsonException(field + " must be a number");
+        }
+        if (pos < json.length && json[pos] == '.') {
+            pos++;
+            int fractionStart = pos;
+            while (pos < json.length && isDigit(json[pos])) {
+                mantissa = mantissa * 10 + (json[pos++] - '0');
+                digits++;
+                scale++;
+            }
+            if (pos == fractionStart) {
+                throw new MalformedJsonException(field + " must be a number");
+            }
+        }
+        boolean hasExponent = pos < json.length && (json[pos] == 'e' || json[pos] == 'E');
+        if (hasExponent) {
+            pos++;
+            if (pos < json.length && (json[pos] == '+' || json[pos] == '-')) {
+                pos++;
+            }
+            int exponentStart = pos;
+            while (pos < json.length && isDigit(json[pos])) {
+                pos++;
+            }
+            if (pos == exponentStart) {
+                throw new MalformedJsonException(field + " must be a number");
+            }
+        }
+        if (pos < json.length && isNumberPart(json[pos])) {
+            throw new MalformedJsonException(field + " must be a number");
+        }
+
+        // Up to 15 digits divided by an exact power of ten is correctly rounded
+        if (!hasExponent && digits <= 15) {
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(json, start, pos - start, StandardCharsets.US_ASCII));
+    }
+
+    private void skipValue() throws MalformedJsonException {
+        byte first = peek();
+        if (first == '"') {
+            pos++;
+            skipStringBody();
+        } else if (first == '{' || first == '[') {
+            skipContainer();
+        } else if (first == '-' || isDigit(first)) {
+            while (pos < json.length && isNumberPart(json[pos])) {
+                pos++;
+            }
+        } else if (!skipLiteral("true") && !skipLiteral("false") && !skipLiteral("null")) {
+            throw new MalformedJsonException("Unexpected value at offset " + pos);
+        }
+    }
+
+    private void skipContainer() throws MalformedJsonException {
+        int depth = 0;
+        while (pos < json.length) {
+            byte b = json[pos++];
+            if (b == '"') {
+                skipStringBody();
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0) {
+                    return;
+                }
+            }
+        }
+        throw new MalformedJsonException("Unterminated object or array");
+    }
+
+    private boolean skipLiteral(String literal) {
+        if (pos + literal.length() > json.length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (json[pos + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        pos += literal.length();
+        return true;
+    }
+
+    /**
+     * Moves past the closing quote of a string whose opening quote was already consumed
+     *
+     * @return whether the string contains escape sequences
+     */
+    private boolean skipStringBody() throws MalformedJsonException {
+        boolean escaped = false;
+        while (pos < json.length) {
+            byte b = json[pos++];
+            if (b == '"') {
+                return escaped;
+            }
+            if (b == '\\') {
+                escaped = true;
+                pos++;
+            } else if (b >= 0 && b < 0x20) {
+                throw new MalformedJsonException("Control character in string at offset " + (pos - 1));
+            }
+        }
+        throw new MalformedJsonException("Unterminated string");
+    }
+
+    private String unescape(int start, int end) throws MalformedJsonException {
+        StringBuilder value = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            int runStart = i;
+            while (i < end && json[i] != '\\') {
+                i++;
+            }
+            value.append(new String(json, runStart, i - runStart, StandardCharsets.UTF_8));
+            if (i == end) {
+                break;
+            }
+            byte escape = json[i + 1];
+            i += 2;
+            switch (escape) {
+                case '"', '\\', '/' -> value.append((char) escape);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (i + 4 > end) {
+                        throw new MalformedJsonException("Invalid unicode escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(new String(json, i, 4, StandardCharsets.US_ASCII), 16));
+                    } catch (NumberFormatException e) {
+                        throw new MalformedJsonException("Invalid unicode escape");
+                    }
+                    i += 4;
+                }
+                default -> throw new MalformedJsonException("Invalid escape sequence");
+            }
+        }
+        return value.toString();
+    }
+
+    private boolean keyEquals(int start, int end, byte[] key) {
+        return Arrays.equals(json, start, end, key, 0, key.length);
+    }
+
+    private void expect(char expected) throws MalformedJsonException {
+        if (peek() != expected) {
+            throw new MalformedJsonException("Expected '" + expected + "' at offset " + pos);
+        }
+        pos++;
+    }
+
+    /**
+     * Skips whitespace and returns the next byte without consuming it, 0 at the end of the record
+     */
+    private byte peek() {
+        skipWhitespace();
+        return pos < json.length ? json[pos] : 0;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length) {
+            byte b = json[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isNumberPart(byte b) {
+        return isDigit(b) || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-';
+    }
+
+    @Override
+    public boolean isEndOfStream(Either<MalformedCpuUsageEvent, CpuUsageEvent> nextElement) {
+        return false;
+    }
+
+    @Override
+    public TypeInformation<Either<MalformedCpuUsageEvent, CpuUsageEvent>> getProducedType() {
+        return Types.EITHER(TypeInformation.of(MalformedCpuUsageEvent.class), TypeInformation.of(CpuUsageEvent.class));
+    }
+
+    /**
+     * Thrown while scanning and turned into a {@link MalformedCpuUsageEvent}, without a stack trace
+     */
+    private static final class MalformedJsonException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        MalformedJsonException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Open-addressing set of device id strings looked up by their UTF-8 bytes, so an id seen
+     * before is returned without creating a String. Starts over once maxSize ids are held.
+     */
+    static final class DeviceIdInterner {
+
+        private final byte[][] keys;
+        private final String[] values;
+        private final int mask;
+        private final int maxSize;
+        private int size;
+
+        DeviceIdInterner(int maxSize) {
+            int capacity = Integer.highestOneBit(Math.max(maxSize, 1) * 4 / 3 + 1) << 1;
+            this.keys = new byte[capacity][];
+            this.values = new String[capacity];
+            this.mask = capacity - 1;
+            this.maxSize = maxSize;
+        }
+
+        String intern(byte[] bytes, int offset, int length) {
+            int hash = 1;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            // Spread so that ids differing only in their last characters do not cluster
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            byte[] key;
+            while ((key = keys[slot]) != null) {
+                if (Arrays.equals(key, 0, key.length, bytes, offset, offset + length)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (size >= maxSize) {
+                Arrays.fill(keys, null);
+                Arrays.fill(values, null);
+                size = 0;
+                slot = (hash ^ (hash >>> 16)) & mask;
+            }
+            keys[slot] = Arrays.copyOfRange(bytes, offset, offset + length);
+            values[slot] = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            size++;
+            return values[slot];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
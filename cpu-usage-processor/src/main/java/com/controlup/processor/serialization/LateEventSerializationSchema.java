@@ -0,0 +1,50 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import org.apache.flink.connector.kafka.sink.KafkaRecordSerializationSchema;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes events too late for any window to the late events topic, keyed by deviceId.
+ * <p>
+ * Values use the input format of the job, so the topic can be read back with the same deserializer:
+ * {@code {deviceId, timestamp, cpuUsage}} JSON, or the {@link CpuUsageEventBinarySchema} layout for "binary".
+ * Late events are rare, so the JSON is built without the reused buffers of the processed events sink.
+ */
+public class LateEventSerializationSchema implements KafkaRecordSerializationSchema<CpuUsageEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String topic;
+    private final boolean binary;
+
+    private final CpuUsageEventBinarySchema binarySchema = new CpuUsageEventBinarySchema();
+
+    public LateEventSerializationSchema(String topic, String format) {
+        this.topic = topic;
+        this.binary = "binary".equalsIgnoreCase(format);
+    }
+
+    @Override
+    public ProducerRecord<byte[], byte[]> serialize(CpuUsageEvent event, KafkaSinkContext context, @Nullable Long timestamp) {
+        byte[] key = event.getDeviceId() == null ? null : event.getDeviceId().getBytes(StandardCharsets.UTF_8);
+        return new ProducerRecord<>(topic, null, timestamp, key, binary ? binarySchema.serialize(event) : toJson(event));
+    }
+
+    byte[] toJson(CpuUsageEvent event) {
+        StringBuilder json = new StringBuilder(96).append("{\"deviceId\":");
+        if (event.getDeviceId() == null) {
+            json.append("null");
+        } else {
+            json.append('"').append(JsonStringEncoder.getInstance().quoteAsString(event.getDeviceId())).append('"');
+        }
+        json.append(",\"timestamp\":").append(event.getTimestamp())
+                .append(",\"cpuUsage\":").append(event.getCpuUsage())
+                .append('}');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,38 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.flink.connector.kafka.sink.KafkaRecordSerializationSchema;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes records the job could not decode to the malformed events topic, a dead letter topic.
+ * <p>
+ * The value is the payload as the decoder saw it and the decoding error goes to the {@value #ERROR_HEADER} header,
+ * so the records can be inspected, fixed and sent to the input topic again. They have no device to key them by.
+ */
+public class MalformedEventSerializationSchema implements KafkaRecordSerializationSchema<MalformedCpuUsageEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String ERROR_HEADER = "error";
+
+    private final String topic;
+
+    public MalformedEventSerializationSchema(String topic) {
+        this.topic = topic;
+    }
+
+    @Override
+    public ProducerRecord<byte[], byte[]> serialize(MalformedCpuUsageEvent event, KafkaSinkContext context, @Nullable Long timestamp) {
+        RecordHeaders headers = new RecordHeaders();
+        if (event.getError() != null) {
+            headers.add(ERROR_HEADER, event.getError().getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] value = event.getPayload() == null ? null : event.getPayload().getBytes(StandardCharsets.UTF_8);
+        return new ProducerRecord<>(topic, null, timestamp, null, value, headers);
+    }
+}
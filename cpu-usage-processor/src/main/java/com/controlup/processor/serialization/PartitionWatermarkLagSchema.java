@@ -0,0 +1,103 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.connector.kafka.source.reader.deserializer.KafkaRecordDeserializationSchema;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.types.Either;
+import org.apache.flink.util.Collector;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes record values with the given schema and registers {@value #PARTITION_WATERMARK_LAG} for every
+ * partition the source reader consumes, in a {@code partition} metric group: wall clock time minus the
+ * partition's watermark (its highest event timestamp less the out-of-orderness bound), in milliseconds.
+ * <p>
+ * The Kafka source derives a watermark per partition and the reader's watermark is the lowest of the
+ * active ones, so the partition with the highest lag holds back the windows of the whole job. A partition
+ * without records for the idle timeout of the watermark strategy is marked idle and holds back nothing,
+ * so its lag is reported as 0 until it receives records again.
+ */
+public class PartitionWatermarkLagSchema implements KafkaRecordDeserializationSchema<Either<MalformedCpuUsageEvent, CpuUsageEvent>> {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String PARTITION_WATERMARK_LAG = "partitionWatermarkLagMs";
+
+    private final DeserializationSchema<Either<MalformedCpuUsageEvent, CpuUsageEvent>> valueSchema;
+    private final long outOfOrderness;
+    private final long idleTimeout;
+
+    private transient MetricGroup metricGroup;
+    // Highest event timestamp per partition
+    private transient Map<Integer, PartitionTimestamp> partitions;
+
+    public PartitionWatermarkLagSchema(DeserializationSchema<Either<MalformedCpuUsageEvent, CpuUsageEvent>> valueSchema,
+                                       Duration outOfOrderness, Duration idleTimeout) {
+        this.valueSchema = valueSchema;
+        this.outOfOrderness = outOfOrderness.toMillis();
+        this.idleTimeout = idleTimeout.toMillis();
+    }
+
+    @Override
+    public void open(DeserializationSchema.InitializationContext context) throws Exception {
+        valueSchema.open(context);
+        metricGroup = context.getMetricGroup();
+        partitions = new HashMap<>();
+    }
+
+    @Override
+    public void deserialize(ConsumerRecord<byte[], byte[]> record, Collector<Either<MalformedCpuUsageEvent, CpuUsageEvent>> out)
+            throws IOException {
+        Either<MalformedCpuUsageEvent, CpuUsageEvent> decoded = valueSchema.deserialize(record.value());
+        if (decoded == null) {
+            return;
+        }
+        if (decoded.isRight()) {
+            CpuUsageEvent event = decoded.right();
+            PartitionTimestamp partition = partitions.get(record.partition());
+            if (partition == null) {
+                partition = new PartitionTimestamp();
+                partitions.put(record.partition(), partition);
+                PartitionTimestamp registered = partition;
+                metricGroup.addGroup("partition", String.valueOf(record.partition()))
+                        .gauge(PARTITION_WATERMARK_LAG, (Gauge<Long>) () -> watermarkLag(registered, System.currentTimeMillis()));
+            }
+            partition.maxTimestamp = Math.max(partition.maxTimestamp, event.getTimestamp());
+            partition.lastRecordTime = System.currentTimeMillis();
+        }
+        out.collect(decoded);
+    }
+
+    @Override
+    public TypeInformation<Either<MalformedCpuUsageEvent, CpuUsageEvent>> getProducedType() {
+        return valueSchema.getProducedType();
+    }
+
+    long watermarkLag(int partition, long now) {
+        PartitionTimestamp timestamp = partitions.get(partition);
+        return timestamp == null ? 0L : watermarkLag(timestamp, now);
+    }
+
+    private long watermarkLag(PartitionTimestamp partition, long now) {
+        if (partition.maxTimestamp == Long.MIN_VALUE || now - partition.lastRecordTime >= idleTimeout) {
+            return 0L;
+        }
+        return now - (partition.maxTimestamp - outOfOrderness);
+    }
+
+    private static final class PartitionTimestamp {
+        // Read by the metric reporter's thread
+        volatile long maxTimestamp = Long.MIN_VALUE;
+        // Wall clock time of the partition's latest record, as the idleness of the watermark strategy
+        volatile long lastRecordTime;
+    }
+}
@@ -0,0 +1,181 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.connector.kafka.sink.KafkaRecordSerializationSchema;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes processed events to the output topic as JSON bytes keyed by deviceId, so all results of a
+ * device land on one partition in order.
+ * <p>
+ * The JSON has the same fields and values as Jackson writes for {@link ProcessedCpuEvent}, but is encoded
+ * straight into a reused buffer without an ObjectMapper or a String of the whole record. Strings and longs
+ * are written byte by byte; doubles still go through {@link Double#toString(double)}, one short-lived String
+ * each, as writing their shortest round-trip digits directly would mean reimplementing that algorithm.
+ */
+public class ProcessedCpuEventSerializationSchema implements KafkaRecordSerializationSchema<ProcessedCpuEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final String topic;
+
+    private transient DataOutputSerializer buffer;
+    private transient byte[] digits;
+
+    public ProcessedCpuEventSerializationSchema(String topic) {
+        this.topic = topic;
+    }
+
+    @Override
+    public ProducerRecord<byte[], byte[]> serialize(ProcessedCpuEvent event, KafkaSinkContext context, @Nullable Long timestamp) {
+        byte[] key = event.getDeviceId() == null ? null : event.getDeviceId().getBytes(StandardCharsets.UTF_8);
+        return new ProducerRecord<>(topic, null, timestamp, key, toJson(event));
+    }
+
+    byte[] toJson(ProcessedCpuEvent event) {
+        if (buffer == null) {
+            buffer = new DataOutputSerializer(256);
+            digits = new byte[19];
+        }
+        buffer.clear();
+        try {
+            writeRaw("{\"id\":");
+            writeString(event.getId());
+            writeRaw(",\"deviceId\":");
+            writeString(event.getDeviceId());
+            writeRaw(",\"windowStart\":");
+            writeLong(event.getWindowStart());
+            writeRaw(",\"windowEnd\":");
+            writeLong(event.getWindowEnd());
+            writeRaw(",\"percentile95\":");
+            writeDouble(event.getPercentile95());
+            writeRaw(",\"percentiles\":");
+            writePercentiles(event.getPercentiles());
+            writeRaw(",\"max\":");
+            writeDouble(event.getMax());
+            writeRaw(",\"mean\":");
+            writeDouble(event.getMean());
+            writeRaw(",\"eventCount\":");
+            writeLong(event.getEventCount());
+            writeRaw(",\"lastUpdated\":");
+            writeLong(event.getLastUpdated());
+            writeRaw(",\"revision\":");
+            writeLong(event.getRevision());
+            writeRaw(event.isCorrection() ? ",\"correction\":true}" : ",\"correction\":false}");
+        } catch (IOException e) {
+            // DataOutputSerializer grows as needed and never throws here
+            throw new UncheckedIOException(e);
+        }
+        return buffer.getCopyOfBuffer();
+    }
+
+    private void writeRaw(String ascii) throws IOException {
+        // Not DataOutputSerializer.writeBytes, which advances the position twice
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer.write(ascii.charAt(i));
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeRaw(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buffer.write('-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        buffer.write(digits, start, digits.length - start);
+    }
+
+    /**
+     * Same digits as Jackson, which also writes {@link Double#toString(double)}; allocates that String
+     */
+    private void writeDouble(double value) throws IOException {
+        if (Double.isFinite(value)) {
+            writeRaw(Double.toString(value));
+        } else {
+            // Jackson's default for NaN and infinities
+            buffer.write('"');
+            writeRaw(Double.toString(value));
+            buffer.write('"');
+        }
+    }
+
+    private void writePercentiles(@Nullable Map<String, Double> percentiles) throws IOException {
+        if (percentiles == null) {
+            writeRaw("null");
+            return;
+        }
+        buffer.write('{');
+        boolean first = true;
+        for (Map.Entry<String, Double> percentile : percentiles.entrySet()) {
+            if (!first) {
+                buffer.write(',');
+            }
+            first = false;
+            writeString(percentile.getKey());
+            buffer.write(':');
+            writeDouble(percentile.getValue());
+        }
+        buffer.write('}');
+    }
+
+    private void writeString(@Nullable String value) throws IOException {
+        if (value == null) {
+            writeRaw("null");
+            return;
+        }
+        buffer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.write('\\');
+                buffer.write(c);
+            } else if (c < 0x20) {
+                buffer.write('\\');
+                buffer.write('u');
+                buffer.write('0');
+                buffer.write('0');
+                buffer.write(HEX[c >> 4]);
+                buffer.write(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                buffer.write(c);
+            } else {
+                // Rare in ids, so encode the remainder with the JDK's UTF-8 encoder
+                writeUtf8Escaped(value.substring(i));
+                break;
+            }
+        }
+        buffer.write('"');
+    }
+
+    private void writeUtf8Escaped(String value) throws IOException {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        buffer.write(escaped.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package com.controlup.processor.sink;
+
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.connector.sink2.Sink;
+import org.apache.flink.api.connector.sink2.SinkWriter;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Upserts window results straight into {@code "cpu-metrics".cpu_usage_95_percentile}, with the same statements
+ * as the handler, so the API sees a result without the hops through Kafka and the handler.
+ * <p>
+ * Each writer batches its results and writes them in one transaction when the batch is full, when the oldest
+ * buffered result is {@code flushInterval} old, and before every checkpoint, so a checkpoint only completes
+ * once the results before it are in the database. Results are written at least once; as rows are replaced by
+ * revision, a replay after a restart leaves them unchanged.
+ */
+public class JdbcResultSink implements Sink<ProcessedCpuEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ConnectionFactory connectionFactory;
+    private final int batchSize;
+    private final long flushInterval;
+
+    public JdbcResultSink(String url, String user, String password, int batchSize, Duration flushInterval) {
+        this(() -> DriverManager.getConnection(url, user, password), batchSize, flushInterval);
+    }
+
+    JdbcResultSink(ConnectionFactory connectionFactory, int batchSize, Duration flushInterval) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Flush interval must be positive: " + flushInterval);
+        }
+        this.connectionFactory = connectionFactory;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval.toMillis();
+    }
+
+    @Override
+    public SinkWriter<ProcessedCpuEvent> createWriter(InitContext context) {
+        return new JdbcResultWriter(connectionFactory, batchSize, flushInterval,
+                context.getProcessingTimeService(), context.metricGroup());
+    }
+
+    /**
+     * Opens the writer's connection, again after a failed flush
+     */
+    @FunctionalInterface
+    interface ConnectionFactory extends Serializable {
+        Connection connect() throws SQLException;
+    }
+}
@@ -0,0 +1,233 @@
+package com.controlup.processor.sink;
+
+import com.controlup.processor.model.ProcessedCpuEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.flink.api.common.operators.ProcessingTimeService;
+import org.apache.flink.api.connector.sink2.SinkWriter;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.metrics.DescriptiveStatisticsHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writer of {@link JdbcResultSink}. Results of the same window in one batch are written once, with the highest
+ * revision, as the database would keep only that one. Writes, timers and checkpoint flushes all run on the
+ * task thread.
+ * <ul>
+ *     <li>{@value #RESULTS_WRITTEN} - results written to the database</li>
+ *     <li>{@value #FLUSH_MILLIS} - histogram of the time to write a batch, in milliseconds</li>
+ * </ul>
+ */
+class JdbcResultWriter implements SinkWriter<ProcessedCpuEvent> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcResultWriter.class);
+
+    public static final String RESULTS_WRITTEN = "jdbcResultsWritten";
+    public static final String FLUSH_MILLIS = "jdbcFlushMillis";
+
+    // Number of most recent values the histogram reports statistics over
+    private static final int HISTOGRAM_WINDOW_SIZE = 1024;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    // The statements are the handler's CpuMetricsRepository ones; the integration tests of both run them
+    // against the docker-compose migrations, so keep them in step.
+    // The event id identifies the device's window, so later firings replace the row (last writer by revision wins)
+    static final String UPSERT_SQL = """
+        INSERT INTO "cpu-metrics".cpu_usage_95_percentile AS metric
+        (event_id, device_id, window_start, window_end, percentile_95, percentiles, max_usage, mean_usage, event_count,
+         revision, last_updated, created_at)
+        VALUES (?, ?, ?, ?, ?, ?::jsonb, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT (event_id) DO UPDATE SET
+            window_start = EXCLUDED.window_start,
+            window_end = EXCLUDED.window_end,
+            percentile_95 = EXCLUDED.percentile_95,
+            percentiles = EXCLUDED.percentiles,
+            max_usage = EXCLUDED.max_usage,
+            mean_usage = EXCLUDED.mean_usage,
+            event_count = EXCLUDED.event_count,
+            revision = EXCLUDED.revision,
+            last_updated = EXCLUDED.last_updated
+        WHERE metric.revision < EXCLUDED.revision
+        """;
+
+    // Corrections replace the window's row but keep its last_updated,
+    // so a corrected old window does not become the device's latest result
+    static final String CORRECT_SQL = """
+        INSERT INTO "cpu-metrics".cpu_usage_95_percentile AS metric
+        (event_id, device_id, window_start, window_end, percentile_95, percentiles, max_usage, mean_usage, event_count,
+         revision, last_updated, created_at)
+        VALUES (?, ?, ?, ?, ?, ?::jsonb, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+        ON CONFLICT (event_id) DO UPDATE SET
+            window_start = EXCLUDED.window_start,
+            window_end = EXCLUDED.window_end,
+            percentile_95 = EXCLUDED.percentile_95,
+            percentiles = EXCLUDED.percentiles,
+            max_usage = EXCLUDED.max_usage,
+            mean_usage = EXCLUDED.mean_usage,
+            event_count = EXCLUDED.event_count,
+            revision = EXCLUDED.revision
+        WHERE metric.revision < EXCLUDED.revision
+        """;
+
+    private final JdbcResultSink.ConnectionFactory connectionFactory;
+    private final int batchSize;
+    private final long flushInterval;
+    private final ProcessingTimeService processingTimeService;
+    private final Counter resultsWritten;
+    private final Histogram flushMillis;
+
+    private final Map<String, ProcessedCpuEvent> batch = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    private Connection connection;
+    private PreparedStatement upsert;
+    private PreparedStatement correct;
+
+    JdbcResultWriter(JdbcResultSink.ConnectionFactory connectionFactory, int batchSize, long flushInterval,
+                     ProcessingTimeService processingTimeService, MetricGroup metricGroup) {
+        this.connectionFactory = connectionFactory;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.processingTimeService = processingTimeService;
+        this.resultsWritten = metricGroup.counter(RESULTS_WRITTEN);
+        this.flushMillis = metricGroup.histogram(FLUSH_MILLIS, new DescriptiveStatisticsHistogram(HISTOGRAM_WINDOW_SIZE));
+    }
+
+    @Override
+    public void write(ProcessedCpuEvent result, Context context) throws IOException {
+        batch.merge(result.getId(), result,
+                (buffered, next) -> next.getRevision() > buffered.getRevision() ? next : buffered);
+        if (batch.size() >= batchSize) {
+            writeBatch();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            processingTimeService.registerTimer(processingTimeService.getCurrentProcessingTime() + flushInterval,
+                    time -> {
+                        flushScheduled = false;
+                        writeBatch();
+                    });
+        }
+    }
+
+    /**
+     * Called before every checkpoint and at the end of the input
+     */
+    @Override
+    public void flush(boolean endOfInput) throws IOException {
+        writeBatch();
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeConnection();
+    }
+
+    int buffered() {
+        return batch.size();
+    }
+
+    private void writeBatch() throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            if (connection == null) {
+                openConnection();
+            }
+            boolean upserts = false;
+            boolean corrections = false;
+            for (ProcessedCpuEvent result : batch.values()) {
+                if (result.isCorrection()) {
+                    addBatch(correct, result);
+                    corrections = true;
+                } else {
+                    addBatch(upsert, result);
+                    upserts = true;
+                }
+            }
+            if (upserts) {
+                upsert.executeBatch();
+            }
+            if (corrections) {
+                correct.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            // Reconnect on the next flush; the task fails and replays the results since the last checkpoint
+            closeConnection();
+            throw new IOException("Could not write " + batch.size() + " results", e);
+        }
+        resultsWritten.inc(batch.size());
+        flushMillis.update(System.currentTimeMillis() - start);
+        batch.clear();
+    }
+
+    private void openConnection() throws SQLException {
+        connection = connectionFactory.connect();
+        connection.setAutoCommit(false);
+        upsert = connection.prepareStatement(UPSERT_SQL);
+        correct = connection.prepareStatement(CORRECT_SQL);
+    }
+
+    private void closeConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOG.warn("Could not close the result database connection", e);
+        } finally {
+            connection = null;
+            upsert = null;
+            correct = null;
+        }
+    }
+
+    private static void addBatch(PreparedStatement statement, ProcessedCpuEvent result) throws SQLException {
+        statement.setString(1, result.getId());
+        statement.setString(2, result.getDeviceId());
+        statement.setLong(3, result.getWindowStart());
+        statement.setLong(4, result.getWindowEnd());
+        statement.setDouble(5, result.getPercentile95());
+        // Results without window statistics leave them null, as the handler does
+        if (result.getEventCount() > 0) {
+            statement.setString(6, percentilesJson(result.getPercentiles()));
+            statement.setDouble(7, result.getMax());
+            statement.setDouble(8, result.getMean());
+            statement.setLong(9, result.getEventCount());
+        } else {
+            statement.setNull(6, Types.VARCHAR);
+            statement.setNull(7, Types.DOUBLE);
+            statement.setNull(8, Types.DOUBLE);
+            statement.setNull(9, Types.BIGINT);
+        }
+        statement.setLong(10, result.getRevision());
+        statement.setLong(11, result.getLastUpdated());
+        statement.addBatch();
+    }
+
+    private static String percentilesJson(Map<String, Double> percentiles) throws SQLException {
+        if (percentiles == null) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(percentiles);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Cannot write percentiles " + percentiles, e);
+        }
+    }
+}
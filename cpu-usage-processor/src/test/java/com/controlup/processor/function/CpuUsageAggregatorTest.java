@@ -2,11 +2,14 @@ package com.controlup.processor.function;
 
 import com.controlup.processor.model.CpuUsageEvent;
 import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Nested;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class CpuUsageAggregatorTest {
@@ -224,6 +227,50 @@ class CpuUsageAggregatorTest {
             assertEquals("device-test", result.getDeviceId());
             assertTrue(result.getPercentile95() >= 50.0 && result.getPercentile95() <= 100.0);
         }
+
+        @Test
+        @DisplayName("Should calculate the configured percentiles, max, mean and count in one result")
+        void shouldCalculateWindowStatistics() {
+            CpuUsageAggregator statistics = new CpuUsageAggregator(ResultPercentiles.parse("50, 99.9"));
+            CpuUsageAggregator.CpuAccumulator accumulator = statistics.createAccumulator();
+            double[] values = new double[20];
+            for (int i = 1; i <= 20; i++) {
+                values[i - 1] = i * 5.0;
+                statistics.add(new CpuUsageEvent("device-001", 1692617400000L + i * 1000, i * 5.0), accumulator);
+            }
+
+            ProcessedCpuEvent result = statistics.getResult(accumulator);
+
+            assertEquals(List.of("p50", "p95", "p99.9"), List.copyOf(result.getPercentiles().keySet()));
+            assertEquals(new Percentile(50).evaluate(values), result.getPercentiles().get("p50"));
+            assertEquals(new Percentile(99.9).evaluate(values), result.getPercentiles().get("p99.9"));
+            assertEquals(result.getPercentile95(), result.getPercentiles().get("p95"));
+            assertEquals(99.75, result.getPercentile95(), 0.01);
+            assertEquals(100.0, result.getMax());
+            assertEquals(52.5, result.getMean(), 1e-9);
+            assertEquals(20, result.getEventCount());
+        }
+
+        @Test
+        @DisplayName("Should report the given window bounds rather than the range of the samples")
+        void shouldReportWindowBounds() {
+            CpuUsageAggregator.CpuAccumulator accumulator = aggregator.createAccumulator();
+            aggregator.add(new CpuUsageEvent("device-001", 1692617401000L, 50.0), accumulator);
+            aggregator.add(new CpuUsageEvent("device-001", 1692617409000L, 60.0), accumulator);
+
+            ProcessedCpuEvent result = aggregator.getResult(accumulator, "device-001", 1692617400000L, 1692617430000L);
+
+            assertEquals(1692617400000L, result.getWindowStart());
+            assertEquals(1692617430000L, result.getWindowEnd());
+            assertEquals(ProcessedCpuEvent.windowId("device-001", 1692617400000L, 1692617430000L), result.getId());
+        }
+
+        @Test
+        @DisplayName("Should reject percentiles outside (0, 100]")
+        void shouldRejectInvalidPercentiles() {
+            assertThrows(IllegalArgumentException.class, () -> ResultPercentiles.parse("50,0"));
+            assertThrows(IllegalArgumentException.class, () -> ResultPercentiles.parse("101"));
+        }
     }
 
     @Nested
@@ -0,0 +1,187 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuUsageHistogramAggregatorTest {
+
+    private CpuUsageHistogramAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new CpuUsageHistogramAggregator();
+    }
+
+    @Nested
+    @DisplayName("Aggregator Function Tests")
+    class AggregatorFunctionTest {
+
+        @Test
+        @DisplayName("Should create accumulator with one bucket per resolution step")
+        void shouldCreateAccumulatorWithFixedBuckets() {
+            assertEquals(10_001, aggregator.createAccumulator().counts.length);
+            assertEquals(1_001, new CpuUsageHistogramAggregator(0.1).createAccumulator().counts.length);
+        }
+
+        @Test
+        @DisplayName("Should count events and track window boundaries")
+        void shouldCountEventsAndTrackWindowBoundaries() {
+            CpuUsageHistogramAggregator.HistogramAccumulator accumulator = aggregator.createAccumulator();
+
+            aggregator.add(new CpuUsageEvent("device-001", 1692617420000L, 60.0), accumulator);
+            aggregator.add(new CpuUsageEvent("device-001", 1692617400000L, 60.0), accumulator);
+            aggregator.add(new CpuUsageEvent("device-001", 1692617440000L, 90.0), accumulator);
+
+            assertEquals("device-001", accumulator.deviceId);
+            assertEquals(3, accumulator.count);
+            assertEquals(2, accumulator.counts[6000]);
+            assertEquals(1, accumulator.counts[9000]);
+            assertEquals(1692617400000L, accumulator.windowStart);
+            assertEquals(1692617440000L, accumulator.windowEnd);
+        }
+
+        @Test
+        @DisplayName("Should clamp values outside 0-100")
+        void shouldClampValuesOutsideRange() {
+            CpuUsageHistogramAggregator.HistogramAccumulator accumulator = aggregator.createAccumulator();
+
+            aggregator.add(new CpuUsageEvent("device-001", 1692617400000L, -5.0), accumulator);
+            aggregator.add(new CpuUsageEvent("device-001", 1692617400000L, 120.0), accumulator);
+
+            assertEquals(1, accumulator.counts[0]);
+            assertEquals(1, accumulator.counts[10_000]);
+        }
+
+        @Test
+        @DisplayName("Should reject invalid resolution")
+        void shouldRejectInvalidResolution() {
+            assertThrows(IllegalArgumentException.class, () -> new CpuUsageHistogramAggregator(0.0));
+            assertThrows(IllegalArgumentException.class, () -> new CpuUsageHistogramAggregator(150.0));
+        }
+    }
+
+    @Nested
+    @DisplayName("Result Generation Tests")
+    class ResultGenerationTest {
+
+        @Test
+        @DisplayName("Should return unknown result for empty accumulator")
+        void shouldReturnUnknownResultForEmptyAccumulator() {
+            ProcessedCpuEvent result = aggregator.getResult(aggregator.createAccumulator());
+
+            assertEquals("unknown", result.getDeviceId());
+            assertEquals(0.0, result.getPercentile95());
+        }
+
+        @Test
+        @DisplayName("Should match CpuUsageAggregator for values on the resolution grid")
+        void shouldMatchExactAggregator() {
+            CpuUsageAggregator exact = new CpuUsageAggregator();
+            CpuUsageAggregator.CpuAccumulator exactAccumulator = exact.createAccumulator();
+            CpuUsageHistogramAggregator.HistogramAccumulator accumulator = aggregator.createAccumulator();
+
+            // Same data as CpuUsageAggregatorTest: 5, 10, ..., 100 gives 99.75
+            for (int i = 1; i <= 20; i++) {
+                CpuUsageEvent event = new CpuUsageEvent("device-001", 1692617400000L + i * 1000, i * 5.0);
+                exact.add(event, exactAccumulator);
+                aggregator.add(event, accumulator);
+            }
+
+            assertEquals(99.75, aggregator.getResult(accumulator).getPercentile95(), 1e-9);
+            assertEquals(exact.getResult(exactAccumulator).getPercentile95(),
+                    aggregator.getResult(accumulator).getPercentile95(), 1e-9);
+        }
+
+        @ParameterizedTest(name = "{0} samples")
+        @ValueSource(ints = {1, 2, 19, 20, 21, 100, 1_000, 50_000})
+        @DisplayName("Should equal Percentile(95) over samples rounded to the resolution")
+        void shouldEqualPercentileOverRoundedSamples(int sampleCount) {
+            Random random = new Random(sampleCount);
+            double[] rounded = new double[sampleCount];
+            CpuUsageHistogramAggregator.HistogramAccumulator accumulator = aggregator.createAccumulator();
+
+            for (int i = 0; i < sampleCount; i++) {
+                double value = random.nextDouble() < 0.1 ? 80 + random.nextDouble() * 20 : random.nextDouble() * 40;
+                rounded[i] = Math.round(value / 0.01) * 0.01;
+                aggregator.add(new CpuUsageEvent("device-001", 1692617400000L + i, value), accumulator);
+            }
+
+            assertEquals(new Percentile(95).evaluate(rounded), aggregator.getResult(accumulator).getPercentile95(), 1e-9);
+        }
+
+        @Test
+        @DisplayName("Should report percentiles, max and mean of the samples rounded to the resolution")
+        void shouldReportWindowStatistics() {
+            CpuUsageHistogramAggregator statistics = new CpuUsageHistogramAggregator(0.01, ResultPercentiles.parse("50,90,99"));
+            CpuUsageHistogramAggregator.HistogramAccumulator accumulator = statistics.createAccumulator();
+            double[] rounded = new double[1000];
+            Random random = new Random(5);
+            for (int i = 0; i < rounded.length; i++) {
+                double value = random.nextDouble() * 100;
+                rounded[i] = Math.round(value / 0.01) * 0.01;
+                statistics.add(new CpuUsageEvent("device-001", 1692617400000L + i, value), accumulator);
+            }
+
+            ProcessedCpuEvent result = statistics.getResult(accumulator);
+
+            for (double p : new double[]{50, 90, 95, 99}) {
+                assertEquals(new Percentile(p).evaluate(rounded), result.getPercentiles().get(ResultPercentiles.name(p)), 1e-9);
+            }
+            assertEquals(Arrays.stream(rounded).max().getAsDouble(), result.getMax(), 1e-9);
+            assertEquals(Arrays.stream(rounded).average().getAsDouble(), result.getMean(), 1e-9);
+            assertEquals(1000, result.getEventCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Merge Operations Tests")
+    class MergeOperationsTest {
+
+        @Test
+        @DisplayName("Should add bucket counts into first accumulator")
+        void shouldAddBucketCounts() {
+            CpuUsageHistogramAggregator.HistogramAccumulator acc1 = aggregator.createAccumulator();
+            CpuUsageHistogramAggregator.HistogramAccumulator acc2 = aggregator.createAccumulator();
+            aggregator.add(new CpuUsageEvent("device-001", 1692617400000L, 60.0), acc1);
+            aggregator.add(new CpuUsageEvent("device-001", 1692617415000L, 60.0), acc2);
+            aggregator.add(new CpuUsageEvent("device-001", 1692617405000L, 75.0), acc2);
+
+            CpuUsageHistogramAggregator.HistogramAccumulator merged = aggregator.merge(acc1, acc2);
+
+            assertSame(acc1, merged);
+            assertEquals(3, merged.count);
+            assertEquals(2, merged.counts[6000]);
+            assertEquals(1, merged.counts[7500]);
+            assertEquals(1692617400000L, merged.windowStart);
+            assertEquals(1692617415000L, merged.windowEnd);
+            // Second accumulator is left untouched
+            assertEquals(2, acc2.count);
+            assertEquals(1, acc2.counts[6000]);
+        }
+
+        @Test
+        @DisplayName("Should take device ID from second accumulator when first is empty")
+        void shouldTakeDeviceIdFromSecondAccumulator() {
+            CpuUsageHistogramAggregator.HistogramAccumulator acc1 = aggregator.createAccumulator();
+            CpuUsageHistogramAggregator.HistogramAccumulator acc2 = aggregator.createAccumulator();
+            aggregator.add(new CpuUsageEvent("device-002", 1692617400000L, 80.0), acc2);
+
+            CpuUsageHistogramAggregator.HistogramAccumulator merged = aggregator.merge(acc1, acc2);
+
+            assertEquals("device-002", merged.deviceId);
+            assertEquals(80.0, aggregator.getResult(merged).getPercentile95(), 1e-9);
+        }
+    }
+}
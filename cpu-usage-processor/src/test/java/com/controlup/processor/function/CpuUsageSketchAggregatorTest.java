@@ -0,0 +1,222 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuUsageSketchAggregatorTest {
+
+    private CpuUsageSketchAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new CpuUsageSketchAggregator();
+    }
+
+    @Nested
+    @DisplayName("Aggregator Function Tests")
+    class AggregatorFunctionTest {
+
+        @Test
+        @DisplayName("Should create empty accumulator")
+        void shouldCreateEmptyAccumulator() {
+            CpuUsageSketchAggregator.SketchAccumulator accumulator = aggregator.createAccumulator();
+
+            assertTrue(accumulator.isEmpty());
+            assertEquals(0, accumulator.counts.length);
+            assertEquals(Long.MAX_VALUE, accumulator.windowStart);
+            assertEquals(Long.MIN_VALUE, accumulator.windowEnd);
+        }
+
+        @Test
+        @DisplayName("Should track device and window boundaries")
+        void shouldTrackDeviceAndWindowBoundaries() {
+            CpuUsageSketchAggregator.SketchAccumulator accumulator = aggregator.createAccumulator();
+
+            aggregator.add(new CpuUsageEvent("device-001", 1692617420000L, 60.0), accumulator);
+            aggregator.add(new CpuUsageEvent("device-001", 1692617400000L, 75.5), accumulator);
+            aggregator.add(new CpuUsageEvent("device-001", 1692617440000L, 90.0), accumulator);
+
+            assertEquals("device-001", accumulator.deviceId);
+            assertEquals(3, accumulator.count);
+            assertEquals(1692617400000L, accumulator.windowStart);
+            assertEquals(1692617440000L, accumulator.windowEnd);
+        }
+
+        @Test
+        @DisplayName("Should reject invalid relative accuracy")
+        void shouldRejectInvalidRelativeAccuracy() {
+            assertThrows(IllegalArgumentException.class, () -> new CpuUsageSketchAggregator(0.0));
+            assertThrows(IllegalArgumentException.class, () -> new CpuUsageSketchAggregator(1.0));
+        }
+
+        @Test
+        @DisplayName("Should keep memory bounded regardless of event count")
+        void shouldKeepMemoryBounded() {
+            CpuUsageSketchAggregator.SketchAccumulator accumulator = aggregator.createAccumulator();
+            Random random = new Random(1);
+
+            for (int i = 0; i < 1_000_000; i++) {
+                aggregator.add(new CpuUsageEvent("device-001", 1692617400000L + i, random.nextDouble() * 100), accumulator);
+            }
+
+            assertEquals(1_000_000, accumulator.count);
+            assertTrue(accumulator.counts.length <= CpuUsageSketchAggregator.MAX_BUCKETS);
+        }
+    }
+
+    @Nested
+    @DisplayName("Result Generation Tests")
+    class ResultGenerationTest {
+
+        @Test
+        @DisplayName("Should return unknown result for empty accumulator")
+        void shouldReturnUnknownResultForEmptyAccumulator() {
+            ProcessedCpuEvent result = aggregator.getResult(aggregator.createAccumulator());
+
+            assertEquals("unknown", result.getDeviceId());
+            assertEquals(0.0, result.getPercentile95());
+        }
+
+        @Test
+        @DisplayName("Should handle zero CPU usage values")
+        void shouldHandleZeroCpuUsageValues() {
+            CpuUsageSketchAggregator.SketchAccumulator accumulator = aggregator.createAccumulator();
+            aggregator.add(new CpuUsageEvent("device-001", 1692617400000L, 0.0), accumulator);
+
+            assertEquals(0.0, aggregator.getResult(accumulator).getPercentile95());
+        }
+
+        @Test
+        @DisplayName("Should estimate single value within relative accuracy")
+        void shouldEstimateSingleValue() {
+            CpuUsageSketchAggregator.SketchAccumulator accumulator = aggregator.createAccumulator();
+            aggregator.add(new CpuUsageEvent("device-001", 1692617400000L, 75.5), accumulator);
+
+            ProcessedCpuEvent result = aggregator.getResult(accumulator);
+
+            assertEquals("device-001", result.getDeviceId());
+            assertEquals(75.5, result.getPercentile95(), 75.5 * CpuUsageSketchAggregator.DEFAULT_RELATIVE_ACCURACY);
+        }
+
+        @Test
+        @DisplayName("Should estimate percentiles, max and mean within relative accuracy")
+        void shouldEstimateWindowStatistics() {
+            CpuUsageSketchAggregator statistics = new CpuUsageSketchAggregator(
+                    CpuUsageSketchAggregator.DEFAULT_RELATIVE_ACCURACY, ResultPercentiles.parse("50,90,99"));
+            CpuUsageSketchAggregator.SketchAccumulator accumulator = statistics.createAccumulator();
+            double[] values = new double[10_000];
+            Random random = new Random(9);
+            for (int i = 0; i < values.length; i++) {
+                // Some idle samples land in the zero bucket
+                values[i] = i % 10 == 0 ? 0.0 : random.nextDouble() * 100;
+                statistics.add(new CpuUsageEvent("device-001", 1692617400000L + i, values[i]), accumulator);
+            }
+
+            ProcessedCpuEvent result = statistics.getResult(accumulator);
+
+            double accuracy = CpuUsageSketchAggregator.DEFAULT_RELATIVE_ACCURACY;
+            for (double p : new double[]{50, 90, 95, 99}) {
+                double expected = new Percentile(p).evaluate(values);
+                assertEquals(expected, result.getPercentiles().get(ResultPercentiles.name(p)), expected * accuracy + 0.1);
+            }
+            double max = Arrays.stream(values).max().getAsDouble();
+            double mean = Arrays.stream(values).average().getAsDouble();
+            assertEquals(max, result.getMax(), max * accuracy);
+            assertEquals(mean, result.getMean(), mean * accuracy);
+            assertEquals(values.length, result.getEventCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Merge Operations Tests")
+    class MergeOperationsTest {
+
+        @Test
+        @DisplayName("Should merge into first accumulator and leave second untouched")
+        void shouldMergeIntoFirstAccumulator() {
+            CpuUsageSketchAggregator.SketchAccumulator acc1 = aggregator.createAccumulator();
+            CpuUsageSketchAggregator.SketchAccumulator acc2 = aggregator.createAccumulator();
+            aggregator.add(new CpuUsageEvent("device-001", 1692617405000L, 65.0), acc2);
+            aggregator.add(new CpuUsageEvent("device-001", 1692617415000L, 0.0), acc2);
+            int[] acc2Counts = acc2.counts.clone();
+
+            CpuUsageSketchAggregator.SketchAccumulator merged = aggregator.merge(acc1, acc2);
+
+            assertSame(acc1, merged);
+            assertEquals("device-001", merged.deviceId);
+            assertEquals(2, merged.count);
+            assertEquals(1, merged.zeroCount);
+            assertEquals(1692617405000L, merged.windowStart);
+            assertEquals(1692617415000L, merged.windowEnd);
+            assertArrayEquals(acc2Counts, acc2.counts);
+        }
+
+        @Test
+        @DisplayName("Should give same quantile as a single sketch over all values")
+        void shouldMatchSingleSketchAfterMerge() {
+            Random random = new Random(7);
+            CpuUsageSketchAggregator.SketchAccumulator all = aggregator.createAccumulator();
+            CpuUsageSketchAggregator.SketchAccumulator low = aggregator.createAccumulator();
+            CpuUsageSketchAggregator.SketchAccumulator high = aggregator.createAccumulator();
+
+            for (int i = 0; i < 5000; i++) {
+                double value = random.nextDouble() * 100;
+                CpuUsageEvent event = new CpuUsageEvent("device-001", 1692617400000L + i, value);
+                aggregator.add(event, all);
+                aggregator.add(event, value < 50 ? low : high);
+            }
+
+            CpuUsageSketchAggregator.SketchAccumulator merged = aggregator.merge(low, high);
+
+            assertEquals(all.count, merged.count);
+            assertEquals(aggregator.quantile(all, 0.95), aggregator.quantile(merged, 0.95));
+        }
+    }
+
+    @Nested
+    @DisplayName("Accuracy Against Exact Percentile")
+    class AccuracyTest {
+
+        @ParameterizedTest(name = "relative accuracy {0}")
+        @ValueSource(doubles = {0.005, 0.01, 0.02, 0.05})
+        @DisplayName("Should stay within relative accuracy of Percentile(95)")
+        void shouldStayWithinRelativeAccuracy(double relativeAccuracy) {
+            CpuUsageSketchAggregator sketch = new CpuUsageSketchAggregator(relativeAccuracy);
+            Random random = new Random(42);
+            DoubleSupplier[] distributions = {
+                    () -> random.nextDouble() * 100,
+                    () -> random.nextDouble() < 0.1 ? 80 + random.nextDouble() * 20 : random.nextDouble() * 40,
+                    () -> Math.min(100, Math.abs(random.nextGaussian() * 5 + 20)),
+                    () -> 100 * Math.pow(random.nextDouble(), 8)
+            };
+
+            for (DoubleSupplier distribution : distributions) {
+                double[] values = new double[20_000];
+                CpuUsageSketchAggregator.SketchAccumulator accumulator = sketch.createAccumulator();
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = distribution.getAsDouble();
+                    sketch.add(new CpuUsageEvent("device-001", 1692617400000L + i, values[i]), accumulator);
+                }
+
+                double exact = new Percentile(95).evaluate(values);
+                double estimate = sketch.getResult(accumulator).getPercentile95();
+
+                assertEquals(exact, estimate, exact * relativeAccuracy * 1.01,
+                        "distribution " + Arrays.asList(distributions).indexOf(distribution));
+            }
+        }
+    }
+}
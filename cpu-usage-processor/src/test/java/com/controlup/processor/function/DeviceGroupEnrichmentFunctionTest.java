@@ -0,0 +1,170 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.streaming.api.datastream.AsyncDataStream;
+import org.apache.flink.streaming.api.operators.async.AsyncWaitOperatorFactory;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeviceGroupEnrichmentFunctionTest {
+
+    private static final long BASE = 1692617400000L;
+    private static final AtomicInteger LOOKUPS = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        LOOKUPS.set(0);
+    }
+
+    @Test
+    @DisplayName("Should replace the deviceId with the group, keep the timestamp and drop ungrouped devices")
+    void shouldEnrichEvents() throws Exception {
+        List<CpuUsageEvent> output = enrich(new DeviceGroupEnrichmentFunction(new MapLookup(), 100, Duration.ofMinutes(10)),
+                event("device-001", BASE, 10.0),
+                event("device-002", BASE + 1000, 20.0),
+                event("device-999", BASE + 2000, 30.0));
+
+        assertEquals(List.of(new CpuUsageEvent("site-a", BASE, 10.0), new CpuUsageEvent("site-b", BASE + 1000, 20.0)), output);
+    }
+
+    @Test
+    @DisplayName("Should look up each device once while its group is cached")
+    void shouldCacheGroups() throws Exception {
+        List<StreamRecord<CpuUsageEvent>> input = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            input.add(event("device-00" + (i % 3 + 1), BASE + i * 100L, i % 100));
+        }
+
+        List<CpuUsageEvent> output = enrich(new DeviceGroupEnrichmentFunction(new MapLookup(), 100, Duration.ofMinutes(10)),
+                input.toArray(new StreamRecord[0]));
+
+        assertEquals(300, output.size());
+        assertEquals(3, LOOKUPS.get());
+    }
+
+    @Test
+    @DisplayName("Should drop events while the database is unreachable and wait before opening the lookup again")
+    void shouldBackOffWhileDatabaseUnreachable() throws Exception {
+        List<CpuUsageEvent> output = enrich(new DeviceGroupEnrichmentFunction(new UnreachableLookup(), 100, Duration.ofMinutes(10)),
+                event("device-001", BASE, 10.0),
+                event("device-001", BASE + 1000, 20.0),
+                event("device-002", BASE + 2000, 30.0));
+
+        assertEquals(List.of(), output);
+        // The later lookups fail within the backoff, without trying to connect
+        assertEquals(1, LOOKUPS.get());
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used device and look up expired groups again")
+    void shouldBoundCache() {
+        DeviceGroupCache cache = new DeviceGroupCache(2, 1000);
+        AtomicInteger loads = new AtomicInteger();
+        for (String deviceId : List.of("device-001", "device-002", "device-001", "device-003", "device-001")) {
+            cache.get(deviceId, BASE, id -> {
+                loads.incrementAndGet();
+                return CompletableFuture.completedFuture("site-a");
+            });
+        }
+        assertEquals(3, loads.get());
+        assertEquals(2, cache.size());
+
+        cache.get("device-001", BASE + 1000, id -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture("site-a");
+        });
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    @DisplayName("Should not cache failed lookups")
+    void shouldRetryFailedLookups() {
+        DeviceGroupCache cache = new DeviceGroupCache(10, 1000);
+        CompletableFuture<String> failed = cache.get("device-001", BASE,
+                id -> CompletableFuture.failedFuture(new IllegalStateException("connection refused")));
+        assertTrue(failed.isCompletedExceptionally());
+
+        assertEquals("site-a", cache.get("device-001", BASE, id -> CompletableFuture.completedFuture("site-a")).join());
+    }
+
+    @SafeVarargs
+    private static List<CpuUsageEvent> enrich(DeviceGroupEnrichmentFunction function, StreamRecord<CpuUsageEvent>... input) throws Exception {
+        List<CpuUsageEvent> output = new ArrayList<>();
+        try (OneInputStreamOperatorTestHarness<CpuUsageEvent, CpuUsageEvent> harness = new OneInputStreamOperatorTestHarness<>(
+                new AsyncWaitOperatorFactory<>(function, 10000, 10, AsyncDataStream.OutputMode.ORDERED),
+                TypeInformation.of(CpuUsageEvent.class).createSerializer(new ExecutionConfig().getSerializerConfig()))) {
+            harness.open();
+            for (StreamRecord<CpuUsageEvent> event : input) {
+                harness.processElement(event);
+            }
+            // Waits for the lookups in flight
+            harness.endInput();
+
+            for (Object element : harness.getOutput()) {
+                if (element instanceof StreamRecord) {
+                    StreamRecord<?> record = (StreamRecord<?>) element;
+                    CpuUsageEvent event = (CpuUsageEvent) record.getValue();
+                    assertEquals(event.getTimestamp(), record.getTimestamp());
+                    output.add(event);
+                }
+            }
+        }
+        return output;
+    }
+
+    private static StreamRecord<CpuUsageEvent> event(String deviceId, long timestamp, double cpuUsage) {
+        return new StreamRecord<>(new CpuUsageEvent(deviceId, timestamp, cpuUsage), timestamp);
+    }
+
+    private static class UnreachableLookup implements DeviceGroupLookup {
+
+        @Override
+        public void open() throws SQLException {
+            LOOKUPS.incrementAndGet();
+            throw new SQLException("Connection refused");
+        }
+
+        @Override
+        public String groupOf(String deviceId) {
+            throw new IllegalStateException("Not opened");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class MapLookup implements DeviceGroupLookup {
+
+        private static final Map<String, String> GROUPS = Map.of("device-001", "site-a", "device-002", "site-b", "device-003", "site-a");
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public String groupOf(String deviceId) {
+            LOOKUPS.incrementAndGet();
+            return GROUPS.get(deviceId);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
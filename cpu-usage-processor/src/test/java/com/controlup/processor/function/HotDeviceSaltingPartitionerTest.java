@@ -0,0 +1,130 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.PartialAccumulator;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.util.OutputTag;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotDeviceSaltingPartitionerTest {
+
+    private static final int CHANNELS = 8;
+    private static final OutputTag<CpuUsageEvent> LATE_TAG = new OutputTag<>("late-events") {
+    };
+    private static final long BASE = 1692617400000L;
+
+    @Test
+    @DisplayName("Should spread configured hot devices over the buckets and keep other devices on one channel")
+    void shouldSaltConfiguredHotDevices() {
+        HotDeviceSaltingPartitioner partitioner = new HotDeviceSaltingPartitioner(Set.of("build-agent"), 4, 0);
+
+        assertEquals(4, channels(partitioner, "build-agent", 100).size());
+        assertEquals(1, channels(partitioner, "device-001", 100).size());
+    }
+
+    @Test
+    @DisplayName("Should detect devices with at least the hot share of the events")
+    void shouldDetectHotDevices() {
+        HotDeviceSaltingPartitioner partitioner = new HotDeviceSaltingPartitioner(Set.of(), 4, 0.2);
+        for (int i = 0; i < HotDeviceSaltingPartitioner.DETECTION_WINDOW; i++) {
+            partitioner.partition(i % 2 == 0 ? "build-agent" : "device-" + i, CHANNELS);
+        }
+
+        assertEquals(4, channels(partitioner, "build-agent", 100).size());
+        assertEquals(1, channels(partitioner, "device-001", 100).size());
+    }
+
+    @Test
+    @DisplayName("Should produce the same window results as the single-key path when hot devices are combined on several subtasks")
+    void shouldMatchSingleKeyPath() throws Exception {
+        Random random = new Random(3);
+        List<Object> input = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            long timestamp = BASE + i * 200L - random.nextInt(20000);
+            String deviceId = random.nextInt(4) == 0 ? "device-" + random.nextInt(3) : "build-agent";
+            input.add(new StreamRecord<>(new CpuUsageEvent(deviceId, timestamp, random.nextDouble() * 100), timestamp));
+            if (i % 11 == 0) {
+                input.add(new Watermark(BASE + i * 200L - 35000));
+            }
+        }
+        input.add(new Watermark(Long.MAX_VALUE));
+
+        CpuUsageAggregator aggregator = new CpuUsageAggregator();
+        TypeInformation<CpuUsageAggregator.CpuAccumulator> accumulatorType = TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class);
+        List<String> expected = PreAggregationOperatorTest.runWindows(new AccumulatorPassThrough<>(aggregator),
+                TypeInformation.of(CpuUsageEvent.class), CpuUsageEvent::getDeviceId, input);
+
+        List<Object> partials = saltAndCombine(new HotDeviceSaltingPartitioner(Set.of("build-agent"), 4, 0), input);
+        List<String> actual = PreAggregationOperatorTest.runWindows(new PartialAccumulatorMerger<>(aggregator),
+                PartialAccumulator.typeInfo(accumulatorType), PartialAccumulator::getDeviceId, partials);
+
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Routes the events over one combiner per channel and returns their partials, each watermark following
+     * the partials every combiner flushed before it
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> saltAndCombine(HotDeviceSaltingPartitioner partitioner, List<Object> input) throws Exception {
+        List<OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>>> combiners = new ArrayList<>();
+        for (int i = 0; i < CHANNELS; i++) {
+            OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>> combiner =
+                    new OneInputStreamOperatorTestHarness<>(new PreAggregationOperator<>(new CpuUsageAggregator(),
+                            Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofSeconds(35), Duration.ofSeconds(1), 20, LATE_TAG));
+            combiner.open();
+            combiners.add(combiner);
+        }
+
+        List<Object> partials = new ArrayList<>();
+        for (Object element : input) {
+            if (element instanceof Watermark) {
+                for (OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>> combiner : combiners) {
+                    combiner.processWatermark((Watermark) element);
+                    drainRecords(combiner, partials);
+                }
+                partials.add(element);
+            } else {
+                StreamRecord<CpuUsageEvent> event = (StreamRecord<CpuUsageEvent>) element;
+                OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>> combiner =
+                        combiners.get(partitioner.partition(event.getValue().getDeviceId(), CHANNELS));
+                combiner.processElement(event);
+                drainRecords(combiner, partials);
+            }
+        }
+        for (OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>> combiner : combiners) {
+            combiner.close();
+        }
+        return partials;
+    }
+
+    private static void drainRecords(OneInputStreamOperatorTestHarness<CpuUsageEvent, ?> combiner, List<Object> partials) {
+        for (Object element : combiner.getOutput()) {
+            if (element instanceof StreamRecord) {
+                partials.add(element);
+            }
+        }
+        combiner.getOutput().clear();
+    }
+
+    private static Set<Integer> channels(HotDeviceSaltingPartitioner partitioner, String deviceId, int events) {
+        Set<Integer> channels = new HashSet<>();
+        for (int i = 0; i < events; i++) {
+            channels.add(partitioner.partition(deviceId, CHANNELS));
+        }
+        return channels;
+    }
+}
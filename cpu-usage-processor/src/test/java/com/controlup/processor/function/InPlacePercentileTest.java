@@ -0,0 +1,170 @@
+package com.controlup.processor.function;
+
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InPlacePercentileTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 19, 20, 21, 100, 1000, 10_000})
+    @DisplayName("Should match commons-math Percentile exactly for random values")
+    void shouldMatchPercentileForRandomValues(int size) {
+        Random random = new Random(size);
+        for (int run = 0; run < 50; run++) {
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextDouble() * 100;
+            }
+
+            assertMatchesPercentile(values, size, 95);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {1, 5, 25, 50, 90, 95, 99, 100})
+    @DisplayName("Should match commons-math Percentile exactly for any percentile")
+    void shouldMatchPercentileForAnyPercentile(double p) {
+        Random random = new Random(42);
+        for (int size = 1; size < 200; size++) {
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = random.nextDouble() * 100;
+            }
+
+            assertMatchesPercentile(values, size, p);
+        }
+    }
+
+    @Test
+    @DisplayName("Should match commons-math Percentile exactly with many duplicates")
+    void shouldMatchPercentileWithDuplicates() {
+        Random random = new Random(7);
+        for (int run = 0; run < 100; run++) {
+            double[] values = new double[1000];
+            for (int i = 0; i < values.length; i++) {
+                // Idle and saturated devices report long runs of the same value
+                values[i] = random.nextInt(4) * 33.5;
+            }
+
+            assertMatchesPercentile(values, values.length, 95);
+        }
+
+        double[] constant = new double[5000];
+        Arrays.fill(constant, 100.0);
+        assertMatchesPercentile(constant, constant.length, 95);
+    }
+
+    @Test
+    @DisplayName("Should match commons-math Percentile exactly for sorted and reversed input")
+    void shouldMatchPercentileForSortedInput() {
+        double[] ascending = new double[10_000];
+        double[] descending = new double[10_000];
+        for (int i = 0; i < ascending.length; i++) {
+            ascending[i] = i / 100.0;
+            descending[i] = (ascending.length - i) / 100.0;
+        }
+
+        assertMatchesPercentile(ascending, ascending.length, 95);
+        assertMatchesPercentile(descending, descending.length, 95);
+    }
+
+    @Test
+    @DisplayName("Should ignore NaN values like commons-math Percentile")
+    void shouldIgnoreNaNValues() {
+        assertMatchesPercentile(new double[]{1.0, Double.NaN, 3.0, 4.0, 5.0}, 5, 95);
+        assertMatchesPercentile(new double[]{Double.NaN, Double.NaN, 70.0, Double.NaN, 10.0, 40.0}, 6, 50);
+        assertMatchesPercentile(new double[]{Double.NaN, Double.NaN}, 2, 95);
+        assertMatchesPercentile(new double[]{Double.NaN}, 1, 95);
+    }
+
+    @Test
+    @DisplayName("Should only consider the first length values")
+    void shouldOnlyConsiderFirstLengthValues() {
+        double[] values = {30.0, 10.0, 20.0, 1000.0, 2000.0};
+
+        assertEquals(new Percentile(95).evaluate(new double[]{30.0, 10.0, 20.0}), InPlacePercentile.evaluate(values, 3, 95));
+        assertEquals(1000.0, values[3]);
+        assertEquals(2000.0, values[4]);
+    }
+
+    @Test
+    @DisplayName("Should return NaN for no values")
+    void shouldReturnNaNForNoValues() {
+        assertTrue(Double.isNaN(InPlacePercentile.evaluate(new double[0], 0, 95)));
+    }
+
+    @Test
+    @DisplayName("Should reject percentiles outside (0, 100]")
+    void shouldRejectInvalidPercentile() {
+        assertThrows(IllegalArgumentException.class, () -> InPlacePercentile.evaluate(new double[]{1.0}, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> InPlacePercentile.evaluate(new double[]{1.0}, 1, 100.5));
+    }
+
+    @Test
+    @DisplayName("Should keep the same values after reordering")
+    void shouldKeepSameValues() {
+        Random random = new Random(3);
+        double[] values = new double[500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 100;
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        InPlacePercentile.evaluate(values, values.length, 95);
+
+        Arrays.sort(values);
+        assertArrayEquals(sorted, values);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 19, 20, 21, 100, 1000, 10_000})
+    @DisplayName("Should match commons-math Percentile exactly for several percentiles at once")
+    void shouldMatchPercentileForSeveralPercentiles(int size) {
+        double[] ps = {1, 50, 50, 90, 95, 99, 99.9, 100};
+        Random random = new Random(size);
+        for (int run = 0; run < 50; run++) {
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                // Half of the runs with long runs of equal values
+                values[i] = run % 2 == 0 ? random.nextDouble() * 100 : random.nextInt(4) * 33.5;
+            }
+
+            double[] results = new double[ps.length];
+            InPlacePercentile.evaluate(values.clone(), size, ps, results);
+
+            for (int i = 0; i < ps.length; i++) {
+                double expected = new Percentile(ps[i]).evaluate(values, 0, size);
+                double p = ps[i];
+                double actual = results[i];
+                assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual),
+                        () -> "p" + p + " of " + size + " values: expected " + expected + " but was " + actual);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject percentiles out of order")
+    void shouldRejectUnorderedPercentiles() {
+        assertThrows(IllegalArgumentException.class,
+                () -> InPlacePercentile.evaluate(new double[]{1.0, 2.0}, 2, new double[]{95, 50}, new double[2]));
+    }
+
+    private static void assertMatchesPercentile(double[] values, int length, double p) {
+        double expected = new Percentile(p).evaluate(values, 0, length);
+
+        double actual = InPlacePercentile.evaluate(values.clone(), length, p);
+
+        // Exact equality, no tolerance
+        assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual),
+                () -> "p" + p + " of " + length + " values: expected " + expected + " but was " + actual);
+    }
+}
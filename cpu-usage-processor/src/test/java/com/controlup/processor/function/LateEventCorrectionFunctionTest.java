@@ -0,0 +1,181 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.PartialAccumulator;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.operators.co.KeyedCoProcessOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedTwoInputStreamOperatorTestHarness;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LateEventCorrectionFunctionTest {
+
+    private static final Duration SIZE = Duration.ofSeconds(30);
+    private static final Duration SLIDE = Duration.ofSeconds(5);
+    private static final Duration LATENESS = Duration.ofSeconds(35);
+    private static final Duration HORIZON = Duration.ofMinutes(5);
+    private static final long BASE = 1692617400000L;
+
+    private final CpuUsageAggregator aggregator = new CpuUsageAggregator();
+    private KeyedTwoInputStreamOperatorTestHarness<String, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>,
+            CpuUsageEvent, ProcessedCpuEvent> harness;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        harness = new KeyedTwoInputStreamOperatorTestHarness<>(
+                new KeyedCoProcessOperator<>(new LateEventCorrectionFunction<>(aggregator,
+                        TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class), SIZE, SLIDE, LATENESS, HORIZON)),
+                PartialAccumulator::getDeviceId, CpuUsageEvent::getDeviceId, Types.STRING);
+        harness.open();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        harness.close();
+    }
+
+    @Test
+    @DisplayName("Should not emit anything for window firings without late events")
+    void shouldIgnoreFiredWindows() throws Exception {
+        fireWindows(BASE + 5000, 10.0);
+        harness.processBothWatermarks(new Watermark(BASE + 70000));
+
+        assertTrue(harness.extractOutputValues().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should correct every window of a late event with the window's id and a higher revision")
+    void shouldCorrectEveryWindowOfLateEvent() throws Exception {
+        double[] samples = new double[20];
+        Arrays.fill(samples, 10.0);
+        fireWindows(BASE + 5000, samples);
+        // Past the allowed lateness of every window containing the first pane
+        harness.processBothWatermarks(new Watermark(BASE + 70000));
+        harness.processElement2(event("device-001", BASE + 500, 90.0));
+        assertTrue(harness.extractOutputValues().isEmpty());
+
+        harness.processBothWatermarks(new Watermark(BASE + 71000));
+
+        List<ProcessedCpuEvent> corrections = harness.extractOutputValues();
+        assertEquals(6, corrections.size());
+        for (int i = 0; i < corrections.size(); i++) {
+            ProcessedCpuEvent correction = corrections.get(i);
+            long windowEnd = BASE + 5000 + i * SLIDE.toMillis();
+            assertTrue(correction.isCorrection());
+            assertEquals(ProcessedCpuEvent.windowId("device-001", windowEnd - SIZE.toMillis(), windowEnd), correction.getId());
+            assertEquals(LateEventCorrectionFunction.FIRST_CORRECTION_REVISION, correction.getRevision());
+            assertEquals("device-001", correction.getDeviceId());
+            assertEquals(windowEnd - SIZE.toMillis(), correction.getWindowStart());
+            assertEquals(windowEnd, correction.getWindowEnd());
+            // 21 samples: position 0.95 * 22 = 20.9 is past the 20 samples of 10.0
+            assertEquals(10.0 + 0.9 * 80.0, correction.getPercentile95(), 1e-9);
+        }
+    }
+
+    @Test
+    @DisplayName("Should coalesce late events until the next watermark")
+    void shouldCoalesceLateEvents() throws Exception {
+        fireWindows(BASE + 5000, 10.0);
+        harness.processBothWatermarks(new Watermark(BASE + 70000));
+        harness.processElement2(event("device-001", BASE + 1500, 20.0));
+        harness.processElement2(event("device-001", BASE + 2000, 30.0));
+        harness.processElement2(event("device-001", BASE + 2500, 40.0));
+
+        harness.processBothWatermarks(new Watermark(BASE + 71000));
+
+        // One correction per window, not per late event
+        assertEquals(6, harness.extractOutputValues().size());
+    }
+
+    @Test
+    @DisplayName("Should not correct a window before the window stage's last firing of it has arrived")
+    void shouldWaitForLastFiring() throws Exception {
+        fireWindows(BASE + 5000, 10.0);
+        // The late event overtakes the window stage's watermark and the last firing of the windows
+        harness.processBothWatermarks(new Watermark(BASE + 30000));
+        harness.processElement2(event("device-001", BASE + 500, 90.0));
+        harness.processBothWatermarks(new Watermark(BASE + 31000));
+        assertTrue(harness.extractOutputValues().isEmpty());
+
+        fireWindows(BASE + 5000, 10.0, 10.0);
+        harness.processBothWatermarks(new Watermark(BASE + 65000));
+
+        List<ProcessedCpuEvent> corrections = harness.extractOutputValues();
+        assertEquals(6, corrections.size());
+        assertTrue(corrections.stream().allMatch(correction -> correction.getEventCount() == 3));
+    }
+
+    @Test
+    @DisplayName("Should merge later late events into the corrected window with the next revision")
+    void shouldReviseCorrections() throws Exception {
+        fireWindows(BASE + 5000, 10.0);
+        harness.processBothWatermarks(new Watermark(BASE + 70000));
+        harness.processElement2(event("device-001", BASE + 500, 20.0));
+        harness.processBothWatermarks(new Watermark(BASE + 71000));
+        harness.processElement2(event("device-001", BASE + 600, 30.0));
+        harness.processBothWatermarks(new Watermark(BASE + 72000));
+
+        List<ProcessedCpuEvent> corrections = harness.extractOutputValues();
+        assertEquals(12, corrections.size());
+        ProcessedCpuEvent revised = corrections.get(6);
+        assertEquals(BASE + 5000, revised.getWindowEnd());
+        assertEquals(LateEventCorrectionFunction.FIRST_CORRECTION_REVISION + 1, revised.getRevision());
+        assertEquals(3, revised.getEventCount());
+    }
+
+    @Test
+    @DisplayName("Should not correct windows past the horizon and release their state")
+    void shouldDropEventsPastHorizon() throws Exception {
+        fireWindows(BASE + 5000, 10.0);
+        harness.processBothWatermarks(new Watermark(BASE + 400000));
+        assertEquals(0, harness.numKeyedStateEntries());
+
+        harness.processElement2(event("device-001", BASE + 2000, 90.0));
+        harness.processBothWatermarks(new Watermark(BASE + 401000));
+
+        assertTrue(harness.extractOutputValues().isEmpty());
+        assertEquals(0, harness.numKeyedStateEntries());
+    }
+
+    @Test
+    @DisplayName("Should correct windows without on-time events")
+    void shouldCorrectWindowsWithOnlyLateEvents() throws Exception {
+        harness.processBothWatermarks(new Watermark(BASE + 70000));
+        harness.processElement2(event("device-001", BASE + 1000, 40.0));
+        harness.processBothWatermarks(new Watermark(BASE + 71000));
+
+        List<ProcessedCpuEvent> corrections = harness.extractOutputValues();
+        assertEquals(6, corrections.size());
+        assertEquals(BASE + 5000 - SIZE.toMillis(), corrections.get(0).getWindowStart());
+        assertEquals(40.0, corrections.get(0).getPercentile95());
+    }
+
+    /**
+     * Hands over a firing of the six windows from the given window end on, each holding the samples
+     */
+    private void fireWindows(long firstWindowEnd, double... samples) throws Exception {
+        for (long windowEnd = firstWindowEnd; windowEnd < firstWindowEnd + SIZE.toMillis(); windowEnd += SLIDE.toMillis()) {
+            CpuUsageAggregator.CpuAccumulator accumulator = aggregator.createAccumulator();
+            for (double sample : samples) {
+                accumulator = aggregator.add(new CpuUsageEvent("device-001", firstWindowEnd - 1, sample), accumulator);
+            }
+            harness.processElement1(new StreamRecord<>(new PartialAccumulator<>("device-001", windowEnd - 1, accumulator), windowEnd - 1));
+        }
+    }
+
+    private static StreamRecord<CpuUsageEvent> event(String deviceId, long timestamp, double cpuUsage) {
+        return new StreamRecord<>(new CpuUsageEvent(deviceId, timestamp, cpuUsage), timestamp);
+    }
+}
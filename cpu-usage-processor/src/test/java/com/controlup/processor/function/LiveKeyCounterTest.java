@@ -0,0 +1,140 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.WindowOperatorBuilder;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.util.OutputTag;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveKeyCounterTest {
+
+    private static final Duration SIZE = Duration.ofSeconds(30);
+    private static final Duration SLIDE = Duration.ofSeconds(5);
+    private static final Duration LATENESS = Duration.ofSeconds(35);
+    private static final OutputTag<CpuUsageEvent> LATE_TAG = new OutputTag<>("late-events") {
+    };
+    private static final long BASE = 1692617400000L;
+
+    @Test
+    @DisplayName("Should count the devices holding panes and drop devices whose panes were cleared")
+    void shouldCountPaneKeys() throws Exception {
+        SlidingPaneFunction<CpuUsageAggregator.CpuAccumulator> function = new SlidingPaneFunction<>(new CpuUsageAggregator(),
+                TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class), SIZE, SLIDE, LATENESS, Duration.ZERO, LATE_TAG)
+                .withIdleStateTtl(Duration.ofHours(1));
+
+        try (KeyedOneInputStreamOperatorTestHarness<String, CpuUsageEvent, ProcessedCpuEvent> harness =
+                     new KeyedOneInputStreamOperatorTestHarness<>(new KeyedProcessOperator<>(function),
+                             CpuUsageEvent::getDeviceId, Types.STRING)) {
+            harness.open();
+            harness.processElement(event("device-001", BASE + 1000));
+            harness.processElement(event("device-001", BASE + 2000));
+            harness.processElement(event("device-002", BASE + 61000));
+            assertEquals(2, function.liveKeys());
+
+            // Past the allowed lateness of device-001's windows only
+            harness.processWatermark(new Watermark(BASE + 70000));
+            assertEquals(1, function.liveKeys());
+
+            harness.processWatermark(new Watermark(Long.MAX_VALUE));
+            assertEquals(0, function.liveKeys());
+        }
+    }
+
+    @Test
+    @DisplayName("Should count the devices of the window operator until their last fired window is purged")
+    void shouldCountWindowKeys() throws Exception {
+        WindowOperatorBuilder<CpuUsageEvent, String, TimeWindow> builder = new WindowOperatorBuilder<>(
+                SlidingEventTimeWindows.of(SIZE, SLIDE), EventTimeTrigger.create(), new ExecutionConfig(),
+                TypeInformation.of(CpuUsageEvent.class), CpuUsageEvent::getDeviceId, Types.STRING);
+        builder.allowedLateness(LATENESS);
+        builder.sideOutputLateData(LATE_TAG);
+        CpuUsageAggregator aggregator = new CpuUsageAggregator();
+        MeteredWindowResultFunction<CpuUsageAggregator.CpuAccumulator> function = new MeteredWindowResultFunction<>(aggregator);
+
+        try (KeyedOneInputStreamOperatorTestHarness<String, CpuUsageEvent, ProcessedCpuEvent> harness =
+                     new KeyedOneInputStreamOperatorTestHarness<>(builder.aggregate(new AccumulatorPassThrough<>(aggregator),
+                             function, TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class)),
+                             CpuUsageEvent::getDeviceId, Types.STRING)) {
+            harness.open();
+            harness.processElement(event("device-001", BASE + 1000));
+            harness.processElement(event("device-002", BASE + 41000));
+            // No window fired yet
+            assertEquals(0, function.liveKeys());
+
+            harness.processWatermark(new Watermark(BASE + 10000));
+            assertEquals(1, function.liveKeys());
+
+            harness.processWatermark(new Watermark(BASE + 50000));
+            assertEquals(2, function.liveKeys());
+
+            // Past the allowed lateness of device-001's last window only
+            harness.processWatermark(new Watermark(BASE + 70000));
+            assertEquals(1, function.liveKeys());
+
+            harness.processWatermark(new Watermark(Long.MAX_VALUE));
+            assertEquals(0, function.liveKeys());
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop devices from the filter's count once their state expired")
+    void shouldCountFilterKeysUntilExpiry() throws Exception {
+        ResultEmissionFilter filter = new ResultEmissionFilter(0.5, 0, SIZE, LATENESS).withIdleStateTtl(Duration.ofMinutes(1));
+
+        try (KeyedOneInputStreamOperatorTestHarness<String, ProcessedCpuEvent, ProcessedCpuEvent> harness =
+                     new KeyedOneInputStreamOperatorTestHarness<>(new KeyedProcessOperator<>(filter),
+                             ProcessedCpuEvent::getDeviceId, Types.STRING)) {
+            harness.open();
+            harness.processElement(result("device-001"), 0);
+            harness.setStateTtlProcessingTime(100_000);
+            harness.setProcessingTime(100_000);
+            harness.processElement(result("device-002"), 0);
+            assertEquals(2, filter.liveKeys());
+
+            // device-001 was written a TTL ago, device-002 was not
+            harness.setStateTtlProcessingTime(120_000);
+            harness.setProcessingTime(120_000);
+            assertEquals(1, filter.liveKeys());
+
+            harness.setStateTtlProcessingTime(180_000);
+            harness.setProcessingTime(180_000);
+            assertEquals(0, filter.liveKeys());
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject an idle state TTL that would expire state before its cleanup timers")
+    void shouldRejectShortTtl() {
+        SlidingPaneFunction<CpuUsageAggregator.CpuAccumulator> function = new SlidingPaneFunction<>(new CpuUsageAggregator(),
+                TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class), SIZE, SLIDE, LATENESS, Duration.ZERO, LATE_TAG);
+
+        assertThrows(IllegalArgumentException.class, () -> function.withIdleStateTtl(Duration.ofSeconds(60)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ResultEmissionFilter(0.5, 0, Duration.ofSeconds(30), LATENESS).withIdleStateTtl(Duration.ofSeconds(10)));
+        assertDoesNotThrow(() -> function.withIdleStateTtl(Duration.ZERO));
+    }
+
+    private static StreamRecord<CpuUsageEvent> event(String deviceId, long timestamp) {
+        return new StreamRecord<>(new CpuUsageEvent(deviceId, timestamp, 50.0), timestamp);
+    }
+
+    private static ProcessedCpuEvent result(String deviceId) {
+        return new ProcessedCpuEvent(ProcessedCpuEvent.windowId(deviceId, BASE, BASE + 30_000),
+                deviceId, BASE, BASE + 30_000, 50.0, BASE + 30_000);
+    }
+}
@@ -0,0 +1,184 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.PartialAccumulator;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.WindowOperatorBuilder;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.util.OutputTag;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreAggregationOperatorTest {
+
+    private static final Duration SIZE = Duration.ofSeconds(30);
+    private static final Duration SLIDE = Duration.ofSeconds(5);
+    private static final Duration LATENESS = Duration.ofSeconds(35);
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+    private static final OutputTag<CpuUsageEvent> LATE_TAG = new OutputTag<>("late-events") {
+    };
+    private static final long BASE = 1692617400000L;
+
+    @Test
+    @DisplayName("Should combine events into one partial per device and slide, flushed before the watermark")
+    void shouldCombinePerDeviceAndSlide() throws Exception {
+        try (OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>> harness = harness(100)) {
+            harness.open();
+            harness.processElement(event("device-001", BASE + 1000, 10.0));
+            harness.processElement(event("device-001", BASE + 3000, 20.0));
+            harness.processElement(event("device-001", BASE + 6000, 30.0));
+            harness.processElement(event("device-002", BASE + 2000, 40.0));
+            assertTrue(harness.getOutput().isEmpty());
+
+            harness.processWatermark(new Watermark(BASE));
+
+            List<Object> output = new ArrayList<>(harness.getOutput());
+            assertEquals(4, output.size());
+            assertTrue(output.get(3) instanceof Watermark);
+            List<String> partials = harness.extractOutputValues().stream()
+                    .map(partial -> partial.getDeviceId() + "|" + partial.getTimestamp() + "|" + partial.getAccumulator().count)
+                    .sorted()
+                    .collect(Collectors.toList());
+            assertEquals(List.of("device-001|" + (BASE + 3000) + "|2", "device-001|" + (BASE + 6000) + "|1",
+                    "device-002|" + (BASE + 2000) + "|1"), partials);
+        }
+    }
+
+    @Test
+    @DisplayName("Should flush once the buffer holds max events or the interval has passed")
+    void shouldFlushOnSizeAndInterval() throws Exception {
+        try (OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>> harness = harness(3)) {
+            harness.setProcessingTime(0);
+            harness.open();
+            for (int i = 0; i < 3; i++) {
+                harness.processElement(event("device-001", BASE + 1000 + i, 10.0));
+            }
+            assertEquals(1, harness.extractOutputValues().size());
+
+            harness.processElement(event("device-001", BASE + 1100, 10.0));
+            assertEquals(1, harness.extractOutputValues().size());
+            harness.setProcessingTime(INTERVAL.toMillis());
+            assertEquals(2, harness.extractOutputValues().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Should send events past the allowed lateness to the side output only")
+    void shouldRouteLateEvents() throws Exception {
+        try (OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>> harness = harness(100)) {
+            harness.open();
+            harness.processWatermark(new Watermark(BASE + 70000));
+            harness.processElement(event("device-001", BASE + 1000, 10.0));
+            harness.processElement(event("device-001", BASE + 69000, 20.0));
+            harness.processWatermark(new Watermark(BASE + 71000));
+
+            assertEquals(1, harness.getSideOutput(LATE_TAG).size());
+            assertEquals(BASE + 1000, harness.getSideOutput(LATE_TAG).peek().getValue().getTimestamp());
+            assertEquals(1, harness.extractOutputValues().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Should produce the same window results as windowing the raw events")
+    void shouldMatchWindowsOverRawEvents() throws Exception {
+        Random random = new Random(7);
+        List<Object> input = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            long timestamp = BASE + i * 250L - random.nextInt(20000);
+            input.add(event("device-" + random.nextInt(3), timestamp, random.nextDouble() * 100));
+            if (i % 9 == 0) {
+                input.add(new Watermark(BASE + i * 250L - 35000));
+            }
+        }
+        input.add(new Watermark(Long.MAX_VALUE));
+
+        CpuUsageAggregator aggregator = new CpuUsageAggregator();
+        TypeInformation<CpuUsageAggregator.CpuAccumulator> accumulatorType = TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class);
+        List<String> expected = runWindows(new AccumulatorPassThrough<>(aggregator), TypeInformation.of(CpuUsageEvent.class),
+                CpuUsageEvent::getDeviceId, input);
+
+        List<Object> partials = new ArrayList<>();
+        try (OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>> harness = harness(50)) {
+            harness.open();
+            feed(harness, input);
+            partials.addAll(harness.getOutput());
+        }
+        List<String> actual = runWindows(new PartialAccumulatorMerger<>(aggregator), PartialAccumulator.typeInfo(accumulatorType),
+                PartialAccumulator::getDeviceId, partials);
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    private static OneInputStreamOperatorTestHarness<CpuUsageEvent, PartialAccumulator<CpuUsageAggregator.CpuAccumulator>> harness(
+            int maxEvents) throws Exception {
+        return new OneInputStreamOperatorTestHarness<>(new PreAggregationOperator<>(new CpuUsageAggregator(),
+                SIZE, SLIDE, LATENESS, INTERVAL, maxEvents, LATE_TAG));
+    }
+
+    /**
+     * Runs records and watermarks through the application's sliding windows and returns the results in a comparable form
+     */
+    static <IN> List<String> runWindows(AggregateFunction<IN, CpuUsageAggregator.CpuAccumulator, CpuUsageAggregator.CpuAccumulator> inputFunction,
+                                                TypeInformation<IN> inputType,
+                                                KeySelector<IN, String> keySelector,
+                                                List<Object> input) throws Exception {
+        TypeInformation<CpuUsageAggregator.CpuAccumulator> accumulatorType = TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class);
+        WindowOperatorBuilder<IN, String, TimeWindow> builder = new WindowOperatorBuilder<>(
+                SlidingEventTimeWindows.of(SIZE, SLIDE),
+                EventTimeTrigger.create(),
+                new ExecutionConfig(),
+                inputType,
+                keySelector,
+                Types.STRING);
+        builder.allowedLateness(LATENESS);
+        OneInputStreamOperator<IN, ProcessedCpuEvent> operator = builder.aggregate(inputFunction,
+                new MeteredWindowResultFunction<>(new CpuUsageAggregator()), accumulatorType);
+
+        try (KeyedOneInputStreamOperatorTestHarness<String, IN, ProcessedCpuEvent> harness =
+                     new KeyedOneInputStreamOperatorTestHarness<>(operator, keySelector, Types.STRING)) {
+            harness.open();
+            feed(harness, input);
+            return harness.extractOutputValues().stream()
+                    .map(result -> result.getId() + "|" + result.getRevision() + "|" + result.getWindowStart() + "|"
+                            + result.getWindowEnd() + "|" + result.getPercentile95())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <IN> void feed(OneInputStreamOperatorTestHarness<IN, ?> harness, List<Object> input) throws Exception {
+        for (Object element : input) {
+            if (element instanceof Watermark) {
+                harness.processWatermark((Watermark) element);
+            } else {
+                harness.processElement((StreamRecord<IN>) element);
+            }
+        }
+    }
+
+    private static StreamRecord<CpuUsageEvent> event(String deviceId, long timestamp, double cpuUsage) {
+        return new StreamRecord<>(new CpuUsageEvent(deviceId, timestamp, cpuUsage), timestamp);
+    }
+}
@@ -0,0 +1,129 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultEmissionFilterTest {
+
+    private static final Duration INTERVAL = Duration.ofSeconds(30);
+    private static final Duration LATENESS = Duration.ofSeconds(35);
+    private static final long BASE = 1692617400000L;
+
+    @Test
+    @DisplayName("Should drop results whose p95 moved less than epsilon from the device's last emitted one")
+    void shouldSuppressUnchangedResultsAcrossWindows() throws Exception {
+        try (KeyedOneInputStreamOperatorTestHarness<String, ProcessedCpuEvent, ProcessedCpuEvent> harness = harness(0.5, 0)) {
+            harness.open();
+            harness.processElement(result("device-001", BASE + 30000, 50.0), BASE + 29999);
+            harness.processElement(result("device-001", BASE + 35000, 50.3), BASE + 34999);
+            harness.processElement(result("device-001", BASE + 40000, 50.4), BASE + 39999);
+            harness.processElement(result("device-001", BASE + 45000, 50.6), BASE + 44999);
+            // Later firings of a window with a row are compared with the row
+            harness.processElement(result("device-001", BASE + 30000, 50.2), BASE + 44999);
+            harness.processElement(result("device-001", BASE + 30000, 51.0), BASE + 44999);
+            harness.processElement(result("device-002", BASE + 30000, 50.1), BASE + 29999);
+
+            assertEquals(List.of("device-001|30000|50.0", "device-001|45000|50.6", "device-001|30000|51.0",
+                    "device-002|30000|50.1"), emitted(harness));
+        }
+    }
+
+    @Test
+    @DisplayName("Should forget a device once its latest window's allowed lateness has passed")
+    void shouldForgetFinishedDevice() throws Exception {
+        try (KeyedOneInputStreamOperatorTestHarness<String, ProcessedCpuEvent, ProcessedCpuEvent> harness = harness(0.5, 0)) {
+            harness.open();
+            harness.processElement(result("device-001", BASE + 30000, 50.0), BASE + 29999);
+            harness.processElement(result("device-001", BASE + 35000, 50.2), BASE + 34999);
+
+            harness.processWatermark(new Watermark(BASE + 30000 - 1 + LATENESS.toMillis()));
+            assertNotEquals(0, harness.numKeyedStateEntries());
+            harness.processWatermark(new Watermark(BASE + 35000 - 1 + LATENESS.toMillis()));
+            assertEquals(0, harness.numKeyedStateEntries());
+
+            // Nothing to compare with any more
+            harness.processElement(result("device-001", BASE + 100000, 50.1), BASE + 99999);
+            assertEquals(List.of("device-001|30000|50.0", "device-001|100000|50.1"), emitted(harness));
+        }
+    }
+
+    @Test
+    @DisplayName("Should cap emissions per interval and emit only the latest held back result when the interval ends")
+    void shouldRateLimitAndEmitLatestResult() throws Exception {
+        try (KeyedOneInputStreamOperatorTestHarness<String, ProcessedCpuEvent, ProcessedCpuEvent> harness = harness(0, 2)) {
+            harness.open();
+            harness.setProcessingTime(1000);
+            for (int i = 0; i < 6; i++) {
+                harness.processElement(result("device-001", BASE + 30000 + i * 5000L, 10.0 + i), BASE);
+            }
+            assertEquals(2, emitted(harness).size());
+
+            harness.setProcessingTime(1000 + INTERVAL.toMillis());
+            harness.setProcessingTime(1000 + 2 * INTERVAL.toMillis());
+
+            assertEquals(List.of("device-001|30000|10.0", "device-001|35000|11.0", "device-001|55000|15.0"),
+                    emitted(harness));
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop a held back result once a later result matches the last emitted one")
+    void shouldDropStaleHeldResult() throws Exception {
+        try (KeyedOneInputStreamOperatorTestHarness<String, ProcessedCpuEvent, ProcessedCpuEvent> harness = harness(0.5, 1)) {
+            harness.open();
+            harness.processElement(result("device-001", BASE + 30000, 10.0), BASE + 29999);
+            harness.processElement(result("device-001", BASE + 35000, 20.0), BASE + 34999);
+            harness.processElement(result("device-001", BASE + 35000, 10.2), BASE + 34999);
+
+            harness.setProcessingTime(INTERVAL.toMillis());
+
+            assertEquals(List.of("device-001|30000|10.0"), emitted(harness));
+        }
+    }
+
+    @Test
+    @DisplayName("Should always pass corrections")
+    void shouldPassCorrections() throws Exception {
+        try (KeyedOneInputStreamOperatorTestHarness<String, ProcessedCpuEvent, ProcessedCpuEvent> harness = harness(0.5, 1)) {
+            harness.open();
+            harness.processElement(result("device-001", BASE + 30000, 10.0), BASE + 29999);
+            ProcessedCpuEvent correction = result("device-001", BASE + 30000, 10.1);
+            correction.setCorrection(true);
+            harness.processElement(correction, BASE + 29999);
+
+            assertEquals(List.of("device-001|30000|10.0", "device-001|30000|10.1"), emitted(harness));
+        }
+    }
+
+    private static KeyedOneInputStreamOperatorTestHarness<String, ProcessedCpuEvent, ProcessedCpuEvent> harness(
+            double epsilon, int maxPerInterval) throws Exception {
+        return new KeyedOneInputStreamOperatorTestHarness<>(
+                new KeyedProcessOperator<>(new ResultEmissionFilter(epsilon, maxPerInterval, INTERVAL, LATENESS)),
+                ProcessedCpuEvent::getDeviceId, Types.STRING);
+    }
+
+    /**
+     * Device, window end relative to the base time and p95 of the emitted results
+     */
+    private static List<String> emitted(KeyedOneInputStreamOperatorTestHarness<String, ProcessedCpuEvent, ProcessedCpuEvent> harness) {
+        return harness.extractOutputValues().stream()
+                .map(result -> result.getDeviceId() + "|" + (result.getWindowEnd() - BASE) + "|" + result.getPercentile95())
+                .collect(Collectors.toList());
+    }
+
+    private static ProcessedCpuEvent result(String deviceId, long windowEnd, double percentile95) {
+        return new ProcessedCpuEvent(ProcessedCpuEvent.windowId(deviceId, windowEnd - 30000, windowEnd),
+                deviceId, windowEnd - 30000, windowEnd, percentile95, windowEnd + 1000);
+    }
+}
@@ -0,0 +1,253 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.PartialAccumulator;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.assigners.TumblingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.WindowOperatorBuilder;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.util.OutputTag;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollupWindowFunctionTest {
+
+    private static final OutputTag<ProcessedCpuEvent> RESULTS_TAG = new OutputTag<>("rollup-results") {
+    };
+    private static final TypeInformation<CpuUsageHistogramAggregator.HistogramAccumulator> ACCUMULATOR_TYPE =
+            TypeInformation.of(CpuUsageHistogramAggregator.HistogramAccumulator.class);
+    private static final OutputTag<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>> LATE_TAG =
+            new OutputTag<>("late-rollup-accumulators", PartialAccumulator.typeInfo(ACCUMULATOR_TYPE));
+    private static final OutputTag<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>> WINDOWS_TAG =
+            new OutputTag<>("window-accumulators", PartialAccumulator.typeInfo(ACCUMULATOR_TYPE));
+    private static final Duration BASE_WINDOW = Duration.ofSeconds(30);
+    private static final Duration LATENESS = Duration.ofSeconds(35);
+    private static final long BASE = 1692617400000L;
+
+    private final CpuUsageHistogramAggregator aggregator = new CpuUsageHistogramAggregator();
+
+    @Test
+    @DisplayName("Should emit each window's accumulator and its result identified by the window")
+    void shouldEmitAccumulatorAndResult() throws Exception {
+        List<Object> input = List.of(
+                firing("device-001", BASE + 30000, 10.0),
+                firing("device-001", BASE + 60000, 20.0),
+                firing("device-001", BASE + 90000, 30.0),
+                new Watermark(BASE + 120000));
+
+        Level level = run(Duration.ofMinutes(1), input);
+
+        List<StreamRecord<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>>> accumulators = level.accumulators();
+        assertEquals(2, accumulators.size());
+        assertEquals(BASE + 59999, accumulators.get(0).getTimestamp());
+        assertEquals(2, accumulators.get(0).getValue().getAccumulator().count);
+
+        ProcessedCpuEvent result = level.results.get(0);
+        assertEquals(ProcessedCpuEvent.windowId("device-001", BASE, BASE + 60000), result.getId());
+        assertEquals(1, result.getRevision());
+    }
+
+    @Test
+    @DisplayName("Should merge only the latest firing of each finer window and fire again with late firings")
+    void shouldReplaceEarlierFirings() throws Exception {
+        List<Object> input = List.of(
+                firing("device-001", BASE + 30000, 10.0),
+                firing("device-001", BASE + 30000, 10.0, 15.0),
+                firing("device-001", BASE + 60000, 20.0),
+                new Watermark(BASE + 60000),
+                // Late firing of the second finer window, within the level's allowed lateness
+                firing("device-001", BASE + 60000, 20.0, 25.0),
+                new Watermark(BASE + 94999),
+                // Past it
+                firing("device-001", BASE + 60000, 20.0, 25.0, 30.0),
+                new Watermark(BASE + 120000));
+
+        Level level = run(Duration.ofMinutes(1), input);
+
+        assertEquals(List.of(3L, 4L), level.results.stream().map(ProcessedCpuEvent::getEventCount).collect(Collectors.toList()));
+        assertEquals(List.of(1L, 2L), level.results.stream().map(ProcessedCpuEvent::getRevision).collect(Collectors.toList()));
+        assertEquals(1, level.late.size());
+    }
+
+    @Test
+    @DisplayName("Should roll a late pane firing past a rollup boundary up into the window it belongs to")
+    void shouldRollUpLatePaneFiringIntoItsWindow() throws Exception {
+        SlidingPaneFunction<CpuUsageHistogramAggregator.HistogramAccumulator> panes = new SlidingPaneFunction<>(aggregator,
+                ACCUMULATOR_TYPE, BASE_WINDOW, Duration.ofSeconds(5), LATENESS, Duration.ofSeconds(5),
+                new OutputTag<CpuUsageEvent>("late-events") {
+                }).withAccumulatorsOutput(WINDOWS_TAG);
+        List<StreamRecord<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>>> firings = new ArrayList<>();
+        try (KeyedOneInputStreamOperatorTestHarness<String, CpuUsageEvent, ProcessedCpuEvent> harness =
+                     new KeyedOneInputStreamOperatorTestHarness<>(new KeyedProcessOperator<>(panes),
+                             CpuUsageEvent::getDeviceId, Types.STRING)) {
+            harness.open();
+            harness.processElement(event("device-001", BASE + 1000, 10.0));
+            harness.processElement(event("device-001", BASE + 59000, 20.0));
+            harness.processElement(event("device-001", BASE + 61000, 30.0));
+            harness.processWatermark(new Watermark(BASE + 60000));
+            // Fires the window ending at the 1m boundary again at BASE + 65000
+            harness.processElement(event("device-001", BASE + 58000, 25.0));
+            harness.processWatermark(new Watermark(Long.MAX_VALUE));
+            firings.addAll(harness.getSideOutput(WINDOWS_TAG));
+        }
+
+        List<Object> input = new ArrayList<>();
+        try (OneInputStreamOperatorTestHarness<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>,
+                PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>> harness =
+                     new OneInputStreamOperatorTestHarness<>(new TilingWindowSelector<>(BASE_WINDOW))) {
+            harness.open();
+            for (StreamRecord<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>> firing : firings) {
+                harness.processElement(firing);
+            }
+            input.addAll(harness.getOutput());
+        }
+        input.add(new Watermark(Long.MAX_VALUE));
+
+        Level level = run(Duration.ofMinutes(1), input);
+
+        assertEquals(List.of(BASE + 60000 + "|3", BASE + 120000 + "|1"), level.results.stream()
+                .map(result -> result.getWindowEnd() + "|" + result.getEventCount())
+                .sorted()
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Should produce the same coarse results from the finer level's accumulators as from the events")
+    void shouldMatchCoarseLevelFromEvents() throws Exception {
+        Random random = new Random(11);
+        List<CpuUsageEvent> events = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            events.add(new CpuUsageEvent("device-" + random.nextInt(3), BASE + i * 1000L, random.nextDouble() * 100));
+        }
+
+        Level minutes = run(Duration.ofMinutes(1), windows(events, BASE_WINDOW));
+        Level fromMinutes = run(Duration.ofMinutes(5), minutes.output);
+        Level fromEvents = run(Duration.ofMinutes(5), windows(events, Duration.ofMinutes(5)));
+
+        assertFalse(fromEvents.results.isEmpty());
+        assertEquals(describe(fromEvents.results), describe(fromMinutes.results));
+    }
+
+    /**
+     * Output of one rollup level: accumulators and watermarks in order, the results and the late accumulators
+     */
+    private static class Level {
+        final List<Object> output = new ArrayList<>();
+        final List<ProcessedCpuEvent> results = new ArrayList<>();
+        final List<Object> late = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        List<StreamRecord<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>>> accumulators() {
+            return output.stream()
+                    .filter(element -> element instanceof StreamRecord)
+                    .map(element -> (StreamRecord<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>>) element)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Level run(Duration size, List<Object> input) throws Exception {
+        TypeInformation<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>> partialType =
+                PartialAccumulator.typeInfo(ACCUMULATOR_TYPE);
+        WindowOperatorBuilder<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>, String, TimeWindow> builder =
+                new WindowOperatorBuilder<>(
+                        TumblingEventTimeWindows.of(size),
+                        EventTimeTrigger.create(),
+                        new ExecutionConfig(),
+                        partialType,
+                        PartialAccumulator::getDeviceId,
+                        Types.STRING);
+        builder.allowedLateness(LATENESS);
+        builder.sideOutputLateData(LATE_TAG);
+        OneInputStreamOperator<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>,
+                PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>> operator =
+                builder.process(new RollupWindowFunction<>(aggregator, RESULTS_TAG));
+
+        Level level = new Level();
+        try (KeyedOneInputStreamOperatorTestHarness<String, PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>,
+                PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>> harness =
+                     new KeyedOneInputStreamOperatorTestHarness<>(operator, PartialAccumulator::getDeviceId, Types.STRING)) {
+            harness.open();
+            for (Object element : input) {
+                if (element instanceof Watermark) {
+                    harness.processWatermark((Watermark) element);
+                } else {
+                    harness.processElement((StreamRecord<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>>) element);
+                }
+            }
+            level.output.addAll(harness.getOutput());
+            if (harness.getSideOutput(RESULTS_TAG) != null) {
+                harness.getSideOutput(RESULTS_TAG).forEach(record -> level.results.add(record.getValue()));
+            }
+            if (harness.getSideOutput(LATE_TAG) != null) {
+                level.late.addAll(harness.getSideOutput(LATE_TAG));
+            }
+        }
+        return level;
+    }
+
+    /**
+     * One firing per device of the tumbling windows of the given size over the events, then the final watermark
+     */
+    private List<Object> windows(List<CpuUsageEvent> events, Duration size) {
+        Map<String, CpuUsageHistogramAggregator.HistogramAccumulator> windows = new TreeMap<>();
+        Map<String, Long> windowEnds = new TreeMap<>();
+        for (CpuUsageEvent event : events) {
+            long windowEnd = TimeWindow.getWindowStartWithOffset(event.getTimestamp(), 0, size.toMillis()) + size.toMillis();
+            String key = windowEnd + "|" + event.getDeviceId();
+            windows.put(key, aggregator.add(event, windows.computeIfAbsent(key, k -> aggregator.createAccumulator())));
+            windowEnds.put(key, windowEnd);
+        }
+        List<Object> firings = new ArrayList<>();
+        for (Map.Entry<String, CpuUsageHistogramAggregator.HistogramAccumulator> window : windows.entrySet()) {
+            long windowEnd = windowEnds.get(window.getKey());
+            firings.add(new StreamRecord<>(new PartialAccumulator<>(window.getValue().deviceId, windowEnd - 1, window.getValue()), windowEnd - 1));
+        }
+        firings.add(new Watermark(Long.MAX_VALUE));
+        return firings;
+    }
+
+    /**
+     * A firing of the base window ending at the given time holding the samples
+     */
+    private StreamRecord<PartialAccumulator<CpuUsageHistogramAggregator.HistogramAccumulator>> firing(
+            String deviceId, long windowEnd, double... samples) {
+        CpuUsageHistogramAggregator.HistogramAccumulator accumulator = aggregator.createAccumulator();
+        for (double sample : samples) {
+            accumulator = aggregator.add(new CpuUsageEvent(deviceId, windowEnd - 1, sample), accumulator);
+        }
+        return new StreamRecord<>(new PartialAccumulator<>(deviceId, windowEnd - 1, accumulator), windowEnd - 1);
+    }
+
+    private static StreamRecord<CpuUsageEvent> event(String deviceId, long timestamp, double cpuUsage) {
+        return new StreamRecord<>(new CpuUsageEvent(deviceId, timestamp, cpuUsage), timestamp);
+    }
+
+    private static List<String> describe(List<ProcessedCpuEvent> results) {
+        return results.stream()
+                .map(result -> result.getId() + "|" + result.getRevision() + "|" + result.getDeviceId() + "|"
+                        + result.getWindowStart() + "|" + result.getWindowEnd() + "|" + result.getPercentile95())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,238 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
+import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.Trigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+import org.apache.flink.streaming.runtime.operators.windowing.WindowOperatorBuilder;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.apache.flink.util.OutputTag;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingPaneFunctionTest {
+
+    private static final Duration SIZE = Duration.ofSeconds(30);
+    private static final Duration SLIDE = Duration.ofSeconds(5);
+    private static final Duration LATENESS = Duration.ofSeconds(35);
+    private static final Duration LATE_FIRING_INTERVAL = Duration.ofSeconds(5);
+    private static final OutputTag<CpuUsageEvent> LATE_TAG = new OutputTag<>("late-events") {
+    };
+    private static final long BASE = 1692617400000L;
+
+    @Test
+    @DisplayName("Should emit one result per sliding window covering the pane")
+    void shouldEmitOneResultPerSlidingWindow() throws Exception {
+        List<String> results = run(paneOperator(Duration.ZERO), harness -> {
+            harness.processElement(event("device-001", BASE + 1000, 50.0));
+            harness.processWatermark(new Watermark(BASE + 60000));
+        });
+
+        // An event is part of size / slide = 6 windows
+        assertEquals(6, results.size());
+    }
+
+    @Test
+    @DisplayName("Should match sliding window operator for in-order events")
+    void shouldMatchSlidingWindowsForInOrderEvents() throws Exception {
+        HarnessInput input = harness -> {
+            for (int i = 0; i < 200; i++) {
+                String deviceId = "device-" + (i % 3);
+                harness.processElement(event(deviceId, BASE + i * 700L, (i * 37) % 100));
+                if (i % 10 == 0) {
+                    harness.processWatermark(new Watermark(BASE + i * 700L - 35000));
+                }
+            }
+            harness.processWatermark(new Watermark(Long.MAX_VALUE));
+        };
+
+        assertEquals(run(windowOperator(EventTimeTrigger.create()), input), run(paneOperator(Duration.ZERO), input));
+    }
+
+    @Test
+    @DisplayName("Should match sliding window operator for late firings and dropped events")
+    void shouldMatchSlidingWindowsForLateEvents() throws Exception {
+        HarnessInput input = outOfOrderInput();
+
+        List<String> lateFromWindows = new ArrayList<>();
+        List<String> lateFromPanes = new ArrayList<>();
+        List<String> expected = run(windowOperator(EventTimeTrigger.create()), input, lateFromWindows);
+        List<String> actual = run(paneOperator(Duration.ZERO), input, lateFromPanes);
+
+        assertFalse(lateFromWindows.isEmpty());
+        assertEquals(lateFromWindows, lateFromPanes);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("Should match sliding window operator with the coalescing trigger for late firings")
+    void shouldMatchSlidingWindowsForCoalescedLateFirings() throws Exception {
+        HarnessInput input = outOfOrderInput();
+
+        List<String> lateFromWindows = new ArrayList<>();
+        List<String> lateFromPanes = new ArrayList<>();
+        List<String> expected = run(windowOperator(new CoalescingEventTimeTrigger(LATE_FIRING_INTERVAL, LATENESS)),
+                input, lateFromWindows);
+        List<String> actual = run(paneOperator(LATE_FIRING_INTERVAL), input, lateFromPanes);
+
+        assertEquals(lateFromWindows, lateFromPanes);
+        assertEquals(expected, actual);
+        // Late events are batched into fewer firings, and the same events are dropped
+        assertTrue(expected.size() < run(windowOperator(EventTimeTrigger.create()), input).size());
+    }
+
+    @Test
+    @DisplayName("Should fire a late window once for a burst of late events")
+    void shouldCoalesceLateFirings() throws Exception {
+        List<String> results = run(paneOperator(LATE_FIRING_INTERVAL), harness -> {
+            harness.processElement(event("device-001", BASE + 1000, 50.0));
+            // The first window has fired, the other five are still open
+            harness.processWatermark(new Watermark(BASE + 5000));
+            for (int i = 0; i < 10; i++) {
+                harness.processElement(event("device-001", BASE + 2000 + i * 100, 60.0));
+            }
+            assertEquals(1, harness.extractOutputValues().size());
+
+            harness.processWatermark(new Watermark(BASE + 10000));
+            harness.processWatermark(new Watermark(Long.MAX_VALUE));
+        });
+
+        // On-time firings of the six windows plus one late firing of the first
+        assertEquals(7, results.size());
+    }
+
+    @Test
+    @DisplayName("Should revise a window's result with every firing, whatever the number of samples")
+    void shouldReviseWithEveryFiring() throws Exception {
+        try (KeyedOneInputStreamOperatorTestHarness<String, CpuUsageEvent, ProcessedCpuEvent> harness = harness(paneOperator(Duration.ZERO))) {
+            harness.open();
+            harness.processElement(event("device-001", BASE + 1000, 50.0));
+            harness.processElement(event("device-001", BASE + 2000, 50.0));
+            harness.processWatermark(new Watermark(BASE + 5000));
+            harness.processElement(event("device-001", BASE + 3000, 60.0));
+
+            String firstWindow = ProcessedCpuEvent.windowId("device-001", BASE + 5000 - SIZE.toMillis(), BASE + 5000);
+            List<Long> revisions = harness.extractOutputValues().stream()
+                    .filter(result -> result.getId().equals(firstWindow))
+                    .map(ProcessedCpuEvent::getRevision)
+                    .collect(Collectors.toList());
+            assertEquals(List.of(1L, 2L), revisions);
+        }
+    }
+
+    @Test
+    @DisplayName("Should release pane state once allowed lateness has passed")
+    void shouldReleasePaneStateAfterLateness() throws Exception {
+        try (KeyedOneInputStreamOperatorTestHarness<String, CpuUsageEvent, ProcessedCpuEvent> harness = harness(paneOperator(Duration.ZERO))) {
+            harness.open();
+            harness.processElement(event("device-001", BASE + 1000, 50.0));
+            harness.processElement(event("device-001", BASE + 6000, 60.0));
+            assertTrue(harness.numKeyedStateEntries() > 0);
+
+            harness.processWatermark(new Watermark(BASE + 120000));
+
+            assertEquals(0, harness.numKeyedStateEntries());
+        }
+    }
+
+    /**
+     * Events up to 120 seconds out of order, so some fire late windows and some are dropped
+     */
+    private static HarnessInput outOfOrderInput() {
+        Random random = new Random(42);
+        List<StreamRecord<CpuUsageEvent>> events = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long timestamp = BASE + i * 500L - random.nextInt(120000);
+            events.add(event("device-" + random.nextInt(4), timestamp, random.nextDouble() * 100));
+        }
+
+        return harness -> {
+            for (int i = 0; i < events.size(); i++) {
+                harness.processElement(events.get(i));
+                if (i % 7 == 0) {
+                    harness.processWatermark(new Watermark(BASE + i * 500L - 35000));
+                }
+            }
+            harness.processWatermark(new Watermark(Long.MAX_VALUE));
+        };
+    }
+
+    private static OneInputStreamOperator<CpuUsageEvent, ProcessedCpuEvent> paneOperator(Duration lateFiringInterval) {
+        return new KeyedProcessOperator<>(new SlidingPaneFunction<>(new CpuUsageAggregator(),
+                TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class), SIZE, SLIDE, LATENESS, lateFiringInterval, LATE_TAG));
+    }
+
+    private static OneInputStreamOperator<CpuUsageEvent, ProcessedCpuEvent> windowOperator(
+            Trigger<? super CpuUsageEvent, ? super TimeWindow> trigger) {
+        WindowOperatorBuilder<CpuUsageEvent, String, TimeWindow> builder = new WindowOperatorBuilder<>(
+                SlidingEventTimeWindows.of(SIZE, SLIDE),
+                trigger,
+                new ExecutionConfig(),
+                TypeInformation.of(CpuUsageEvent.class),
+                CpuUsageEvent::getDeviceId,
+                Types.STRING);
+        builder.allowedLateness(LATENESS);
+        builder.sideOutputLateData(LATE_TAG);
+        // Same wiring as the application's window mode
+        CpuUsageAggregator aggregator = new CpuUsageAggregator();
+        return builder.aggregate(new AccumulatorPassThrough<>(aggregator), new MeteredWindowResultFunction<>(aggregator),
+                TypeInformation.of(CpuUsageAggregator.CpuAccumulator.class));
+    }
+
+    private static KeyedOneInputStreamOperatorTestHarness<String, CpuUsageEvent, ProcessedCpuEvent> harness(
+            OneInputStreamOperator<CpuUsageEvent, ProcessedCpuEvent> operator) throws Exception {
+        return new KeyedOneInputStreamOperatorTestHarness<>(operator, CpuUsageEvent::getDeviceId, Types.STRING);
+    }
+
+    private static List<String> run(OneInputStreamOperator<CpuUsageEvent, ProcessedCpuEvent> operator,
+                                    HarnessInput input) throws Exception {
+        return run(operator, input, new ArrayList<>());
+    }
+
+    /**
+     * Runs the input through the operator and returns its results in a comparable form
+     */
+    private static List<String> run(OneInputStreamOperator<CpuUsageEvent, ProcessedCpuEvent> operator,
+                                    HarnessInput input,
+                                    List<String> lateEvents) throws Exception {
+        try (KeyedOneInputStreamOperatorTestHarness<String, CpuUsageEvent, ProcessedCpuEvent> harness = harness(operator)) {
+            harness.open();
+            input.feed(harness);
+
+            if (harness.getSideOutput(LATE_TAG) != null) {
+                harness.getSideOutput(LATE_TAG).forEach(record -> lateEvents.add(record.getValue().toString()));
+            }
+            return harness.extractOutputValues().stream()
+                    .map(result -> result.getId() + "|" + result.getRevision() + "|" + result.getDeviceId() + "|"
+                            + result.getWindowStart() + "|" + result.getWindowEnd() + "|" + result.getPercentile95())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @FunctionalInterface
+    private interface HarnessInput {
+        void feed(KeyedOneInputStreamOperatorTestHarness<String, CpuUsageEvent, ProcessedCpuEvent> harness) throws Exception;
+    }
+
+    private static StreamRecord<CpuUsageEvent> event(String deviceId, long timestamp, double cpuUsage) {
+        return new StreamRecord<>(new CpuUsageEvent(deviceId, timestamp, cpuUsage), timestamp);
+    }
+}
@@ -0,0 +1,64 @@
+package com.controlup.processor.function;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.ProcessFunctionTestHarnesses;
+import org.apache.flink.types.Either;
+import org.apache.flink.util.OutputTag;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidEventFilterTest {
+
+    private final OutputTag<MalformedCpuUsageEvent> malformedEventsTag = new OutputTag<>("malformed-events") {
+    };
+
+    @Test
+    @DisplayName("Should pass valid events and route malformed ones to the side output")
+    void shouldRouteMalformedEvents() throws Exception {
+        CpuUsageEvent valid = new CpuUsageEvent("device-001", 1692617400000L, 50.0);
+        MalformedCpuUsageEvent malformed = new MalformedCpuUsageEvent("not json", "Unexpected character");
+
+        try (OneInputStreamOperatorTestHarness<Either<MalformedCpuUsageEvent, CpuUsageEvent>, CpuUsageEvent> harness =
+                     ProcessFunctionTestHarnesses.forProcessFunction(new ValidEventFilter(malformedEventsTag))) {
+            harness.processElement(Either.Right(valid), 1692617400000L);
+            harness.processElement(Either.Left(malformed), Long.MIN_VALUE);
+            harness.processElement(Either.Right(new CpuUsageEvent(null, 1692617400000L, 50.0)), 1692617400000L);
+
+            assertEquals(List.of(valid), harness.extractOutputValues());
+            List<MalformedCpuUsageEvent> sideOutput = harness.getSideOutput(malformedEventsTag).stream()
+                    .map(record -> record.getValue())
+                    .collect(Collectors.toList());
+            assertEquals(2, sideOutput.size());
+            assertEquals(malformed, sideOutput.get(0));
+            assertEquals("Missing deviceId", sideOutput.get(1).getError());
+        }
+    }
+
+    @Test
+    @DisplayName("Should report event time lag and watermark skew of the valid events")
+    void shouldReportLagAndSkew() throws Exception {
+        ValidEventFilter filter = new ValidEventFilter(malformedEventsTag);
+
+        try (OneInputStreamOperatorTestHarness<Either<MalformedCpuUsageEvent, CpuUsageEvent>, CpuUsageEvent> harness =
+                     ProcessFunctionTestHarnesses.forProcessFunction(filter)) {
+            assertEquals(0L, filter.eventTimeLag());
+            assertEquals(0L, filter.watermarkSkew());
+
+            long now = System.currentTimeMillis();
+            harness.processWatermark(new Watermark(now - 60000));
+            harness.processElement(Either.Right(new CpuUsageEvent("device-001", now - 10000, 50.0)), now - 10000);
+            harness.processElement(Either.Right(new CpuUsageEvent("device-001", now - 20000, 50.0)), now - 20000);
+
+            assertTrue(filter.eventTimeLag() >= 20000);
+            assertEquals(50000L, filter.watermarkSkew());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.controlup.processor.metrics;
+
+import com.controlup.processor.function.CpuUsageAggregator;
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.Meter;
+import org.apache.flink.metrics.Metric;
+import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowResultMetricsTest {
+
+    @Test
+    @DisplayName("Should record results, samples per window and compute time")
+    void shouldRecordResults() {
+        RecordingMetricGroup metricGroup = new RecordingMetricGroup();
+        WindowResultMetrics metrics = new WindowResultMetrics(metricGroup);
+        CpuUsageAggregator aggregator = new CpuUsageAggregator();
+
+        for (int samples : new int[]{10, 30}) {
+            CpuUsageAggregator.CpuAccumulator accumulator = aggregator.createAccumulator();
+            for (int i = 0; i < samples; i++) {
+                aggregator.add(new CpuUsageEvent("device-001", 1692617400000L + i, i), accumulator);
+            }
+
+            ProcessedCpuEvent result = metrics.computeResult(aggregator, accumulator,
+                    "device-001", 1692617400000L, 1692617430000L);
+
+            assertEquals("device-001", result.getDeviceId());
+            assertEquals(1692617400000L, result.getWindowStart());
+            assertEquals(1692617430000L, result.getWindowEnd());
+        }
+
+        assertEquals(2, ((Counter) metricGroup.metrics.get(WindowResultMetrics.EVENTS_OUT)).getCount());
+        assertEquals(2, ((Meter) metricGroup.metrics.get(WindowResultMetrics.EVENTS_OUT_RATE)).getCount());
+        Histogram samplesPerWindow = (Histogram) metricGroup.metrics.get(WindowResultMetrics.SAMPLES_PER_WINDOW);
+        assertEquals(2, samplesPerWindow.getCount());
+        assertEquals(10, samplesPerWindow.getStatistics().getMin());
+        assertEquals(30, samplesPerWindow.getStatistics().getMax());
+        Histogram computeNanos = (Histogram) metricGroup.metrics.get(WindowResultMetrics.PERCENTILE_COMPUTE_NANOS);
+        assertEquals(2, computeNanos.getCount());
+        assertTrue(computeNanos.getStatistics().getMin() >= 0);
+    }
+
+    /**
+     * Metric group that keeps registered metrics by name
+     */
+    public static class RecordingMetricGroup extends UnregisteredMetricsGroup {
+
+        public final Map<String, Metric> metrics = new HashMap<>();
+
+        @Override
+        public Counter counter(String name) {
+            return counter(name, new SimpleCounter());
+        }
+
+        @Override
+        public <C extends Counter> C counter(String name, C counter) {
+            metrics.put(name, counter);
+            return counter;
+        }
+
+        @Override
+        public <T, G extends Gauge<T>> G gauge(String name, G gauge) {
+            metrics.put(name, gauge);
+            return gauge;
+        }
+
+        @Override
+        public <M extends Meter> M meter(String name, M meter) {
+            metrics.put(name, meter);
+            return meter;
+        }
+
+        @Override
+        public <H extends Histogram> H histogram(String name, H histogram) {
+            metrics.put(name, histogram);
+            return histogram;
+        }
+    }
+}
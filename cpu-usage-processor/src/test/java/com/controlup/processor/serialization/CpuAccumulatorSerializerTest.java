@@ -0,0 +1,125 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.function.CpuUsageAggregator;
+import com.controlup.processor.function.CpuUsageAggregator.CpuAccumulator;
+import com.controlup.processor.model.CpuUsageEvent;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializerSchemaCompatibility;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuAccumulatorSerializerTest {
+
+    private final CpuAccumulatorSerializer serializer = CpuAccumulatorSerializer.INSTANCE;
+
+    @Test
+    @DisplayName("Should be used as type information for CpuAccumulator")
+    void shouldBeUsedAsTypeInformation() {
+        TypeInformation<CpuAccumulator> typeInfo = TypeInformation.of(CpuAccumulator.class);
+
+        assertInstanceOf(CpuAccumulatorTypeInfo.class, typeInfo);
+    }
+
+    @Test
+    @DisplayName("Should round trip accumulator with values")
+    void shouldRoundTripAccumulator() throws IOException {
+        CpuAccumulator accumulator = accumulator(3);
+
+        CpuAccumulator restored = roundTrip(accumulator);
+
+        assertEquals("device-001", restored.deviceId);
+        assertEquals(3, restored.count);
+        assertEquals(accumulator.windowStart, restored.windowStart);
+        assertEquals(accumulator.windowEnd, restored.windowEnd);
+        assertArrayEquals(accumulator.getValues(), restored.getValues());
+    }
+
+    @Test
+    @DisplayName("Should round trip empty accumulator")
+    void shouldRoundTripEmptyAccumulator() throws IOException {
+        CpuAccumulator restored = roundTrip(new CpuAccumulator());
+
+        assertNull(restored.deviceId);
+        assertTrue(restored.isEmpty());
+        assertEquals(Long.MAX_VALUE, restored.windowStart);
+        assertEquals(Long.MIN_VALUE, restored.windowEnd);
+
+        // Restored accumulator must still accept values
+        restored.addValue(10.0);
+        restored.addValue(20.0);
+        assertArrayEquals(new double[]{10.0, 20.0}, restored.getValues());
+    }
+
+    @Test
+    @DisplayName("Should write only used samples, not spare capacity")
+    void shouldWriteOnlyUsedSamples() throws IOException {
+        CpuAccumulator accumulator = accumulator(3);
+        DataOutputSerializer out = new DataOutputSerializer(64);
+
+        serializer.serialize(accumulator, out);
+
+        // deviceId (1 byte length + 10 chars) + 2 longs + int + 3 doubles
+        assertEquals(11 + 16 + 4 + 3 * Double.BYTES, out.length());
+    }
+
+    @Test
+    @DisplayName("Should copy serialized form without deserializing")
+    void shouldCopySerializedForm() throws IOException {
+        DataOutputSerializer original = new DataOutputSerializer(64);
+        serializer.serialize(accumulator(5), original);
+
+        DataOutputSerializer copied = new DataOutputSerializer(64);
+        serializer.copy(new DataInputDeserializer(original.getCopyOfBuffer()), copied);
+
+        assertArrayEquals(original.getCopyOfBuffer(), copied.getCopyOfBuffer());
+    }
+
+    @Test
+    @DisplayName("Should deep copy accumulator")
+    void shouldDeepCopyAccumulator() {
+        CpuAccumulator accumulator = accumulator(2);
+
+        CpuAccumulator copy = serializer.copy(accumulator);
+        copy.addValue(99.0);
+
+        assertEquals(2, accumulator.count);
+        assertArrayEquals(new double[]{0.0, 10.0, 99.0}, copy.getValues());
+    }
+
+    @Test
+    @DisplayName("Should restore from its own versioned snapshot as is")
+    void shouldRestoreFromSnapshot() throws IOException {
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        TypeSerializerSnapshot.writeVersionedSnapshot(out, serializer.snapshotConfiguration());
+
+        TypeSerializerSnapshot<CpuAccumulator> restored = TypeSerializerSnapshot.readVersionedSnapshot(
+                new DataInputDeserializer(out.getCopyOfBuffer()), getClass().getClassLoader());
+        TypeSerializerSchemaCompatibility<CpuAccumulator> compatibility =
+                serializer.snapshotConfiguration().resolveSchemaCompatibility(restored);
+
+        assertSame(serializer, restored.restoreSerializer());
+        assertTrue(compatibility.isCompatibleAsIs());
+    }
+
+    private CpuAccumulator roundTrip(CpuAccumulator accumulator) throws IOException {
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        serializer.serialize(accumulator, out);
+        return serializer.deserialize(new DataInputDeserializer(out.getCopyOfBuffer()));
+    }
+
+    private static CpuAccumulator accumulator(int count) {
+        CpuUsageAggregator aggregator = new CpuUsageAggregator();
+        CpuAccumulator accumulator = aggregator.createAccumulator();
+        for (int i = 0; i < count; i++) {
+            aggregator.add(new CpuUsageEvent("device-001", 1692617400000L + i * 1000, i * 10.0), accumulator);
+        }
+        return accumulator;
+    }
+}
@@ -0,0 +1,74 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuUsageEventBinarySchemaTest {
+
+    private final CpuUsageEventBinarySchema schema = new CpuUsageEventBinarySchema();
+
+    @Test
+    @DisplayName("Should round trip event")
+    void shouldRoundTripEvent() {
+        CpuUsageEvent event = new CpuUsageEvent("device-001", 1692617400000L, 75.25);
+
+        assertEquals(event, schema.deserialize(schema.serialize(event)).right());
+    }
+
+    @Test
+    @DisplayName("Should round trip null and non-ASCII device ids")
+    void shouldRoundTripDeviceIds() {
+        CpuUsageEvent noDevice = new CpuUsageEvent(null, 1692617400000L, 10.0);
+        CpuUsageEvent unicodeDevice = new CpuUsageEvent("gerät-ü", 1692617400000L, 10.0);
+
+        assertEquals(noDevice, schema.deserialize(schema.serialize(noDevice)).right());
+        assertEquals(unicodeDevice, schema.deserialize(schema.serialize(unicodeDevice)).right());
+    }
+
+    @Test
+    @DisplayName("Should read the layout written by the test producer")
+    void shouldReadProducerLayout() {
+        byte[] deviceId = "device-001".getBytes(StandardCharsets.UTF_8);
+        byte[] message = ByteBuffer.allocate(19 + deviceId.length)
+                .put((byte) 1)
+                .putLong(1692617400000L)
+                .putDouble(42.5)
+                .putShort((short) deviceId.length)
+                .put(deviceId)
+                .array();
+
+        assertEquals(new CpuUsageEvent("device-001", 1692617400000L, 42.5), schema.deserialize(message).right());
+        assertArrayEquals(message, schema.serialize(new CpuUsageEvent("device-001", 1692617400000L, 42.5)));
+    }
+
+    @Test
+    @DisplayName("Should be smaller than the JSON encoding")
+    void shouldBeSmallerThanJson() {
+        byte[] binary = schema.serialize(new CpuUsageEvent("device-001", 1692617400000L, 42.57));
+        String json = "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000,\"cpuUsage\":42.57}";
+
+        assertEquals(29, binary.length);
+        assertTrue(binary.length < json.length() / 2);
+    }
+
+    @Test
+    @DisplayName("Should return unknown versions and truncated records as malformed")
+    void shouldRejectInvalidRecords() {
+        byte[] message = schema.serialize(new CpuUsageEvent("device-001", 1692617400000L, 42.5));
+        byte[] unknownVersion = message.clone();
+        unknownVersion[0] = 2;
+
+        assertTrue(schema.deserialize(unknownVersion).isLeft());
+        assertTrue(schema.deserialize(Arrays.copyOf(message, 10)).isLeft());
+        MalformedCpuUsageEvent truncated = schema.deserialize(Arrays.copyOf(message, message.length - 1)).left();
+        assertEquals("Truncated record of 28 bytes", truncated.getError());
+    }
+}
@@ -0,0 +1,197 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.flink.formats.json.JsonDeserializationSchema;
+import org.apache.flink.types.Either;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuUsageEventJsonSchemaTest {
+
+    private CpuUsageEventJsonSchema schema;
+    private JsonDeserializationSchema<CpuUsageEvent> databind;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        schema = new CpuUsageEventJsonSchema();
+        schema.open(null);
+        databind = new JsonDeserializationSchema<>(CpuUsageEvent.class);
+        databind.open(null);
+    }
+
+    @Test
+    @DisplayName("Should decode the same event as JsonDeserializationSchema")
+    void shouldDecodeSameAsDatabind() throws Exception {
+        String json = "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000,\"cpuUsage\":85.5}";
+
+        assertEquals(databind.deserialize(bytes(json)), event(json));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1692617400000.9", "1692617400000.0", "1.6926174E12", "16926174e5", "-1.5", "0.25"})
+    @DisplayName("Should truncate fractional and exponent timestamps like JsonDeserializationSchema")
+    void shouldTruncateFractionalTimestamps(String timestamp) throws Exception {
+        String json = "{\"deviceId\":\"device-001\",\"timestamp\":" + timestamp + ",\"cpuUsage\":85.5}";
+
+        assertEquals(databind.deserialize(bytes(json)), event(json));
+    }
+
+    @Test
+    @DisplayName("Should return a null deviceId as malformed, where the filter rejected the databound event")
+    void shouldRejectNullDeviceId() throws Exception {
+        String json = "{\"deviceId\":null,\"timestamp\":1692617400000,\"cpuUsage\":85.5}";
+
+        assertNull(databind.deserialize(bytes(json)).getDeviceId());
+        assertEquals(json, malformed(json).getPayload());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"deviceId\":\"device-001\",\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":null,\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000,\"cpuUsage\":null}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":\"1692617400000\",\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000,\"cpuUsage\":\"85.5\"}"
+    })
+    @DisplayName("Should return missing or null numbers and numbers in strings as malformed, unlike JsonDeserializationSchema")
+    void shouldBeStricterThanDatabind(String json) throws Exception {
+        assertNotNull(databind.deserialize(bytes(json)));
+
+        assertEquals(json, malformed(json).getPayload());
+    }
+
+    @Test
+    @DisplayName("Should decode cpuUsage exactly like Double.parseDouble")
+    void shouldDecodeNumbersExactly() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double value = random.nextDouble() * 100;
+            String[] texts = {
+                    Double.toString(value),
+                    String.format(Locale.ROOT, "%.2f", value),
+                    String.format(Locale.ROOT, "%.6f", -value),
+                    String.format(Locale.ROOT, "%.3e", value),
+                    Long.toString(random.nextLong())
+            };
+            for (String text : texts) {
+                CpuUsageEvent event = event("{\"deviceId\":\"d\",\"timestamp\":1,\"cpuUsage\":" + text + "}");
+
+                assertEquals(Double.parseDouble(text), event.getCpuUsage(), 0.0, text);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should decode timestamps across the long range")
+    void shouldDecodeTimestamps() {
+        for (long timestamp : new long[]{0L, -1L, 1692617400000L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            CpuUsageEvent event = event("{\"deviceId\":\"d\",\"timestamp\":" + timestamp + ",\"cpuUsage\":1}");
+
+            assertEquals(timestamp, event.getTimestamp());
+        }
+    }
+
+    @Test
+    @DisplayName("Should decode fields in any order, integer usage and whitespace")
+    void shouldDecodeAnyFieldOrder() {
+        CpuUsageEvent event = event(" { \"cpuUsage\" : 40 , \"timestamp\" : 1692617400000 , \"deviceId\" : \"device-002\" } ");
+
+        assertEquals(new CpuUsageEvent("device-002", 1692617400000L, 40.0), event);
+    }
+
+    @Test
+    @DisplayName("Should skip unknown fields including nested values")
+    void shouldSkipUnknownFields() {
+        CpuUsageEvent event = event("{\"deviceId\":\"device-001\",\"tags\":{\"os\":\"linux\",\"cores\":[1,2]},"
+                + "\"timestamp\":1692617400000,\"agent\":null,\"cpuUsage\":12.25}");
+
+        assertEquals(new CpuUsageEvent("device-001", 1692617400000L, 12.25), event);
+    }
+
+    @Test
+    @DisplayName("Should decode escaped device ids")
+    void shouldDecodeEscapedDeviceIds() {
+        CpuUsageEvent event = event("{\"deviceId\":\"dev\\\"ice-\\u00fc\",\"timestamp\":1,\"cpuUsage\":1.0}");
+
+        assertEquals("dev\"ice-ü", event.getDeviceId());
+    }
+
+    @Test
+    @DisplayName("Should return the same device id instance for repeated ids")
+    void shouldInternDeviceIds() {
+        CpuUsageEvent first = event("{\"deviceId\":\"device-001\",\"timestamp\":1,\"cpuUsage\":1.0}");
+        CpuUsageEvent second = event("{\"deviceId\":\"device-001\",\"timestamp\":2,\"cpuUsage\":2.0}");
+        CpuUsageEvent other = event("{\"deviceId\":\"device-002\",\"timestamp\":3,\"cpuUsage\":3.0}");
+
+        assertSame(first.getDeviceId(), second.getDeviceId());
+        assertEquals("device-002", other.getDeviceId());
+    }
+
+    @Test
+    @DisplayName("Should keep interning correct after the table starts over")
+    void shouldInternBeyondCapacity() {
+        CpuUsageEventJsonSchema.DeviceIdInterner interner = new CpuUsageEventJsonSchema.DeviceIdInterner(100);
+
+        for (int i = 0; i < 1000; i++) {
+            byte[] id = bytes("device-" + i);
+            assertEquals("device-" + i, interner.intern(id, 0, id.length));
+            assertTrue(interner.size() <= 100);
+        }
+        assertSame(interner.intern(bytes("device-999"), 0, 10), interner.intern(bytes("xxdevice-999yy"), 2, 10));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "not json",
+            "[1, 2, 3]",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000,\"cpuUsage\":85.5} trailing",
+            "{\"timestamp\":1692617400000,\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000}",
+            "{\"deviceId\":42,\"timestamp\":1692617400000,\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":\"yesterday\",\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000,\"cpuUsage\":\"high\"}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":99999999999999999999,\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1e30,\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000.,\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000,\"cpuUsage\":85.5.5}",
+            "{\"deviceId\":\"device-001\" \"timestamp\":1692617400000,\"cpuUsage\":85.5}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000,\"cpuUsage\":85.5,\"tags\":{\"os\":\"linux\"}",
+            "{\"deviceId\":\"device-001\",\"timestamp\":1692617400000,\"cpuUsage\":85.5,\"up\":maybe}"
+    })
+    @DisplayName("Should return malformed records with their payload instead of failing")
+    void shouldReturnMalformedRecords(String json) {
+        MalformedCpuUsageEvent malformed = malformed(json);
+
+        assertEquals(json, malformed.getPayload());
+        assertNotNull(malformed.getError());
+    }
+
+    private CpuUsageEvent event(String json) {
+        Either<MalformedCpuUsageEvent, CpuUsageEvent> decoded = schema.deserialize(bytes(json));
+        assertTrue(decoded.isRight(), () -> json + ": " + (decoded.isLeft() ? decoded.left().getError() : ""));
+        return decoded.right();
+    }
+
+    private MalformedCpuUsageEvent malformed(String json) {
+        Either<MalformedCpuUsageEvent, CpuUsageEvent> decoded = schema.deserialize(bytes(json));
+        assertTrue(decoded.isLeft(), json);
+        return decoded.left();
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
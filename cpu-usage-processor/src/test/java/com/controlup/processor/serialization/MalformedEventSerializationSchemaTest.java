@@ -0,0 +1,41 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MalformedEventSerializationSchemaTest {
+
+    private final MalformedEventSerializationSchema schema = new MalformedEventSerializationSchema("malformed-events");
+
+    @Test
+    @DisplayName("Should write the payload as the value and the error as a header")
+    void shouldWritePayloadAndError() {
+        MalformedCpuUsageEvent event = new MalformedCpuUsageEvent("{\"deviceId\":\"device-001\",\"cpuUsage\":\"high\"}",
+                "cpuUsage is not a number");
+
+        ProducerRecord<byte[], byte[]> record = schema.serialize(event, null, 1692617430000L);
+
+        assertEquals("malformed-events", record.topic());
+        assertNull(record.key());
+        assertEquals(1692617430000L, record.timestamp());
+        assertArrayEquals(event.getPayload().getBytes(StandardCharsets.UTF_8), record.value());
+        assertArrayEquals("cpuUsage is not a number".getBytes(StandardCharsets.UTF_8),
+                record.headers().lastHeader(MalformedEventSerializationSchema.ERROR_HEADER).value());
+    }
+
+    @Test
+    @DisplayName("Should write records without payload or error")
+    void shouldWriteEmptyRecord() {
+        ProducerRecord<byte[], byte[]> record = schema.serialize(new MalformedCpuUsageEvent((String) null, null), null, null);
+
+        assertNull(record.value());
+        assertNull(record.timestamp());
+        assertNull(record.headers().lastHeader(MalformedEventSerializationSchema.ERROR_HEADER));
+    }
+}
@@ -0,0 +1,95 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.CpuUsageEvent;
+import com.controlup.processor.model.MalformedCpuUsageEvent;
+import org.apache.flink.api.common.functions.util.ListCollector;
+import org.apache.flink.api.common.serialization.DeserializationSchema;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.types.Either;
+import org.apache.flink.util.SimpleUserCodeClassLoader;
+import org.apache.flink.util.UserCodeClassLoader;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionWatermarkLagSchemaTest {
+
+    private static final long BASE = 1692617400000L;
+
+    private PartitionWatermarkLagSchema schema;
+    private List<Either<MalformedCpuUsageEvent, CpuUsageEvent>> events;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        schema = new PartitionWatermarkLagSchema(new CpuUsageEventJsonSchema(), Duration.ofSeconds(35), Duration.ofSeconds(10));
+        schema.open(new DeserializationSchema.InitializationContext() {
+            @Override
+            public MetricGroup getMetricGroup() {
+                return new UnregisteredMetricsGroup();
+            }
+
+            @Override
+            public UserCodeClassLoader getUserCodeClassLoader() {
+                return SimpleUserCodeClassLoader.create(getClass().getClassLoader());
+            }
+        });
+        events = new ArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Should report the lag of each partition's watermark from its highest event timestamp")
+    void shouldTrackLagPerPartition() throws Exception {
+        deserialize(0, event("device-001", BASE));
+        deserialize(0, event("device-002", BASE - 20000));
+        deserialize(1, event("device-003", BASE - 60000));
+
+        long now = System.currentTimeMillis();
+        assertEquals(3, events.size());
+        assertEquals(now - BASE + 35000, schema.watermarkLag(0, now));
+        assertEquals(now - BASE + 95000, schema.watermarkLag(1, now));
+        assertEquals(0, schema.watermarkLag(2, now));
+    }
+
+    @Test
+    @DisplayName("Should report no lag for a partition idle longer than the idle timeout")
+    void shouldIgnoreIdlePartitions() throws Exception {
+        deserialize(0, event("device-001", BASE));
+        long now = System.currentTimeMillis();
+
+        assertTrue(schema.watermarkLag(0, now) > 0);
+        assertEquals(0, schema.watermarkLag(0, now + 10000));
+    }
+
+    @Test
+    @DisplayName("Should pass malformed records through without moving the partition's watermark")
+    void shouldIgnoreMalformedRecords() throws Exception {
+        deserialize(0, event("device-001", BASE));
+        deserialize(0, "{\"deviceId\":\"device-001\",\"timestamp\":");
+        deserialize(1, "not json");
+
+        assertEquals(3, events.size());
+        assertTrue(events.get(0).isRight());
+        assertTrue(events.get(1).isLeft());
+        long now = System.currentTimeMillis();
+        assertEquals(now - BASE + 35000, schema.watermarkLag(0, now));
+        assertEquals(0, schema.watermarkLag(1, now));
+    }
+
+    private void deserialize(int partition, String json) throws Exception {
+        schema.deserialize(new ConsumerRecord<>("events", partition, 0L, null, json.getBytes(StandardCharsets.UTF_8)),
+                new ListCollector<>(events));
+    }
+
+    private static String event(String deviceId, long timestamp) {
+        return "{\"deviceId\":\"" + deviceId + "\",\"timestamp\":" + timestamp + ",\"cpuUsage\":50.0}";
+    }
+}
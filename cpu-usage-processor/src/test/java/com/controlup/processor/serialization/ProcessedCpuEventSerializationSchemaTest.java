@@ -0,0 +1,100 @@
+package com.controlup.processor.serialization;
+
+import com.controlup.processor.model.ProcessedCpuEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProcessedCpuEventSerializationSchemaTest {
+
+    private final ProcessedCpuEventSerializationSchema schema = new ProcessedCpuEventSerializationSchema("processed-events");
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Should key records by deviceId on the configured topic")
+    void shouldKeyRecordsByDeviceId() {
+        ProcessedCpuEvent event = new ProcessedCpuEvent("id-1", "device-001", 1692617400000L, 1692617430000L, 85.1, 1692617431000L);
+
+        ProducerRecord<byte[], byte[]> record = schema.serialize(event, null, 1692617430000L);
+
+        assertEquals("processed-events", record.topic());
+        assertArrayEquals("device-001".getBytes(StandardCharsets.UTF_8), record.key());
+        assertEquals(1692617430000L, record.timestamp());
+        assertNull(record.partition());
+    }
+
+    @Test
+    @DisplayName("Should write the same JSON as Jackson")
+    void shouldWriteSameJsonAsJackson() throws Exception {
+        List<ProcessedCpuEvent> events = List.of(
+                new ProcessedCpuEvent("id-1", "device-001", 1692617400000L, 1692617430000L, 85.1, 1692617431000L),
+                new ProcessedCpuEvent("id-2", "dev\"ice\\\n", 0L, -1L, 0.0, Long.MAX_VALUE),
+                new ProcessedCpuEvent("id-3", "gerät-ü-€", Long.MIN_VALUE, 5L, 1.0E-5, 1L),
+                new ProcessedCpuEvent("id-4", null, 1L, 2L, 99.99999999999999, 3L),
+                new ProcessedCpuEvent(null, "device-002", 1L, 2L, Double.NaN, 3L),
+                correction(new ProcessedCpuEvent("id-5", "device-003", 1L, 2L, 42.0, 3L)),
+                withStatistics(new ProcessedCpuEvent("id-6", "device-004", 1L, 2L, 90.5, 3L)));
+
+        for (ProcessedCpuEvent event : events) {
+            byte[] json = schema.serialize(event, null, null).value();
+
+            assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(event)), objectMapper.readTree(json),
+                    new String(json, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    @DisplayName("Should be readable as ProcessedCpuEvent")
+    void shouldBeReadableAsProcessedCpuEvent() throws Exception {
+        ProcessedCpuEvent event = new ProcessedCpuEvent("id-1", "device-001", 1692617400000L, 1692617430000L, 85.1, 1692617431000L);
+
+        ProcessedCpuEvent read = objectMapper.readValue(schema.serialize(event, null, null).value(), ProcessedCpuEvent.class);
+
+        assertEquals(event.getId(), read.getId());
+        assertEquals(event.getDeviceId(), read.getDeviceId());
+        assertEquals(event.getWindowStart(), read.getWindowStart());
+        assertEquals(event.getWindowEnd(), read.getWindowEnd());
+        assertEquals(event.getPercentile95(), read.getPercentile95());
+        assertEquals(event.getLastUpdated(), read.getLastUpdated());
+    }
+
+    @Test
+    @DisplayName("Should write the window statistics readable as ProcessedCpuEvent")
+    void shouldWriteWindowStatistics() throws Exception {
+        ProcessedCpuEvent event = withStatistics(new ProcessedCpuEvent("id-1", "device-001", 1692617400000L, 1692617430000L, 90.5, 1692617431000L));
+
+        ProcessedCpuEvent read = objectMapper.readValue(schema.serialize(event, null, null).value(), ProcessedCpuEvent.class);
+
+        assertEquals(event.getPercentiles(), read.getPercentiles());
+        assertEquals(List.of("p50", "p95", "p99.9"), List.copyOf(read.getPercentiles().keySet()));
+        assertEquals(event.getMax(), read.getMax());
+        assertEquals(event.getMean(), read.getMean());
+        assertEquals(event.getEventCount(), read.getEventCount());
+    }
+
+    private static ProcessedCpuEvent withStatistics(ProcessedCpuEvent event) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        percentiles.put("p50", 41.25);
+        percentiles.put("p95", event.getPercentile95());
+        percentiles.put("p99.9", 99.0);
+        event.setPercentiles(percentiles);
+        event.setMax(99.5);
+        event.setMean(44.123456789);
+        event.setEventCount(30);
+        event.setRevision(30);
+        return event;
+    }
+
+    private static ProcessedCpuEvent correction(ProcessedCpuEvent event) {
+        event.setCorrection(true);
+        return event;
+    }
+}
@@ -0,0 +1,144 @@
+package com.controlup.processor.sink;
+
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.streaming.runtime.tasks.TestProcessingTimeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.BindMode;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the writer's statements against the migrations docker-compose applies. The handler's
+ * CpuMetricsRepositoryIntegrationTest runs the same cases with its copy of the statements, so both copies
+ * are held to the same schema and the same expectations.
+ */
+@Testcontainers
+class JdbcResultWriterIntegrationTest {
+
+    private static final long BASE = 1692617400000L;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withFileSystemBind(Path.of("../docker/db/migrations").toAbsolutePath().normalize().toString(),
+                    "/docker-entrypoint-initdb.d", BindMode.READ_ONLY);
+
+    private JdbcResultWriter writer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE \"cpu-metrics\".cpu_usage_95_percentile RESTART IDENTITY");
+        }
+        writer = new JdbcResultWriter(JdbcResultWriterIntegrationTest::connect, 100, 60_000,
+                new TestProcessingTimeService(), new UnregisteredMetricsGroup());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        writer.close();
+    }
+
+    @Test
+    @DisplayName("Should insert a result with its window statistics")
+    void shouldInsertResult() throws Exception {
+        write(result(5, 40.0, BASE + 30_000, false));
+
+        Map<String, Object> row = row();
+        assertEquals("device-001", row.get("device_id"));
+        assertEquals(40.0, row.get("percentile_95"));
+        assertEquals("{\"p50\": 20.0, \"p95\": 40.0}", row.get("percentiles"));
+        assertEquals(99.0, row.get("max_usage"));
+        assertEquals(5L, row.get("event_count"));
+        assertEquals(5L, row.get("revision"));
+    }
+
+    @Test
+    @DisplayName("Should replace a result only with a higher revision")
+    void shouldKeepHighestRevision() throws Exception {
+        write(result(5, 40.0, BASE + 30_000, false));
+        write(result(7, 60.0, BASE + 40_000, false));
+        write(result(6, 50.0, BASE + 50_000, false));
+
+        Map<String, Object> row = row();
+        assertEquals(60.0, row.get("percentile_95"));
+        assertEquals(7L, row.get("revision"));
+        assertEquals(BASE + 40_000, row.get("last_updated"));
+    }
+
+    @Test
+    @DisplayName("Should apply a correction but keep the row's last_updated")
+    void shouldKeepLastUpdatedOnCorrection() throws Exception {
+        write(result(5, 40.0, BASE + 30_000, false));
+        write(result(8, 70.0, BASE + 90_000, true));
+
+        Map<String, Object> row = row();
+        assertEquals(70.0, row.get("percentile_95"));
+        assertEquals(8L, row.get("revision"));
+        assertEquals(BASE + 30_000, row.get("last_updated"));
+    }
+
+    @Test
+    @DisplayName("Should leave the window statistics null for results without them")
+    void shouldWriteNullStatistics() throws Exception {
+        ProcessedCpuEvent result = result(5, 40.0, BASE + 30_000, false);
+        result.setEventCount(0);
+        write(result);
+
+        Map<String, Object> row = row();
+        assertNull(row.get("percentiles"));
+        assertNull(row.get("max_usage"));
+        assertNull(row.get("event_count"));
+    }
+
+    private void write(ProcessedCpuEvent result) throws Exception {
+        writer.write(result, null);
+        writer.flush(false);
+    }
+
+    private static ProcessedCpuEvent result(long revision, double p95, long lastUpdated, boolean correction) {
+        ProcessedCpuEvent result = new ProcessedCpuEvent(ProcessedCpuEvent.windowId("device-001", BASE, BASE + 30_000),
+                "device-001", BASE, BASE + 30_000, p95, lastUpdated);
+        result.setPercentiles(Map.of("p50", 20.0, "p95", p95));
+        result.setMax(99.0);
+        result.setMean(30.0);
+        result.setEventCount(revision);
+        result.setRevision(revision);
+        result.setCorrection(correction);
+        return result;
+    }
+
+    private static Map<String, Object> row() throws SQLException {
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT device_id, percentile_95, percentiles::text AS percentiles, "
+                     + "max_usage, event_count, revision, last_updated FROM \"cpu-metrics\".cpu_usage_95_percentile")) {
+            assertTrue(rows.next());
+            Map<String, Object> row = new HashMap<>();
+            for (int i = 1; i <= rows.getMetaData().getColumnCount(); i++) {
+                row.put(rows.getMetaData().getColumnLabel(i), rows.getObject(i));
+            }
+            assertFalse(rows.next());
+            return row;
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+}
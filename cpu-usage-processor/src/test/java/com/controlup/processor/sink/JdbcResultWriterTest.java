@@ -0,0 +1,204 @@
+package com.controlup.processor.sink;
+
+import com.controlup.processor.model.ProcessedCpuEvent;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
+import org.apache.flink.streaming.runtime.tasks.TestProcessingTimeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcResultWriterTest {
+
+    private static final long BASE = 1692617400000L;
+
+    private RecordingDatabase database;
+    private TestProcessingTimeService processingTimeService;
+    private Map<String, Counter> counters;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = new RecordingDatabase();
+        processingTimeService = new TestProcessingTimeService();
+        processingTimeService.setCurrentTime(BASE);
+        counters = new HashMap<>();
+    }
+
+    @Test
+    @DisplayName("Should write a full batch in one transaction")
+    void shouldWriteFullBatch() throws Exception {
+        JdbcResultWriter writer = writer(3, 1000);
+
+        writer.write(result("device-001", BASE, 2, false), null);
+        writer.write(result("device-002", BASE, 2, false), null);
+        assertEquals(0, database.commits);
+
+        writer.write(result("device-003", BASE, 2, false), null);
+
+        assertEquals(1, database.commits);
+        assertEquals(List.of(3), database.batches.get(JdbcResultWriter.UPSERT_SQL));
+        assertEquals(0, writer.buffered());
+        assertEquals(3, counters.get(JdbcResultWriter.RESULTS_WRITTEN).getCount());
+    }
+
+    @Test
+    @DisplayName("Should write buffered results when the flush interval passes")
+    void shouldWriteAfterInterval() throws Exception {
+        JdbcResultWriter writer = writer(100, 200);
+
+        writer.write(result("device-001", BASE, 2, false), null);
+        processingTimeService.setCurrentTime(BASE + 199);
+        assertEquals(0, database.commits);
+
+        processingTimeService.setCurrentTime(BASE + 200);
+
+        assertEquals(1, database.commits);
+        assertEquals(0, writer.buffered());
+
+        // A new timer for the next result
+        writer.write(result("device-002", BASE, 2, false), null);
+        processingTimeService.setCurrentTime(BASE + 400);
+        assertEquals(2, database.commits);
+    }
+
+    @Test
+    @DisplayName("Should write buffered results before a checkpoint")
+    void shouldWriteOnFlush() throws Exception {
+        JdbcResultWriter writer = writer(100, 60_000);
+        writer.write(result("device-001", BASE, 2, false), null);
+
+        writer.flush(false);
+
+        assertEquals(1, database.commits);
+        assertEquals(0, writer.buffered());
+
+        writer.flush(false);
+        assertEquals(1, database.commits);
+    }
+
+    @Test
+    @DisplayName("Should write each window once with its highest revision and corrections with their own statement")
+    void shouldKeepHighestRevisionPerWindow() throws Exception {
+        JdbcResultWriter writer = writer(100, 60_000);
+        writer.write(result("device-001", BASE, 5, false), null);
+        writer.write(result("device-001", BASE, 3, false), null);
+        writer.write(result("device-001", BASE, 7, false), null);
+        writer.write(result("device-001", BASE - 30_000, 9, true), null);
+
+        writer.flush(false);
+
+        assertEquals(List.of(1), database.batches.get(JdbcResultWriter.UPSERT_SQL));
+        assertEquals(List.of(1), database.batches.get(JdbcResultWriter.CORRECT_SQL));
+        assertEquals(7L, database.parameters.get(JdbcResultWriter.UPSERT_SQL).get(0).get(10));
+        assertEquals("{\"p50\":40.0,\"p95\":90.0}", database.parameters.get(JdbcResultWriter.UPSERT_SQL).get(0).get(6));
+    }
+
+    @Test
+    @DisplayName("Should fail the flush and reconnect on the next one after a database error")
+    void shouldReconnectAfterFailure() throws Exception {
+        JdbcResultWriter writer = writer(100, 60_000);
+        writer.write(result("device-001", BASE, 2, false), null);
+        database.failNextBatch = true;
+
+        assertThrows(IOException.class, () -> writer.flush(false));
+        assertEquals(1, writer.buffered());
+        assertEquals(1, database.closed);
+
+        writer.flush(false);
+        assertEquals(2, database.connections);
+        assertEquals(1, database.commits);
+    }
+
+    private JdbcResultWriter writer(int batchSize, long flushInterval) {
+        return new JdbcResultWriter(database::connect, batchSize, flushInterval, processingTimeService, new UnregisteredMetricsGroup() {
+            @Override
+            public Counter counter(String name) {
+                return counters.computeIfAbsent(name, n -> new SimpleCounter());
+            }
+        });
+    }
+
+    private static ProcessedCpuEvent result(String deviceId, long windowStart, long revision, boolean correction) {
+        ProcessedCpuEvent result = new ProcessedCpuEvent(ProcessedCpuEvent.windowId(deviceId, windowStart, windowStart + 30_000),
+                deviceId, windowStart, windowStart + 30_000, 90.0, BASE + 30_000);
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        percentiles.put("p50", 40.0);
+        percentiles.put("p95", 90.0);
+        result.setPercentiles(percentiles);
+        result.setMax(99.0);
+        result.setMean(45.0);
+        result.setEventCount(revision);
+        result.setRevision(revision);
+        result.setCorrection(correction);
+        return result;
+    }
+
+    /**
+     * Records the batches executed through its connections: their sizes and parameters by statement
+     */
+    private static class RecordingDatabase {
+
+        final Map<String, List<Integer>> batches = new HashMap<>();
+        final Map<String, List<Map<Integer, Object>>> parameters = new HashMap<>();
+        int connections;
+        int commits;
+        int closed;
+        boolean failNextBatch;
+
+        Connection connect() {
+            connections++;
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "prepareStatement" -> statement((String) args[0]);
+                        case "commit" -> {
+                            commits++;
+                            yield null;
+                        }
+                        case "close" -> {
+                            closed++;
+                            yield null;
+                        }
+                        default -> null;
+                    });
+        }
+
+        private PreparedStatement statement(String sql) {
+            List<Map<Integer, Object>> pending = new ArrayList<>();
+            Map<Integer, Object> current = new HashMap<>();
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("set")) {
+                            current.put((Integer) args[0], method.getName().equals("setNull") ? null : args[1]);
+                        } else if (method.getName().equals("addBatch")) {
+                            pending.add(new HashMap<>(current));
+                            current.clear();
+                        } else if (method.getName().equals("executeBatch")) {
+                            if (failNextBatch) {
+                                failNextBatch = false;
+                                throw new SQLException("connection reset");
+                            }
+                            batches.computeIfAbsent(sql, s -> new ArrayList<>()).add(pending.size());
+                            parameters.computeIfAbsent(sql, s -> new ArrayList<>()).addAll(pending);
+                            int[] counts = new int[pending.size()];
+                            pending.clear();
+                            return counts;
+                        }
+                        return null;
+                    });
+        }
+    }
+}
@@ -0,0 +1,7 @@
+-- Results are identified by device and window, so every firing of a window upserts the same row.
+-- The revision (the count of the window's firings) decides which firing wins.
+ALTER TABLE "cpu-metrics".cpu_usage_95_percentile
+    ADD COLUMN revision BIGINT NOT NULL DEFAULT 0;
+
+COMMENT ON COLUMN "cpu-metrics".cpu_usage_95_percentile.event_id IS 'Id of the device''s window, the same for every firing of the window';
+COMMENT ON COLUMN "cpu-metrics".cpu_usage_95_percentile.revision IS 'Firing of the window, corrections from 2^32; a row is only replaced by a higher revision';
@@ -0,0 +1,12 @@
+-- Group membership of the devices, looked up by the processor to compute p95 per device group
+CREATE TABLE "cpu-metrics".devices (
+    device_id VARCHAR(255) PRIMARY KEY,
+    site VARCHAR(255),
+    customer VARCHAR(255),
+    pool VARCHAR(255)
+);
+
+COMMENT ON TABLE "cpu-metrics".devices IS 'Device group membership; the processor aggregates devices per site, customer or pool';
+COMMENT ON COLUMN "cpu-metrics".devices.site IS 'Site of the device, null when it belongs to none';
+COMMENT ON COLUMN "cpu-metrics".devices.customer IS 'Customer owning the device, null when it belongs to none';
+COMMENT ON COLUMN "cpu-metrics".devices.pool IS 'Pool of the device, null when it belongs to none';
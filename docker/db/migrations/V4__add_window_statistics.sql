@@ -0,0 +1,12 @@
+-- Every result also carries the configured percentiles, max, mean and sample count of its window,
+-- computed by the processor in the same pass as the p95. Null for rows written before.
+ALTER TABLE "cpu-metrics".cpu_usage_95_percentile
+    ADD COLUMN percentiles JSONB,
+    ADD COLUMN max_usage DOUBLE PRECISION,
+    ADD COLUMN mean_usage DOUBLE PRECISION,
+    ADD COLUMN event_count BIGINT;
+
+COMMENT ON COLUMN "cpu-metrics".cpu_usage_95_percentile.percentiles IS 'Percentiles of CPU usage within the time window by name, e.g. {"p50": 41.2, "p95": 90.5, "p99": 97.0}';
+COMMENT ON COLUMN "cpu-metrics".cpu_usage_95_percentile.max_usage IS 'Highest CPU usage within the time window';
+COMMENT ON COLUMN "cpu-metrics".cpu_usage_95_percentile.mean_usage IS 'Mean CPU usage within the time window';
+COMMENT ON COLUMN "cpu-metrics".cpu_usage_95_percentile.event_count IS 'Number of samples within the time window';
@@ -0,0 +1,30 @@
+package com.controlup.test;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes events in the processor's binary format (CpuUsageEventBinarySchema, version 1):
+ * version byte, timestamp (long), cpuUsage (double), deviceId length (short), deviceId UTF-8 bytes
+ */
+public class CpuUsageEventBinarySerializer implements Serializer<CpuUsageEvent> {
+
+    private static final byte VERSION = 1;
+
+    @Override
+    public byte[] serialize(String topic, CpuUsageEvent event) {
+        if (event == null) {
+            return null;
+        }
+        byte[] deviceId = event.getDeviceId().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Byte.BYTES + Long.BYTES + Double.BYTES + Short.BYTES + deviceId.length)
+                .put(VERSION)
+                .putLong(event.getTimestamp())
+                .putDouble(event.getCpuUsage())
+                .putShort((short) deviceId.length)
+                .put(deviceId)
+                .array();
+    }
+}
@@ -0,0 +1,23 @@
+package com.controlup.test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Writes events as {@code {deviceId, timestamp, cpuUsage}} JSON
+ */
+public class CpuUsageEventJsonSerializer implements Serializer<CpuUsageEvent> {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public byte[] serialize(String topic, CpuUsageEvent event) {
+        try {
+            return event == null ? null : objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new SerializationException("Failed to serialize " + event, e);
+        }
+    }
+}
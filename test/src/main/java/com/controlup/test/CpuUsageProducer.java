@@ -1,6 +1,5 @@
 package com.controlup.test;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
@@ -21,22 +20,24 @@ public class CpuUsageProducer {
 
     private static final String KAFKA_BOOTSTRAP_SERVERS = System.getenv().getOrDefault("KAFKA_BOOTSTRAP_SERVERS", "localhost:9092");
     private static final String TOPIC = System.getenv().getOrDefault("KAFKA_TOPIC", "events");
+    // "json" or "binary", must match the processor's KAFKA_INPUT_FORMAT
+    private static final String EVENT_FORMAT = System.getenv().getOrDefault("KAFKA_EVENT_FORMAT", "json");
 
-    private final KafkaProducer<String, String> producer;
-    private final ObjectMapper objectMapper;
+    private final KafkaProducer<String, CpuUsageEvent> producer;
     private final Random random;
 
     public CpuUsageProducer() {
         this.producer = createProducer();
-        this.objectMapper = new ObjectMapper();
         this.random = new Random();
     }
 
-    private KafkaProducer<String, String> createProducer() {
+    private KafkaProducer<String, CpuUsageEvent> createProducer() {
         Properties props = new Properties();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, KAFKA_BOOTSTRAP_SERVERS);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "binary".equalsIgnoreCase(EVENT_FORMAT)
+                ? CpuUsageEventBinarySerializer.class.getName()
+                : CpuUsageEventJsonSerializer.class.getName());
         props.put(ProducerConfig.ACKS_CONFIG, "all");
         props.put(ProducerConfig.RETRIES_CONFIG, 3);
         props.put(ProducerConfig.LINGER_MS_CONFIG, 1);
@@ -62,9 +63,7 @@ public class CpuUsageProducer {
                     long timestamp = System.currentTimeMillis() - 30000;
 
                     CpuUsageEvent event = new CpuUsageEvent(deviceId, timestamp, cpuUsage);
-                    String eventJson = objectMapper.writeValueAsString(event);
-
-                    ProducerRecord<String, String> record = new ProducerRecord<>(TOPIC, deviceId, eventJson);
+                    ProducerRecord<String, CpuUsageEvent> record = new ProducerRecord<>(TOPIC, deviceId, event);
 
                     producer.send(record, (metadata, exception) -> {
                         if (exception != null) {
@@ -128,6 +127,7 @@ public class CpuUsageProducer {
         LOG.info("  Duration: {} minutes", durationMinutes);
         LOG.info("  Kafka servers: {}", KAFKA_BOOTSTRAP_SERVERS);
         LOG.info("  Topic: {}", TOPIC);
+        LOG.info("  Event format: {}", EVENT_FORMAT);
 
         CpuUsageProducer producer = new CpuUsageProducer();
 